@@ -8,8 +8,9 @@ import com.richard.printer.command.PrinterCmdUtil;
 import com.richard.printer.enumerate.Align;
 import com.richard.printer.enumerate.EllipsizeMode;
 import com.richard.printer.enumerate.TicketSpec;
+import com.richard.printer.exception.PrinterException;
 import com.richard.printer.model.ColumnItem;
-import com.richard.printer.utils.POSPrinter;
+import com.richard.printer.utils.PrintCallback;
 import com.richard.printer.utils.PrintParams;
 import com.richard.printer.utils.PrinterManager;
 
@@ -127,45 +128,37 @@ public class MainActivity extends AppCompatActivity {
      * 开始打印
      *
      * @param printDataList 必填 打印数据
-     * @return 是否打印成功
      */
     public void startPrint(final List<byte[]> printDataList) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    //连接打印机并打印
-                    POSPrinter printer = PrinterManager.get().connectNetPort("172.16.2.249", 9100);
-//                    POSPrinter printer = PrinterManager.get().connectUSBPort(getApplicationContext(), "/dev/bus/usb/001/004");
-
-                    //重置复位打印机
-                    printDataList.add(0, PrinterCmdUtil.resetPrinter());
+        //重置复位打印机
+        printDataList.add(0, PrinterCmdUtil.resetPrinter());
 
-                    //设置行距
-                    printDataList.add(1, PrinterCmd.setLineSpacing(80));
+        //设置行距
+        printDataList.add(1, PrinterCmd.setLineSpacing(80));
 
-                    //打印并换行
-                    printDataList.add(PrinterCmdUtil.printLineFeed());
+        //打印并换行
+        printDataList.add(PrinterCmdUtil.printLineFeed());
 
-                    //送纸150像素
-                    printDataList.add(PrinterCmd.printFeedPaper(700));
+        //送纸150像素
+        printDataList.add(PrinterCmd.printFeedPaper(700));
 
-                    //进纸切割
-                    printDataList.add(PrinterCmdUtil.feedPaperCutPartial());
+        //进纸切割
+        printDataList.add(PrinterCmdUtil.feedPaperCutPartial());
 
-                    //重置复位打印机
-                    printDataList.add(0, PrinterCmdUtil.resetPrinter());
+        //重置复位打印机
+        printDataList.add(0, PrinterCmdUtil.resetPrinter());
 
-                    //写入打印内容数据
-                    printer.write(printDataList);
+        //异步提交打印任务，连接、写入、断开均在打印机写入线程中完成
+        PrinterManager.get().submitNetPort("172.16.2.249", 9100, printDataList, new PrintCallback() {
+            @Override
+            public void onSuccess(int writeCount) {
+            }
 
-                    //端口连接
-                    printer.disconnect();
-                } catch (Throwable e) {
-                    e.printStackTrace();
-                }
+            @Override
+            public void onFailure(PrinterException e) {
+                e.printStackTrace();
             }
-        }).start();
+        });
     }
 
 }
\ No newline at end of file
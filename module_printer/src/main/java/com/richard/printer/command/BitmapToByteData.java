@@ -14,11 +14,18 @@ import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ExecutorService;
 
+/**
+ * Bitmap位图指令转换，读取像素后交给{@link RasterEngine}处理
+ */
 public class BitmapToByteData {
 
+    /**
+     * 并行转换的最小像素数，小于该值时在当前线程转换
+     */
+    public static final int PARALLEL_MIN_PIXELS = RasterEngine.PARALLEL_MIN_PIXELS;
+
     public enum AlignType {
         Left,
         Center,
@@ -38,32 +45,21 @@ public class BitmapToByteData {
     }
 
     public static byte[] rasterBmpToSendData(int m, Bitmap mBitmap, BitmapToByteData.BmpType bmpType, BitmapToByteData.AlignType alignType, int pageWidth) {
-        Bitmap bitmap;
-        switch (bmpType) {
-            case Threshold:
-                bitmap = convertGreyImgByFloyd(mBitmap);
-                break;
-            case Grey:
-                bitmap = getGreyBitmap(mBitmap);
-                break;
-            case Dithering:
-            default:
-                bitmap = convertGreyImg(mBitmap);
-        }
-
-        int width = bitmap.getWidth();
-        int height = bitmap.getHeight();
-        int[] pixels = new int[width * height];
+        return rasterBmpToSendData(m, mBitmap, bmpType, alignType, pageWidth, null);
+    }
 
-        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+    /**
+     * 生成光栅位图指令，大图片的二值化、误差扩散和打包在线程池中按行并行处理，结果与单线程转换一致
+     *
+     * @param executor 并行转换使用的线程池，为null或图片小于{@value #PARALLEL_MIN_PIXELS}像素时在当前线程转换
+     */
+    public static byte[] rasterBmpToSendData(int m, Bitmap mBitmap, BitmapToByteData.BmpType bmpType, BitmapToByteData.AlignType alignType,
+                                             int pageWidth, ExecutorService executor) {
+        int width = mBitmap.getWidth();
+        int height = mBitmap.getHeight();
+        byte[] mono = toMono(getLuma(mBitmap), width, height,
+                bmpType == BitmapToByteData.BmpType.Threshold || bmpType == BitmapToByteData.BmpType.Grey, executor);
 
-        byte[] data = getbmpdata(pixels, width, height);
-        int n = (width + 7) / 8;
-        byte xL = (byte) (n % 256);
-        byte xH = (byte) (n / 256);
-        int x = (height + 23) / 24;
-        List<Byte> list = new ArrayList();
-        byte[] head = new byte[]{29, 118, 48, (byte) m, xL, xH, 24, 0};
         int mL = 0;
         int mH = 0;
 
@@ -85,377 +81,143 @@ public class BitmapToByteData {
                 mH = (pageWidth - width) / 256;
         }
 
-        byte[] aligndata = PrinterCmd.setAbsolutePrintPosition(mL, mH);
-
-        for (int i = 0; i < x; ++i) {
-            byte[] newdata;
-            if (i == x - 1) {
-                if (height % 24 == 0) {
-                    head[6] = 24;
-                    newdata = new byte[n * 24];
-                    System.arraycopy(data, 24 * i * n, newdata, 0, 24 * n);
-                } else {
-                    head[6] = (byte) (height % 24);
-                    newdata = new byte[height % 24 * n];
-                    System.arraycopy(data, 24 * i * n, newdata, 0, height % 24 * n);
-                }
-            } else {
-                newdata = new byte[n * 24];
-                System.arraycopy(data, 24 * i * n, newdata, 0, 24 * n);
-            }
-
-            byte b;
-            int var22;
-            int var23;
-            byte[] var24;
-            if (alignType != BitmapToByteData.AlignType.Left) {
-                var24 = aligndata;
-                var23 = aligndata.length;
-
-                for (var22 = 0; var22 < var23; ++var22) {
-                    b = var24[var22];
-                    list.add(b);
-                }
-            }
-
-            var24 = head;
-            var23 = head.length;
-
-            for (var22 = 0; var22 < var23; ++var22) {
-                b = var24[var22];
-                list.add(b);
-            }
-
-            var24 = newdata;
-            var23 = newdata.length;
-
-            for (var22 = 0; var22 < var23; ++var22) {
-                b = var24[var22];
-                list.add(b);
-            }
-        }
-
-        byte[] byteData = new byte[list.size()];
-
-        for (int i = 0; i < byteData.length; ++i) {
-            byteData[i] = (Byte) list.get(i);
-        }
-
-        return byteData;
+        byte[] aligndata = alignType != BitmapToByteData.AlignType.Left ? PrinterCmd.setAbsolutePrintPosition(mL, mH) : null;
+        return RasterEngine.packRaster(m, mono, 0, width, width, height, aligndata, executor);
     }
 
     public static byte[] rasterBmpToSendData(int m, Bitmap mBitmap, BitmapToByteData.BmpType bmpType) {
-        Bitmap bitmap = toGrayscale(mBitmap);
-        switch (bmpType) {
-            case Threshold:
-                bitmap = convertGreyImgByFloyd(bitmap);
-                break;
-            case Dithering:
-            default:
-                bitmap = convertGreyImg(bitmap);
-        }
+        return rasterBmpToSendData(m, mBitmap, bmpType, (ExecutorService) null);
+    }
 
+    /**
+     * 生成光栅位图指令，大图片在线程池中并行转换，结果与单线程转换一致
+     *
+     * @param executor 并行转换使用的线程池，为null或图片小于{@value #PARALLEL_MIN_PIXELS}像素时在当前线程转换
+     */
+    public static byte[] rasterBmpToSendData(int m, Bitmap mBitmap, BitmapToByteData.BmpType bmpType, ExecutorService executor) {
+        Bitmap bitmap = toGrayscale(mBitmap);
         int width = bitmap.getWidth();
         int height = bitmap.getHeight();
-        int[] pixels = new int[width * height];
-        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-        byte[] data = getbmpdata(pixels, width, height);
-        int n = (width + 7) / 8;
-        byte xL = (byte) (n % 256);
-        byte xH = (byte) (n / 256);
-        int x = (height + 23) / 24;
-        List<Byte> list = new ArrayList();
-        byte[] head = new byte[]{29, 118, 48, (byte) m, xL, xH, 24, 0};
-
-        for (int i = 0; i < x; ++i) {
-            byte[] newdata;
-            if (i == x - 1) {
-                if (height % 24 == 0) {
-                    head[6] = 24;
-                    newdata = new byte[n * 24];
-                    System.arraycopy(data, 24 * i * n, newdata, 0, 24 * n);
-                } else {
-                    head[6] = (byte) (height % 24);
-                    newdata = new byte[height % 24 * n];
-                    System.arraycopy(data, 24 * i * n, newdata, 0, height % 24 * n);
-                }
-            } else {
-                newdata = new byte[n * 24];
-                System.arraycopy(data, 24 * i * n, newdata, 0, 24 * n);
-            }
-
-            byte[] var19 = head;
-            int var18 = head.length;
-
-            byte b;
-            int var17;
-            for (var17 = 0; var17 < var18; ++var17) {
-                b = var19[var17];
-                list.add(b);
-            }
-
-            var19 = newdata;
-            var18 = newdata.length;
+        byte[] mono = toMono(getLuma(bitmap), width, height, bmpType == BitmapToByteData.BmpType.Threshold, executor);
+        return RasterEngine.packRaster(m, mono, 0, width, width, height, null, executor);
+    }
 
-            for (var17 = 0; var17 < var18; ++var17) {
-                b = var19[var17];
-                list.add(b);
-            }
+    /**
+     * 生成光栅位图指令(GS v 0，每24行一段)并写入调用方的缓冲区，缓冲区可以在多张图片之间复用
+     *
+     * @param dest   目标缓冲区，从offset开始至少需要{@link #getRasterSendDataLength}字节的空间
+     * @param offset 写入位置
+     * @return 写入的字节数
+     */
+    public static int rasterBmpToSendData(int m, Bitmap mBitmap, BitmapToByteData.BmpType bmpType, byte[] dest, int offset) {
+        int length = getRasterSendDataLength(mBitmap.getWidth(), mBitmap.getHeight());
+        if (offset < 0 || dest.length - offset < length) {
+            throw new IllegalArgumentException("目标缓冲区空间不足，需要" + length + "字节");
         }
 
-        byte[] byteData = new byte[list.size()];
+        Bitmap bitmap = toGrayscale(mBitmap);
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        byte[] mono = toMono(getLuma(bitmap), width, height, bmpType == BitmapToByteData.BmpType.Threshold, null);
+        return RasterEngine.packRaster(m, mono, 0, width, width, height, null, dest, offset, null);
+    }
 
-        for (int i = 0; i < byteData.length; ++i) {
-            byteData[i] = (Byte) list.get(i);
-        }
+    /**
+     * 获取光栅位图指令的字节长度
+     *
+     * @param width  图片宽度
+     * @param height 图片高度
+     */
+    public static int getRasterSendDataLength(int width, int height) {
+        return RasterEngine.getRasterLength(width, height, 0);
+    }
 
-        return byteData;
+    /**
+     * 创建光栅位图分段编码，按{@link #rasterBmpToSendData(int, Bitmap, BitmapToByteData.BmpType)}的方式分段生成；
+     * 每段生成时才去色读取需要的行，不创建整张图片大小的去色位图和亮度平面
+     *
+     * @param m       位图模式(GS v 0 的m参数)
+     * @param mBitmap 图片
+     * @param bmpType 转换方式，Threshold为误差扩散，其余按平均灰度二值化
+     */
+    public static RasterBandEncoder newRasterBandEncoder(int m, Bitmap mBitmap, BitmapToByteData.BmpType bmpType) {
+        return new RasterBandEncoder(m, new GrayscaleRowSource(mBitmap), mBitmap.getWidth(), mBitmap.getHeight(),
+                bmpType == BitmapToByteData.BmpType.Threshold);
     }
 
     public static byte[] flashBmpToSendData(Bitmap mBitmap, BitmapToByteData.BmpType bmpType) {
         Bitmap bitmap = convertBmp(mBitmap);
         bitmap = toGrayscale(bitmap);
 
-        switch (bmpType) {
-            case Threshold:
-                bitmap = convertGreyImgByFloyd(bitmap);
-                break;
-            case Dithering:
-            default:
-                bitmap = convertGreyImg(bitmap);
-        }
-
         int width = bitmap.getWidth();
         int height = bitmap.getHeight();
         int n = (width + 7) / 8;
         int h = (height + 7) / 8;
-        int[] pixels = new int[width * height];
-        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-        byte[] data = getbmpdata(pixels, width, height);
-        byte xL = (byte) (n % 256);
-        byte xH = (byte) (n / 256);
-        byte yL = (byte) (h % 256);
-        byte yH = (byte) (h / 256);
-        byte[] head = new byte[]{xL, xH, yL, yH};
-        data = byteMerger(head, data);
+        byte[] mono = toMono(getLuma(bitmap), width, height, bmpType == BitmapToByteData.BmpType.Threshold, null);
+        byte[] data = new byte[4 + n * height];
+        data[0] = (byte) (n % 256);
+        data[1] = (byte) (n / 256);
+        data[2] = (byte) (h % 256);
+        data[3] = (byte) (h / 256);
+        RasterEngine.packRows(mono, 0, width, width, 0, height, false, data, 4);
         return data;
     }
 
     public static byte[] downLoadBmpToSendTSCdownloadcommand(Bitmap mBitmap) {
         int width = mBitmap.getWidth();
         int height = mBitmap.getHeight();
-        int[] pixels = new int[width * height];
-        mBitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-        byte[] send = new byte[width * height];
-
-        for (int i = 0; i < pixels.length; ++i) {
-            send[i] = (byte) pixels[i];
-        }
-
-        byte[] data = getbmpdataTsc(pixels, width, height);
+        int n = (width + 7) / 8;
+        byte[] data = new byte[n * height];
+        RasterEngine.packRows(getLuma(mBitmap), 0, width, width, 0, height, true, data, 0);
         return data;
     }
 
     public static byte[] downLoadBmpToSendTSCData(Bitmap mBitmap, BitmapToByteData.BmpType bmpType) {
         Bitmap bitmap = toGrayscale(mBitmap);
 
-        switch (bmpType) {
-            case Threshold:
-                bitmap = convertGreyImgByFloyd(bitmap);
-                break;
-            case Dithering:
-            default:
-                bitmap = convertGreyImg(bitmap);
-        }
-
         int width = bitmap.getWidth();
         int height = bitmap.getHeight();
         int n = (width + 7) / 8;
-        int h = (height + 7) / 8;
-        int[] pixels = new int[width * height];
-        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-        byte[] data = getbmpdataTsc(pixels, width, height);
+        byte[] mono = toMono(getLuma(bitmap), width, height, bmpType == BitmapToByteData.BmpType.Threshold, null);
+        byte[] data = new byte[n * height];
+        RasterEngine.packRows(mono, 0, width, width, 0, height, true, data, 0);
         return data;
     }
 
     public static byte[] downLoadBmpToSendData(Bitmap mBitmap, BitmapToByteData.BmpType bmpType) {
         Bitmap bitmap = convertBmp(mBitmap);
         bitmap = toGrayscale(bitmap);
-        switch (bmpType) {
-            case Threshold:
-                bitmap = convertGreyImgByFloyd(bitmap);
-                break;
-            case Dithering:
-            default:
-                bitmap = convertGreyImg(bitmap);
-        }
 
         int width = bitmap.getWidth();
         int height = bitmap.getHeight();
         int n = (width + 7) / 8;
         int h = (height + 7) / 8;
-        int[] pixels = new int[width * height];
-        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-        byte[] data = getbmpdata(pixels, width, height);
-        byte[] head = new byte[]{(byte) n, (byte) h};
-        data = byteMerger(head, data);
+        byte[] mono = toMono(getLuma(bitmap), width, height, bmpType == BitmapToByteData.BmpType.Threshold, null);
+        byte[] data = new byte[2 + n * height];
+        data[0] = (byte) n;
+        data[1] = (byte) h;
+        RasterEngine.packRows(mono, 0, width, width, 0, height, false, data, 2);
         return data;
     }
 
-    private static Bitmap toGrayscale(Bitmap bmpOriginal) {
-        int height = bmpOriginal.getHeight();
-        int width = bmpOriginal.getWidth();
-        Bitmap bmpGrayscale = Bitmap.createBitmap(width, height, Config.RGB_565);
-        Canvas c = new Canvas(bmpGrayscale);
-        Paint paint = new Paint();
-        ColorMatrix cm = new ColorMatrix();
-        cm.setSaturation(0.0F);
-        ColorMatrixColorFilter f = new ColorMatrixColorFilter(cm);
-        paint.setColorFilter(f);
-        c.drawBitmap(bmpOriginal, 0.0F, 0.0F, paint);
-        return bmpGrayscale;
-    }
-
-    private static Bitmap convertGreyImg(Bitmap img) {
-        int width = img.getWidth();
-        int height = img.getHeight();
-        int[] pixels = new int[width * height];
-        img.getPixels(pixels, 0, width, 0, 0, width, height);
-        double redSum = 0.0D;
-        double total = (double) (width * height);
-
-        int m;
-        int i;
-        int j;
-        int grey;
-        for (m = 0; m < height; ++m) {
-            for (i = 0; i < width; ++i) {
-                j = pixels[width * m + i];
-                grey = (j & 16711680) >> 16;
-                redSum += (double) grey;
-            }
-        }
-
-        m = (int) (redSum / total);
-
-        for (i = 0; i < height; ++i) {
-            for (j = 0; j < width; ++j) {
-                grey = pixels[width * i + j];
-                int alpha1 = -16777216;
-                int red = (grey & 16711680) >> 16;
-                int green = (grey & '\uff00') >> 8;
-                int blue = grey & 255;
-                if (red >= m) {
-                    blue = 255;
-                    green = 255;
-                    red = 255;
-                } else {
-                    blue = 0;
-                    green = 0;
-                    red = 0;
-                }
-
-                grey = alpha1 | red << 16 | green << 8 | blue;
-                pixels[width * i + j] = grey;
-            }
-        }
-
-        Bitmap mBitmap = Bitmap.createBitmap(width, height, Config.RGB_565);
-        mBitmap.setPixels(pixels, 0, width, 0, 0, width, height);
-        return mBitmap;
-    }
-
-    private static Bitmap convertGreyImgByFloyd(Bitmap img) {
-        int width = img.getWidth();
-        int height = img.getHeight();
-        int[] pixels = new int[width * height];
-        img.getPixels(pixels, 0, width, 0, 0, width, height);
-        int[] gray = new int[height * width];
-
-        int e;
-        int i;
-        int j;
-        int g;
-        for (e = 0; e < height; ++e) {
-            for (i = 0; i < width; ++i) {
-                j = pixels[width * e + i];
-                g = (j & 16711680) >> 16;
-                gray[width * e + i] = g;
-            }
-        }
-
-        for (i = 0; i < height; ++i) {
-            for (j = 0; j < width; ++j) {
-                g = gray[width * i + j];
-                if (g >= 128) {
-                    pixels[width * i + j] = -1;
-                    e = g - 255;
-                } else {
-                    pixels[width * i + j] = -16777216;
-                    e = g - 0;
-                }
-
-                if (j < width - 1 && i < height - 1) {
-                    gray[width * i + j + 1] += 3 * e / 8;
-                    gray[width * (i + 1) + j] += 3 * e / 8;
-                    gray[width * (i + 1) + j + 1] += e / 4;
-                } else if (j == width - 1 && i < height - 1) {
-                    gray[width * (i + 1) + j] += 3 * e / 8;
-                } else if (j < width - 1 && i == height - 1) {
-                    gray[width * i + j + 1] += e / 4;
-                }
-            }
-        }
-
-        Bitmap mBitmap = Bitmap.createBitmap(width, height, Config.RGB_565);
-        mBitmap.setPixels(pixels, 0, width, 0, 0, width, height);
-        return mBitmap;
+    public static byte[] baBmpToSendData(int m, Bitmap mBitmap, BitmapToByteData.BmpType bmpType) {
+        Bitmap bitmap = toGrayscale(mBitmap);
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        byte[] mono = toMono(getLuma(bitmap), width, height, bmpType == BitmapToByteData.BmpType.Threshold, null);
+        return RasterEngine.packBitImage(m, mono, 0, width, width, height);
     }
 
     public static Bitmap getGreyBitmap(Bitmap bitmap) {
         if (bitmap == null) {
             return null;
         } else {
-            long stime = System.currentTimeMillis();
             int width = bitmap.getWidth();
             int height = bitmap.getHeight();
+            byte[] mono = RasterEngine.ditherFloyd(getLuma(bitmap), 0, width, width, height, null);
             int[] pixels = new int[width * height];
-            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-            int[] gray = new int[height * width];
-
-            int e;
-            int i;
-            int j;
-            int g;
-            for (e = 0; e < height; ++e) {
-                for (i = 0; i < width; ++i) {
-                    j = pixels[width * e + i];
-                    g = (j & 16711680) >> 16;
-                    gray[width * e + i] = g;
-                }
-            }
-
-            for (i = 0; i < height; ++i) {
-                for (j = 0; j < width; ++j) {
-                    g = gray[width * i + j];
-                    if (g >= 128) {
-                        pixels[width * i + j] = -1;
-                        e = g - 255;
-                    } else {
-                        pixels[width * i + j] = -16777216;
-                        e = g - 0;
-                    }
-
-                    if (j < width - 1 && i < height - 1) {
-                        gray[width * i + j + 1] += 3 * e / 8;
-                        gray[width * (i + 1) + j] += 3 * e / 8;
-                        gray[width * (i + 1) + j + 1] += e / 4;
-                    } else if (j == width - 1 && i < height - 1) {
-                        gray[width * (i + 1) + j] += 3 * e / 8;
-                    } else if (j < width - 1 && i == height - 1) {
-                        gray[width * i + j + 1] += e / 4;
-                    }
-                }
+            for (int i = 0; i < pixels.length; ++i) {
+                pixels[i] = mono[i] == 0 ? -16777216 : -1;
             }
 
             Bitmap mBitmap = Bitmap.createBitmap(width, height, Config.ARGB_8888);
@@ -464,130 +226,74 @@ public class BitmapToByteData {
         }
     }
 
-    private static byte[] bagetbmpdata(int[] b, int w, int m) {
-        int nH = w / 256;
-        int nL = w % 256;
-        byte[] head = new byte[]{27, 42, (byte) m, (byte) nL, (byte) nH};
-        byte[] end = new byte[]{27, 74, 16};
-        byte mask = 1;
-        byte[] perdata = new byte[w];
-
-        int x;
-        for (x = 0; x < w; ++x) {
-            for (int y = 0; y < 8; ++y) {
-                if ((b[y * w + x] & 16711680) >> 16 != 0) {
-                    perdata[x] |= (byte) (mask << 7 - y);
-                }
-            }
+    /**
+     * 二值化
+     *
+     * @param floyd 是否使用误差扩散，否则按平均灰度二值化
+     */
+    private static byte[] toMono(byte[] luma, int width, int height, boolean floyd, ExecutorService executor) {
+        if (floyd) {
+            return RasterEngine.ditherFloyd(luma, 0, width, width, height, executor);
         }
-
-        for (x = 0; x < perdata.length; ++x) {
-            perdata[x] = (byte) (~perdata[x]);
-        }
-
-        byte[] data = byteMerger(head, perdata);
-        data = byteMerger(data, end);
-        return data;
+        return RasterEngine.thresholdByMean(luma, 0, width, width, height, executor);
     }
 
-    public static byte[] baBmpToSendData(int m, Bitmap mBitmap, BitmapToByteData.BmpType bmpType) {
-        Bitmap bitmap = toGrayscale(mBitmap);
-        switch (bmpType) {
-            case Threshold:
-                bitmap = convertGreyImgByFloyd(bitmap);
-                break;
-            case Dithering:
-            default:
-                bitmap = convertGreyImg(bitmap);
-        }
-
+    /**
+     * 读取已去色图片的亮度平面
+     */
+    private static byte[] getLuma(Bitmap bitmap) {
         int width = bitmap.getWidth();
         int height = bitmap.getHeight();
         int[] pixels = new int[width * height];
         bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-        int n = (height + 7) / 8;
-        ArrayList<Byte> list = new ArrayList();
-
-        for (int i = 0; i < n; ++i) {
-            int[] perPix = new int[width * 8];
-
-            for (int j = 0; j < perPix.length; ++j) {
-                if (j + 8 * i * width < pixels.length - 1) {
-                    perPix[j] = pixels[j + 8 * i * width];
-                } else {
-                    perPix[j] = -1;
-                }
-            }
-
-            byte[] data = bagetbmpdata(perPix, width, m);
-            byte[] var15 = data;
-            int var14 = data.length;
-
-            for (int var13 = 0; var13 < var14; ++var13) {
-                byte b = var15[var13];
-                list.add(b);
-            }
-        }
-
-        byte[] newdata = new byte[list.size()];
-
-        for (int i = 0; i < newdata.length; ++i) {
-            newdata[i] = (Byte) list.get(i);
-        }
-
-        return newdata;
+        return RasterEngine.lumaFromGrey(pixels, 0, width, width, height);
     }
 
-    private static byte[] getbmpdata(int[] b, int w, int h) {
-        int n = (w + 7) / 8;
-        byte[] data = new byte[n * h];
-        byte mask = 1;
-
-        int y;
-        for (y = 0; y < h; ++y) {
-            for (int x = 0; x < n * 8; ++x) {
-                if (x < w) {
-                    if ((b[y * w + x] & 16711680) >> 16 != 0) {
-                        data[y * n + x / 8] |= (byte) (mask << 7 - x % 8);
-                    }
-                } else if (x >= w) {
-                    data[y * n + x / 8] |= (byte) (mask << 7 - x % 8);
-                }
-            }
-        }
-
-        for (y = 0; y < data.length; ++y) {
-            data[y] = (byte) (~data[y]);
-        }
+    static Bitmap toGrayscale(Bitmap bmpOriginal) {
+        int height = bmpOriginal.getHeight();
+        int width = bmpOriginal.getWidth();
+        Bitmap bmpGrayscale = Bitmap.createBitmap(width, height, Config.RGB_565);
+        Canvas c = new Canvas(bmpGrayscale);
+        c.drawBitmap(bmpOriginal, 0.0F, 0.0F, newGrayscalePaint());
+        return bmpGrayscale;
+    }
 
-        return data;
+    private static Paint newGrayscalePaint() {
+        Paint paint = new Paint();
+        ColorMatrix cm = new ColorMatrix();
+        cm.setSaturation(0.0F);
+        ColorMatrixColorFilter f = new ColorMatrixColorFilter(cm);
+        paint.setColorFilter(f);
+        return paint;
     }
 
-    private static byte[] getbmpdataTsc(int[] b, int w, int h) {
-        int n = (w + 7) / 8;
-        byte[] data = new byte[n * h];
-        byte mask = 1;
-
-        for (int y = 0; y < h; ++y) {
-            for (int x = 0; x < n * 8; ++x) {
-                if (x < w) {
-                    if ((b[y * w + x] & 16711680) >> 16 != 0) {
-                        data[y * n + x / 8] |= (byte) (mask << 7 - x % 8);
-                    }
-                } else if (x >= w) {
-                    data[y * n + x / 8] |= (byte) (mask << 7 - x % 8);
-                }
-            }
+    /**
+     * 按行去色读取亮度：把需要的行绘制到一段高的RGB_565位图中，与{@link #toGrayscale}逐像素一致
+     */
+    private static final class GrayscaleRowSource implements RasterBandEncoder.LumaRowSource {
+        private final Bitmap source;
+        private final Bitmap band;
+        private final Canvas canvas;
+        private final Paint paint = newGrayscalePaint();
+        private final int[] pixels;
+
+        GrayscaleRowSource(Bitmap source) {
+            int width = source.getWidth();
+            this.source = source;
+            //误差扩散时每次最多读取一段加一行
+            this.band = Bitmap.createBitmap(width, RasterBandEncoder.BAND_HEIGHT + 1, Config.RGB_565);
+            this.canvas = new Canvas(this.band);
+            this.pixels = new int[width * (RasterBandEncoder.BAND_HEIGHT + 1)];
         }
 
-        return data;
-    }
-
-    private static byte[] byteMerger(byte[] byte_1, byte[] byte_2) {
-        byte[] byte_3 = new byte[byte_1.length + byte_2.length];
-        System.arraycopy(byte_1, 0, byte_3, 0, byte_1.length);
-        System.arraycopy(byte_2, 0, byte_3, byte_1.length, byte_2.length);
-        return byte_3;
+        @Override
+        public void readRows(int fromRow, int rowCount, byte[] luma, int offset) {
+            int width = this.source.getWidth();
+            this.band.eraseColor(0);
+            this.canvas.drawBitmap(this.source, 0.0F, (float) -fromRow, this.paint);
+            this.band.getPixels(this.pixels, 0, width, 0, 0, width, rowCount);
+            RasterEngine.lumaFromGrey(this.pixels, 0, width, width, rowCount, luma, offset);
+        }
     }
 
     private static Bitmap convertBmp(Bitmap bmp) {
@@ -17,7 +17,6 @@
 package com.richard.printer.command;
 
 import android.graphics.Bitmap;
-import android.graphics.Color;
 import android.graphics.Matrix;
 
 import com.richard.printer.enumerate.TicketSpec;
@@ -275,107 +274,14 @@ public class PrinterCmdUtil {
             return data;
         }
 
-        // 宽命令
-        String widthHexString = Integer.toHexString(width % 8 == 0 ? width / 8 : (width / 8 + 1));
-        if (widthHexString.length() > 2) {
-            // 超过2040像素才会到达这里
-            return null;
-        } else if (widthHexString.length() == 1) {
-            widthHexString = "0" + widthHexString;
-        }
-        widthHexString += "00";
-
-        // 每行字节数(除以8，不足补0)
-        String zeroStr = "";
-        int zeroCount = width % 8;
-        if (zeroCount > 0) {
-            for (int i = 0; i < (8 - zeroCount); i++) {
-                //noinspection StringConcatenationInLoop
-                zeroStr += "0";
-            }
-        }
-        ArrayList<String> commandList = new ArrayList<>();
-        // 高度每parting像素进行一次分割
-        int time = height % parting == 0 ? height / parting : (height / parting + 1);// 循环打印次数
-        for (int t = 0; t < time; t++) {
-            int partHeight = t == time - 1 ? height % parting : parting;// 分段高度
-
-            // 高命令
-            String heightHexString = Integer.toHexString(partHeight);
-            if (heightHexString.length() > 2) {
-                // 超过255像素才会到达这里
-                return null;
-            } else if (heightHexString.length() == 1) {
-                heightHexString = "0" + heightHexString;
-            }
-            heightHexString += "00";
-
-            // 宽高指令
-            String commandHexString = "1D763000";
-            commandList.add(commandHexString + widthHexString + heightHexString);
-
-            ArrayList<String> list = new ArrayList<>(); //binaryString list
-            StringBuilder sb = new StringBuilder();
-            // 像素二值化，非黑即白
-            for (int i = 0; i < partHeight; i++) {
-                sb.delete(0, sb.length());
-                for (int j = 0; j < width; j++) {
-                    // 实际在图片中的高度
-                    int startHeight = t * parting + i;
-                    //得到当前像素的值
-                    int color = image.getPixel(j, startHeight);
-                    int red, green, blue;
-                    if (image.hasAlpha()) {
-                        //得到alpha通道的值
-                        int alpha = Color.alpha(color);
-                        //得到图像的像素RGB的值
-                        red = Color.red(color);
-                        green = Color.green(color);
-                        blue = Color.blue(color);
-                        final float offset = alpha / 255.0f;
-                        // 根据透明度将白色与原色叠加
-                        red = 0xFF + (int) Math.ceil((red - 0xFF) * offset);
-                        green = 0xFF + (int) Math.ceil((green - 0xFF) * offset);
-                        blue = 0xFF + (int) Math.ceil((blue - 0xFF) * offset);
-                    } else {
-                        //得到图像的像素RGB的值
-                        red = Color.red(color);
-                        green = Color.green(color);
-                        blue = Color.blue(color);
-                    }
-                    // 接近白色改为白色。其余黑色
-                    if (red > 160 && green > 160 && blue > 160)
-                        sb.append("0");
-                    else
-                        sb.append("1");
-                }
-                // 每一行结束时，补充剩余的0
-                if (zeroCount > 0) {
-                    sb.append(zeroStr);
-                }
-                list.add(sb.toString());
-            }
-            // binaryStr每8位调用一次转换方法，再拼合
-            ArrayList<String> bmpHexList = new ArrayList<>();
-            for (String binaryStr : list) {
-                sb.delete(0, sb.length());
-                for (int i = 0; i < binaryStr.length(); i += 8) {
-                    String str = binaryStr.substring(i, i + 8);
-                    // 2进制转成16进制
-                    String hexString = binaryStrToHexString(str);
-                    sb.append(hexString);
-                }
-                bmpHexList.add(sb.toString());
+        // 按行批量读取像素交给RasterEngine，按位直接写入光栅数据
+        final Bitmap source = image;
+        return RasterEngine.toRasterDataList(new RasterEngine.ArgbRowSource() {
+            @Override
+            public void readRow(int y, int[] row) {
+                source.getPixels(row, 0, width, 0, y, width, 1);
             }
-
-            // 数据指令
-            commandList.addAll(bmpHexList);
-        }
-        ArrayList<byte[]> data = new ArrayList<>();
-        for (String hexStr : commandList) {
-            data.add(hexStringToBytes(hexStr));
-        }
-        return data;
+        }, width, height, image.hasAlpha(), parting);
     }
 
     /**
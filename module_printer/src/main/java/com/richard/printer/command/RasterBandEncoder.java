@@ -0,0 +1,240 @@
+package com.richard.printer.command;
+
+/**
+ * 光栅位图分段编码
+ * 每次转换、打包{@value #BAND_HEIGHT}行，生成一段GS v 0指令，无需等整张图片转换完成就可以开始发送；
+ * 各段依次拼接的结果与{@link RasterEngine}先二值化再{@link RasterEngine#packRaster 打包}的结果一致。
+ * 亮度按段从{@link LumaRowSource}读取，只需要一段的缓冲区，不依赖Android；Bitmap通过{@link BitmapToByteData#newRasterBandEncoder}创建。
+ * 非线程安全，同一时间只能在一个线程中使用
+ */
+public class RasterBandEncoder {
+
+    /**
+     * 每段的行数
+     */
+    public static final int BAND_HEIGHT = RasterEngine.RASTER_BAND_HEIGHT;
+
+    private static final int HEAD_LENGTH = 8;
+
+    /**
+     * 按行提供亮度，编码时按需读取连续的若干行
+     */
+    public interface LumaRowSource {
+
+        /**
+         * 读取[fromRow, fromRow + rowCount)行的亮度
+         *
+         * @param luma   目标缓冲区，每行占用图片宽度的字节数
+         * @param offset 写入位置
+         */
+        void readRows(int fromRow, int rowCount, byte[] luma, int offset);
+    }
+
+    private final int m;
+    private final LumaRowSource source;
+    private final boolean floyd;
+    private final int width;
+    private final int height;
+
+    /**
+     * 每行字节数
+     */
+    private final int n;
+
+    /**
+     * 从source读取的亮度，误差扩散时多读一行
+     */
+    private final byte[] luma;
+
+    /**
+     * 当前段的二值化结果
+     */
+    private final byte[] mono;
+
+    /**
+     * 误差扩散的灰度值，第0行为上一段传递下来的行
+     */
+    private final int[] gray;
+
+    /**
+     * 平均亮度阈值，首次生成时计算
+     */
+    private int threshold = -1;
+
+    /**
+     * 下一段的起始行
+     */
+    private int row;
+
+    /**
+     * @param m      位图模式(GS v 0 的m参数)
+     * @param luma   亮度平面
+     * @param offset 第一个像素的位置
+     * @param stride 每行占用的字节数
+     * @param floyd  是否使用误差扩散，否则按平均亮度二值化
+     */
+    public RasterBandEncoder(int m, final byte[] luma, final int offset, final int stride, final int width, int height,
+                             boolean floyd) {
+        this(m, new LumaRowSource() {
+            @Override
+            public void readRows(int fromRow, int rowCount, byte[] dest, int destOffset) {
+                for (int y = 0; y < rowCount; ++y) {
+                    System.arraycopy(luma, offset + (fromRow + y) * stride, dest, destOffset + y * width, width);
+                }
+            }
+        }, width, height, floyd);
+    }
+
+    /**
+     * @param m      位图模式(GS v 0 的m参数)
+     * @param source 按行提供亮度；按平均亮度二值化时生成第一段前先完整读取一遍
+     * @param floyd  是否使用误差扩散，否则按平均亮度二值化
+     */
+    public RasterBandEncoder(int m, LumaRowSource source, int width, int height, boolean floyd) {
+        this.m = m;
+        this.source = source;
+        this.floyd = floyd;
+        this.width = width;
+        this.height = height;
+        this.n = (width + 7) / 8;
+        this.luma = new byte[(BAND_HEIGHT + 1) * width];
+        this.mono = new byte[BAND_HEIGHT * width];
+        this.gray = floyd ? new int[(BAND_HEIGHT + 1) * width] : null;
+    }
+
+    /**
+     * 总段数
+     */
+    public int getBandCount() {
+        return (this.height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+    }
+
+    /**
+     * 单段的最大字节数
+     */
+    public int getMaxBandLength() {
+        return HEAD_LENGTH + this.n * BAND_HEIGHT;
+    }
+
+    /**
+     * 全部段的字节数
+     */
+    public int getTotalLength() {
+        return RasterEngine.getRasterLength(this.width, this.height, 0);
+    }
+
+    public boolean hasNextBand() {
+        return this.row < this.height;
+    }
+
+    /**
+     * 生成下一段
+     */
+    public byte[] nextBand() {
+        byte[] band = new byte[HEAD_LENGTH + this.n * this.getNextBandHeight()];
+        this.nextBand(band, 0);
+        return band;
+    }
+
+    /**
+     * 生成下一段并写入指定缓冲区，缓冲区可以在各段之间复用
+     *
+     * @param dest   目标缓冲区，从offset开始至少需要{@link #getMaxBandLength()}字节的空间
+     * @param offset 写入位置
+     * @return 写入的字节数
+     */
+    public int nextBand(byte[] dest, int offset) {
+        if (!this.hasNextBand()) {
+            throw new IllegalStateException("图片已全部生成");
+        }
+
+        int partHeight = this.getNextBandHeight();
+        int length = HEAD_LENGTH + this.n * partHeight;
+        if (offset < 0 || dest.length - offset < length) {
+            throw new IllegalArgumentException("目标缓冲区空间不足，需要" + length + "字节");
+        }
+
+        int position = offset;
+        dest[position++] = 29;
+        dest[position++] = 118;
+        dest[position++] = 48;
+        dest[position++] = (byte) this.m;
+        dest[position++] = (byte) (this.n % 256);
+        dest[position++] = (byte) (this.n / 256);
+        dest[position++] = (byte) partHeight;
+        dest[position++] = 0;
+
+        if (this.floyd) {
+            this.ditherBand(partHeight);
+        } else {
+            this.thresholdBand(partHeight);
+        }
+        RasterEngine.packRows(this.mono, 0, this.width, this.width, 0, partHeight, false, dest, position);
+
+        this.row += partHeight;
+        return length;
+    }
+
+    private int getNextBandHeight() {
+        return Math.min(BAND_HEIGHT, this.height - this.row);
+    }
+
+    /**
+     * 误差扩散，与整图处理的扩散方向、系数和边界处理一致，段的最后一行把误差传递给下一段的第一行
+     */
+    private void ditherBand(int partHeight) {
+        int w = this.width;
+        int h = this.height;
+
+        if (this.row == 0) {
+            this.loadGray(0, 0, Math.min(partHeight + 1, h));
+        } else if (this.row + partHeight < h) {
+            this.loadGray(this.row + 1, 1, partHeight);
+        } else {
+            this.loadGray(this.row + 1, 1, partHeight - 1);
+        }
+
+        for (int y = 0; y < partHeight; ++y) {
+            RasterEngine.diffuseRow(this.gray, y * w, w, this.row + y == h - 1, 0, w, this.mono, y * w);
+        }
+
+        //已累积误差的下一行留给下一段
+        if (this.row + partHeight < h) {
+            System.arraycopy(this.gray, partHeight * w, this.gray, 0, w);
+        }
+    }
+
+    /**
+     * 读取亮度值
+     *
+     * @param fromRow  图片中的起始行
+     * @param toIndex  写入gray的起始行
+     * @param rowCount 行数
+     */
+    private void loadGray(int fromRow, int toIndex, int rowCount) {
+        if (rowCount <= 0) {
+            return;
+        }
+        this.source.readRows(fromRow, rowCount, this.luma, 0);
+        RasterEngine.loadGray(this.luma, 0, this.width, this.width, rowCount, this.gray, toIndex * this.width);
+    }
+
+    /**
+     * 按整张图片的平均亮度二值化，首次调用时先逐段读取整张图片计算平均亮度
+     */
+    private void thresholdBand(int partHeight) {
+        int w = this.width;
+        if (this.threshold < 0) {
+            long sum = 0;
+            for (int y = 0; y < this.height; y += BAND_HEIGHT) {
+                int rowCount = Math.min(BAND_HEIGHT, this.height - y);
+                this.source.readRows(y, rowCount, this.luma, 0);
+                sum += RasterEngine.sumLuma(this.luma, 0, w, w, rowCount);
+            }
+            this.threshold = RasterEngine.meanOf(sum, w, this.height);
+        }
+
+        this.source.readRows(this.row, partHeight, this.luma, 0);
+        RasterEngine.thresholdRows(this.luma, 0, w, w, partHeight, this.threshold, this.mono, 0);
+    }
+}
@@ -0,0 +1,568 @@
+package com.richard.printer.command;
+
+import com.richard.printer.utils.ParallelUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 位图转换核心
+ * 只处理int[] ARGB像素和byte[]亮度平面，不依赖Android，可以在普通JVM上测试、压测，也可以在服务器上预先生成位图指令；
+ * {@link BitmapToByteData}、{@link PrinterCmdUtil}中基于Bitmap的方法读取像素后交给这里处理。
+ * 平面通过offset(第一个像素的位置)和stride(每行占用的元素数)定位；亮度平面每个像素一个字节，按0-255读取，
+ * 二值化结果为stride等于宽度的亮度平面，0为黑色(打印)、255为白色
+ */
+public final class RasterEngine {
+
+    /**
+     * 并行转换的最小像素数，小于该值时在当前线程转换
+     */
+    public static final int PARALLEL_MIN_PIXELS = 128 * 1024;
+
+    /**
+     * GS v 0 每段的行数
+     */
+    public static final int RASTER_BAND_HEIGHT = 24;
+
+    private static final byte BLACK = 0;
+    private static final byte WHITE = (byte) 255;
+
+    private RasterEngine() {
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // 亮度平面
+
+    /**
+     * 获取已去色像素的亮度(红色通道)
+     */
+    public static byte[] lumaFromGrey(int[] argb, int offset, int stride, int width, int height) {
+        byte[] luma = new byte[width * height];
+        lumaFromGrey(argb, offset, stride, width, height, luma, 0);
+        return luma;
+    }
+
+    /**
+     * 获取已去色像素的亮度(红色通道)，写入目标缓冲区，每行占用width字节
+     *
+     * @param dest       目标缓冲区
+     * @param destOffset 写入位置
+     */
+    public static void lumaFromGrey(int[] argb, int offset, int stride, int width, int height, byte[] dest, int destOffset) {
+        for (int y = 0; y < height; ++y) {
+            int src = offset + y * stride;
+            int dst = destOffset + y * width;
+            for (int x = 0; x < width; ++x) {
+                dest[dst + x] = (byte) (argb[src + x] >> 16);
+            }
+        }
+    }
+
+    /**
+     * 彩色像素去色，系数与ColorMatrix.setSaturation(0)一致，透明部分按黑色底叠加；
+     * Android上绘制到RGB_565位图还有量化误差，结果与{@link BitmapToByteData}中的去色可能有1-2级亮度差别
+     */
+    public static byte[] lumaFromArgb(int[] argb, int offset, int stride, int width, int height) {
+        byte[] luma = new byte[width * height];
+        for (int y = 0; y < height; ++y) {
+            int src = offset + y * stride;
+            int dst = y * width;
+            for (int x = 0; x < width; ++x) {
+                int color = argb[src + x];
+                int alpha = color >>> 24;
+                int grey = (int) (0.213F * ((color >> 16) & 255) + 0.715F * ((color >> 8) & 255) + 0.072F * (color & 255) + 0.5F);
+                luma[dst + x] = (byte) ((grey * alpha + 127) / 255);
+            }
+        }
+        return luma;
+    }
+
+    /**
+     * 计算平均亮度，按整数累加，结果与逐个像素按double累加一致
+     */
+    public static int meanLuma(byte[] luma, int offset, int stride, int width, int height) {
+        return meanOf(sumLuma(luma, offset, stride, width, height), width, height);
+    }
+
+    /**
+     * 亮度累加值，按行块或分段累加后用{@link #meanOf}得到平均亮度
+     */
+    static long sumLuma(byte[] luma, int offset, int stride, int width, int height) {
+        long sum = 0;
+        for (int y = 0; y < height; ++y) {
+            int src = offset + y * stride;
+            for (int x = 0; x < width; ++x) {
+                sum += luma[src + x] & 255;
+            }
+        }
+        return sum;
+    }
+
+    static int meanOf(long lumaSum, int width, int height) {
+        return (int) ((double) lumaSum / (double) (width * height));
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // 二值化
+
+    /**
+     * 按平均亮度二值化，不低于平均值的为白色，其余为黑色
+     *
+     * @param executor 并行转换使用的线程池，为null或图片小于{@value #PARALLEL_MIN_PIXELS}像素时在当前线程转换
+     * @return 二值化平面
+     */
+    public static byte[] thresholdByMean(final byte[] luma, final int offset, final int stride, final int width, final int height,
+                                         ExecutorService executor) {
+        executor = parallelExecutor(executor, width, height);
+        final byte[] mono = new byte[width * height];
+        final AtomicLong lumaSum = new AtomicLong();
+        ParallelUtil.runParallel(executor, new RowBlockWorker(height, 32) {
+            @Override
+            void process(int fromRow, int toRow) {
+                lumaSum.addAndGet(sumLuma(luma, offset + fromRow * stride, stride, width, toRow - fromRow));
+            }
+        });
+
+        final int mean = meanOf(lumaSum.get(), width, height);
+        ParallelUtil.runParallel(executor, new RowBlockWorker(height, 32) {
+            @Override
+            void process(int fromRow, int toRow) {
+                thresholdRows(luma, offset + fromRow * stride, stride, width, toRow - fromRow, mean, mono, fromRow * width);
+            }
+        });
+        return mono;
+    }
+
+    /**
+     * 按阈值二值化若干行，不低于阈值的为白色，结果每行占用width字节
+     *
+     * @param offset     第一行第一个像素的位置
+     * @param rowCount   行数
+     * @param mono       二值化平面
+     * @param monoOffset 写入位置
+     */
+    static void thresholdRows(byte[] luma, int offset, int stride, int width, int rowCount, int threshold,
+                              byte[] mono, int monoOffset) {
+        for (int y = 0; y < rowCount; ++y) {
+            int src = offset + y * stride;
+            int dst = monoOffset + y * width;
+            for (int x = 0; x < width; ++x) {
+                mono[dst + x] = (luma[src + x] & 255) >= threshold ? WHITE : BLACK;
+            }
+        }
+    }
+
+    /**
+     * 读取误差扩散的灰度值，每行占用width个元素
+     *
+     * @param offset     第一行第一个像素的位置
+     * @param rowCount   行数
+     * @param gray       灰度缓冲区
+     * @param grayOffset 写入位置
+     */
+    static void loadGray(byte[] luma, int offset, int stride, int width, int rowCount, int[] gray, int grayOffset) {
+        for (int y = 0; y < rowCount; ++y) {
+            int src = offset + y * stride;
+            int dst = grayOffset + y * width;
+            for (int x = 0; x < width; ++x) {
+                gray[dst + x] = luma[src + x] & 255;
+            }
+        }
+    }
+
+    /**
+     * 对一行中[fromColumn, toColumn)的像素做Floyd-Steinberg误差扩散，误差累加到本行右侧和下一行(rowStart + width)；
+     * 按列的顺序分多次调用与一次处理整行的结果一致
+     *
+     * @param gray       灰度缓冲区，本行和下一行的灰度已读取
+     * @param rowStart   本行在灰度缓冲区中的位置
+     * @param lastRow    是否为图片的最后一行，最后一行不向下扩散
+     * @param mono       二值化平面
+     * @param monoOffset 本行在二值化平面中的位置
+     */
+    static void diffuseRow(int[] gray, int rowStart, int width, boolean lastRow, int fromColumn, int toColumn,
+                           byte[] mono, int monoOffset) {
+        int below = rowStart + width;
+        int e;
+        int g;
+        for (int j = fromColumn; j < toColumn; ++j) {
+            g = gray[rowStart + j];
+            if (g >= 128) {
+                mono[monoOffset + j] = WHITE;
+                e = g - 255;
+            } else {
+                mono[monoOffset + j] = BLACK;
+                e = g - 0;
+            }
+
+            if (j < width - 1 && !lastRow) {
+                gray[rowStart + j + 1] += 3 * e / 8;
+                gray[below + j] += 3 * e / 8;
+                gray[below + j + 1] += e / 4;
+            } else if (j == width - 1 && !lastRow) {
+                gray[below + j] += 3 * e / 8;
+            } else if (j < width - 1) {
+                gray[rowStart + j + 1] += e / 4;
+            }
+        }
+    }
+
+    /**
+     * Floyd-Steinberg误差扩散二值化
+     *
+     * @param executor 并行转换使用的线程池，为null或图片小于{@value #PARALLEL_MIN_PIXELS}像素时在当前线程转换
+     * @return 二值化平面
+     */
+    public static byte[] ditherFloyd(byte[] luma, int offset, int stride, int width, int height, ExecutorService executor) {
+        byte[] mono = new byte[width * height];
+        ParallelUtil.runParallel(parallelExecutor(executor, width, height), new FloydWorker(luma, offset, stride, width, height, mono));
+        return mono;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // 打包
+
+    /**
+     * 按行打包位图数据，亮度为0的像素为1(打印)，每行末尾不足8位的部分补0；直接赋值，目标区域无需清零
+     *
+     * @param inverted 是否按位取反(亮度不为0的像素为1，末尾补1)
+     * @return 写入的字节数
+     */
+    public static int packRows(byte[] mono, int offset, int stride, int width, int fromRow, int toRow, boolean inverted,
+                               byte[] dest, int destOffset) {
+        int position = destOffset;
+        int remainder = width % 8;
+        int mask = inverted ? 255 : 0;
+        for (int y = fromRow; y < toRow; ++y) {
+            int rowStart = offset + y * stride;
+            int bits = 0;
+            for (int x = 0; x < width; ++x) {
+                bits <<= 1;
+                if (mono[rowStart + x] == 0) {
+                    bits |= 1;
+                }
+                if (x % 8 == 7) {
+                    dest[position++] = (byte) (bits ^ mask);
+                    bits = 0;
+                }
+            }
+            if (remainder != 0) {
+                dest[position++] = (byte) ((bits << (8 - remainder)) ^ mask);
+            }
+        }
+        return position - destOffset;
+    }
+
+    /**
+     * 获取光栅位图指令的字节长度
+     *
+     * @param prefixLength 每段前附加的指令长度
+     */
+    public static int getRasterLength(int width, int height, int prefixLength) {
+        int n = (width + 7) / 8;
+        int x = (height + RASTER_BAND_HEIGHT - 1) / RASTER_BAND_HEIGHT;
+        return x * (prefixLength + 8) + n * height;
+    }
+
+    /**
+     * 生成光栅位图指令，参考{@link #packRaster(int, byte[], int, int, int, int, byte[], byte[], int, ExecutorService)}
+     */
+    public static byte[] packRaster(int m, byte[] mono, int offset, int stride, int width, int height, byte[] prefix,
+                                    ExecutorService executor) {
+        byte[] data = new byte[getRasterLength(width, height, prefix == null ? 0 : prefix.length)];
+        packRaster(m, mono, offset, stride, width, height, prefix, data, 0, executor);
+        return data;
+    }
+
+    /**
+     * 生成光栅位图指令，每{@value #RASTER_BAND_HEIGHT}行一段：附加指令(可选) + GS v 0 段头 + 位图数据；
+     * 各段的写入位置固定，大图片在线程池中并行打包
+     *
+     * @param m          位图模式(GS v 0 的m参数)
+     * @param prefix     每段前附加的指令(如定位指令)，可为空
+     * @param dest       目标缓冲区，从destOffset开始至少需要{@link #getRasterLength}字节的空间
+     * @param destOffset 写入位置
+     * @param executor   并行打包使用的线程池，可为空
+     * @return 写入的字节数
+     */
+    public static int packRaster(final int m, final byte[] mono, final int offset, final int stride, final int width, final int height,
+                                 final byte[] prefix, final byte[] dest, final int destOffset, ExecutorService executor) {
+        final int n = (width + 7) / 8;
+        final int prefixLength = prefix == null ? 0 : prefix.length;
+        final int bandLength = prefixLength + 8 + RASTER_BAND_HEIGHT * n;
+        final int length = getRasterLength(width, height, prefixLength);
+        if (destOffset < 0 || dest.length - destOffset < length) {
+            throw new IllegalArgumentException("目标缓冲区空间不足，需要" + length + "字节");
+        }
+
+        ParallelUtil.runParallel(parallelExecutor(executor, width, height), new RowBlockWorker(height, RASTER_BAND_HEIGHT) {
+            @Override
+            void process(int fromRow, int toRow) {
+                int position = destOffset + fromRow / RASTER_BAND_HEIGHT * bandLength;
+                if (prefix != null) {
+                    System.arraycopy(prefix, 0, dest, position, prefixLength);
+                    position += prefixLength;
+                }
+
+                dest[position++] = 29;
+                dest[position++] = 118;
+                dest[position++] = 48;
+                dest[position++] = (byte) m;
+                dest[position++] = (byte) (n % 256);
+                dest[position++] = (byte) (n / 256);
+                dest[position++] = (byte) (toRow - fromRow);
+                dest[position++] = 0;
+
+                packRows(mono, offset, stride, width, fromRow, toRow, false, dest, position);
+            }
+        });
+        return length;
+    }
+
+    /**
+     * 生成8点位图指令(ESC * m)，每8行一段，每段后走纸16点；超出图片的部分和图片的最后一个像素按白色处理
+     *
+     * @param m 位图模式(ESC * 的m参数)
+     */
+    public static byte[] packBitImage(int m, byte[] mono, int offset, int stride, int width, int height) {
+        int bands = (height + 7) / 8;
+        byte[] data = new byte[bands * (width + 8)];
+        int position = 0;
+        for (int i = 0; i < bands; ++i) {
+            data[position++] = 27;
+            data[position++] = 42;
+            data[position++] = (byte) m;
+            data[position++] = (byte) (width % 256);
+            data[position++] = (byte) (width / 256);
+
+            for (int x = 0; x < width; ++x) {
+                int bits = 0;
+                for (int y = 0; y < 8; ++y) {
+                    int row = 8 * i + y;
+                    boolean white = row >= height || (row == height - 1 && x == width - 1)
+                            || mono[offset + row * stride + x] != 0;
+                    if (!white) {
+                        bits |= 128 >> y;
+                    }
+                }
+                data[position++] = (byte) bits;
+            }
+
+            data[position++] = 27;
+            data[position++] = 74;
+            data[position++] = 16;
+        }
+        return data;
+    }
+
+    /**
+     * 逐行提供彩色像素，转换时每次只需要一行的缓冲区
+     */
+    public interface ArgbRowSource {
+
+        /**
+         * 读取第y行的ARGB像素
+         *
+         * @param y   行号
+         * @param row 目标缓冲区，长度为图片宽度
+         */
+        void readRow(int y, int[] row);
+    }
+
+    /**
+     * 彩色像素直接生成光栅位图指令，参考{@link #toRasterDataList(ArgbRowSource, int, int, boolean, int)}
+     */
+    public static ArrayList<byte[]> toRasterDataList(final int[] argb, final int offset, final int stride, int width, int height,
+                                                     boolean hasAlpha, int parting) {
+        return toRasterDataList(new ArgbRowSource() {
+            @Override
+            public void readRow(int y, int[] row) {
+                System.arraycopy(argb, offset + y * stride, row, 0, row.length);
+            }
+        }, width, height, hasAlpha, parting);
+    }
+
+    /**
+     * 彩色像素直接生成光栅位图指令，接近白色(RGB均大于160)的像素为白色，其余为黑色，带透明度时先与白色叠加；
+     * 高度每parting行分为一段，每段为一个段头和每行一个数据块
+     *
+     * @param rows     按行读取的像素，依次读取每一行
+     * @param hasAlpha 是否按透明度叠加
+     * @param parting  高度分割值(1-255)
+     * @return 指令列表，宽度超过2040像素时返回null，需要先缩放
+     */
+    public static ArrayList<byte[]> toRasterDataList(ArgbRowSource rows, int width, int height, boolean hasAlpha,
+                                                     int parting) {
+        if (parting <= 0 || parting > 255) {
+            parting = 255;
+        }
+        if (width <= 0 || height <= 0 || width > 2040) {
+            return null;
+        }
+
+        // 每行字节数(除以8，不足补0)
+        final int bytesPerRow = width % 8 == 0 ? width / 8 : (width / 8 + 1);
+        final int[] pixels = new int[width];
+        ArrayList<byte[]> data = new ArrayList<>();
+        // 高度每parting像素进行一次分割
+        int time = height % parting == 0 ? height / parting : (height / parting + 1);// 循环打印次数
+        for (int t = 0; t < time; t++) {
+            int partHeight = t == time - 1 ? height % parting : parting;// 分段高度
+
+            // 宽高指令 GS v 0
+            data.add(new byte[]{0x1D, 0x76, 0x30, 0x00, (byte) bytesPerRow, 0x00, (byte) partHeight, 0x00});
+
+            for (int i = 0; i < partHeight; i++) {
+                // 实际在图片中的高度
+                rows.readRow(t * parting + i, pixels);
+                // 每行结束时不足8位的部分保持为0
+                byte[] row = new byte[bytesPerRow];
+                for (int j = 0; j < width; j++) {
+                    if (isBlackPixel(pixels[j], hasAlpha)) {
+                        row[j >> 3] |= (byte) (0x80 >> (j & 7));
+                    }
+                }
+                data.add(row);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 像素二值化，非黑即白
+     *
+     * @param color    像素值
+     * @param hasAlpha 是否按透明度叠加
+     * @return 是否为黑色
+     */
+    private static boolean isBlackPixel(int color, boolean hasAlpha) {
+        //得到图像的像素RGB的值
+        int red = (color >> 16) & 0xFF;
+        int green = (color >> 8) & 0xFF;
+        int blue = color & 0xFF;
+        if (hasAlpha) {
+            final float offset = (color >>> 24) / 255.0f;
+            // 根据透明度将白色与原色叠加
+            red = 0xFF + (int) Math.ceil((red - 0xFF) * offset);
+            green = 0xFF + (int) Math.ceil((green - 0xFF) * offset);
+            blue = 0xFF + (int) Math.ceil((blue - 0xFF) * offset);
+        }
+        // 接近白色改为白色。其余黑色
+        return !(red > 160 && green > 160 && blue > 160);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // 并行
+
+    private static ExecutorService parallelExecutor(ExecutorService executor, int width, int height) {
+        return executor != null && (long) width * height >= PARALLEL_MIN_PIXELS ? executor : null;
+    }
+
+    /**
+     * 按行块领取任务，各块互不依赖
+     */
+    private abstract static class RowBlockWorker implements Runnable {
+        private final int height;
+        private final int blockRows;
+        private final AtomicInteger nextBlock = new AtomicInteger();
+
+        RowBlockWorker(int height, int blockRows) {
+            this.height = height;
+            this.blockRows = blockRows;
+        }
+
+        @Override
+        public void run() {
+            int fromRow;
+            while ((fromRow = this.nextBlock.getAndIncrement() * this.blockRows) < this.height) {
+                this.process(fromRow, Math.min(fromRow + this.blockRows, this.height));
+            }
+        }
+
+        abstract void process(int fromRow, int toRow);
+    }
+
+    /**
+     * 误差扩散按行领取任务(波前并行)
+     * 第i行的第j个像素依赖第i-1行第j、j+1列扩散下来的误差，所以每一行都落后上一行至少两列；
+     * 每行只由一个线程处理，各行的处理顺序和误差累加的结果都与逐行处理一致
+     */
+    private static final class FloydWorker implements Runnable {
+
+        /**
+         * 每处理多少列公布一次进度
+         */
+        private static final int STEP = 32;
+
+        private final byte[] luma;
+        private final int offset;
+        private final int stride;
+        private final int width;
+        private final int height;
+        private final byte[] mono;
+        private final int[] gray;
+        private final AtomicInteger nextRow = new AtomicInteger();
+
+        /**
+         * 每行已处理完的列数
+         */
+        private final AtomicIntegerArray progress;
+
+        FloydWorker(byte[] luma, int offset, int stride, int width, int height, byte[] mono) {
+            this.luma = luma;
+            this.offset = offset;
+            this.stride = stride;
+            this.width = width;
+            this.height = height;
+            this.mono = mono;
+            this.gray = new int[height * width];
+            this.progress = new AtomicIntegerArray(height);
+        }
+
+        @Override
+        public void run() {
+            int i;
+            while ((i = this.nextRow.getAndIncrement()) < this.height) {
+                this.ditherRow(i);
+            }
+        }
+
+        private void ditherRow(int i) {
+            int width = this.width;
+            int height = this.height;
+
+            //第0行和下一行的灰度在本行开始前读取，下一行开始处理前一定能看到
+            if (i == 0) {
+                this.loadGray(0);
+            }
+            if (i < height - 1) {
+                this.loadGray(i + 1);
+            }
+
+            for (int j = 0; j < width; j += STEP) {
+                if (j > 0) {
+                    this.progress.set(i, j);
+                }
+                if (i > 0) {
+                    this.awaitProgress(i - 1, Math.min(j + STEP + 1, width));
+                }
+                diffuseRow(this.gray, width * i, width, i == height - 1, j, Math.min(j + STEP, width), this.mono, width * i);
+            }
+            this.progress.set(i, width);
+        }
+
+        private void loadGray(int row) {
+            RasterEngine.loadGray(this.luma, this.offset + row * this.stride, this.stride, this.width, 1, this.gray, row * this.width);
+        }
+
+        private void awaitProgress(int row, int columns) {
+            while (this.progress.get(row) < columns) {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.richard.printer.enumerate;
+
+/**
+ * 表格列排版方式
+ */
+public enum LayoutMode {
+
+    /**
+     * 以空格填充列的空白部分
+     */
+    PADDING,
+
+    /**
+     * 按列宽设置水平制表位(ESC D)，列的空白部分以制表符(HT)跳到下一列；
+     * 右对齐、居中的前导空白和制表位无法表示的情况仍以空格填充
+     */
+    TAB_STOP,
+
+    /**
+     * 按点计算每列文本的位置，以绝对位置指令(ESC $)定位，行尾定位到最后一个字符后补一个空格结束该行；
+     * 右对齐的金额列不需要前导空格，居中也更精确。字符宽度按小票规格的点宽度计算，
+     * 添加过改变字体或字符间距的指令后改用空格填充
+     */
+    ABSOLUTE_POSITION
+
+}
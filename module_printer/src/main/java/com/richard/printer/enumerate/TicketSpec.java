@@ -7,9 +7,22 @@ package com.richard.printer.enumerate;
  * description: 打印机相关错误码
  */
 public enum TicketSpec {
-    SPEC_80,
+    SPEC_80(576),
     //    SPEC_76,
-    SPEC_58;
+    SPEC_58(384);
+
+    /**
+     * 一行的可打印宽度(点)
+     */
+    private final int dotWidth;
+
+    TicketSpec(int dotWidth) {
+        this.dotWidth = dotWidth;
+    }
+
+    public int getDotWidth() {
+        return dotWidth;
+    }
 
     /**
      * 解析成小票规格枚举类型
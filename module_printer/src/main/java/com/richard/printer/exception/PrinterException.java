@@ -12,6 +12,10 @@ public class PrinterException extends Exception{
         super(message);
     }
 
+    public PrinterException(String message, Throwable cause){
+        super(message, cause);
+    }
+
     @Override
     public synchronized Throwable fillInStackTrace() {
         return this;
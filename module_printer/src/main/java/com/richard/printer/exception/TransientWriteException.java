@@ -0,0 +1,21 @@
+package com.richard.printer.exception;
+
+import java.io.IOException;
+
+/**
+ * 写入暂时失败，并且确定没有任何数据发出，可以整块重发而不会使数据重复
+ * 其它IOException无法得知失败前已发出多少字节，不能重发
+ */
+public class TransientWriteException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TransientWriteException(String message) {
+        super(message);
+    }
+
+    public TransientWriteException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -64,6 +64,36 @@ public class PortInfo implements Serializable {
      */
     private boolean isOpened;
 
+    /**
+     * 网络端口是否使用NIO SocketChannel发送
+     */
+    private boolean ethernetChannelMode;
+
+    /**
+     * 网络端口是否开启TCP_NODELAY，默认开启；打印任务已合并写入，关闭后任务末尾不足一个报文段的数据会被Nagle算法延迟发送
+     */
+    private boolean tcpNoDelay;
+
+    /**
+     * 网络端口发送缓冲区大小，0表示使用系统默认值
+     */
+    private int sendBufferSize;
+
+    /**
+     * 流控窗口字节数，每发送该数量的数据等待打印机处理完再继续，0表示不启用流控
+     */
+    private int flowControlWindow;
+
+    /**
+     * 蓝牙SPP单次发送的数据块大小，0表示使用默认值
+     */
+    private int bluetoothChunkSize;
+
+    /**
+     * 蓝牙SPP发送速率（字节/秒），0表示不限速
+     */
+    private int bluetoothByteRate;
+
     public PortInfo() {
         this.portType = PortType.Unknown;
         this.usbPathName = "";
@@ -75,6 +105,24 @@ public class PortInfo implements Serializable {
         this.parIsOK = false;
         this.context = null;
         this.isOpened = false;
+        this.ethernetChannelMode = false;
+        this.tcpNoDelay = true;
+        this.sendBufferSize = 0;
+        this.flowControlWindow = 0;
+        this.bluetoothChunkSize = 0;
+        this.bluetoothByteRate = 0;
+    }
+
+    /**
+     * 复制端口传输相关配置(不包含连接地址)
+     */
+    public void copyOptions(PortInfo portInfo) {
+        this.ethernetChannelMode = portInfo.ethernetChannelMode;
+        this.tcpNoDelay = portInfo.tcpNoDelay;
+        this.sendBufferSize = portInfo.sendBufferSize;
+        this.flowControlWindow = portInfo.flowControlWindow;
+        this.bluetoothChunkSize = portInfo.bluetoothChunkSize;
+        this.bluetoothByteRate = portInfo.bluetoothByteRate;
     }
 
     public Context getContext() {
@@ -156,4 +204,52 @@ public class PortInfo implements Serializable {
     public void setOpened(boolean opened) {
         isOpened = opened;
     }
+
+    public boolean isEthernetChannelMode() {
+        return ethernetChannelMode;
+    }
+
+    public void setEthernetChannelMode(boolean ethernetChannelMode) {
+        this.ethernetChannelMode = ethernetChannelMode;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public int getFlowControlWindow() {
+        return flowControlWindow;
+    }
+
+    public void setFlowControlWindow(int flowControlWindow) {
+        this.flowControlWindow = flowControlWindow;
+    }
+
+    public int getBluetoothChunkSize() {
+        return bluetoothChunkSize;
+    }
+
+    public void setBluetoothChunkSize(int bluetoothChunkSize) {
+        this.bluetoothChunkSize = bluetoothChunkSize;
+    }
+
+    public int getBluetoothByteRate() {
+        return bluetoothByteRate;
+    }
+
+    public void setBluetoothByteRate(int bluetoothByteRate) {
+        this.bluetoothByteRate = bluetoothByteRate;
+    }
 }
@@ -36,9 +36,11 @@ public class ReturnMessage {
         this.mErrorCode = ec;
         this.mErrorStrings = es;
         switch (ec) {
-            case ReadDataSuccess:
+            case WriteDataSuccess:
+            case WriteDataFailed:
                 this.mWriteBytes = count;
                 break;
+            case ReadDataSuccess:
             case ReadDataFailed:
                 this.mReadBytes = count;
         }
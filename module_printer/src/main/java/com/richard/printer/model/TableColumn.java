@@ -0,0 +1,86 @@
+package com.richard.printer.model;
+
+import com.richard.printer.enumerate.Align;
+import com.richard.printer.enumerate.EllipsizeMode;
+
+import java.io.Serializable;
+
+/**
+ * 表格列定义，同一表格的所有行共用
+ */
+public class TableColumn implements Serializable {
+
+    private static final long serialVersionUID = 3861750419287412539L;
+
+    /**
+     * 列占宽权重
+     */
+    private float widthWeigh;
+
+    /**
+     * 是否加粗
+     */
+    private boolean isBold;
+
+    /**
+     * 文本显示模式,详见EllipsizeMode
+     *
+     * @see EllipsizeMode
+     */
+    private EllipsizeMode ellipsizeMode = EllipsizeMode.LINE;
+
+    /**
+     * 对齐方式 详见Align
+     *
+     * @see Align
+     */
+    private Align align = Align.LEFT;
+
+    public TableColumn(float widthWeigh) {
+        this.widthWeigh = widthWeigh;
+    }
+
+    public TableColumn(float widthWeigh, Align align) {
+        this.widthWeigh = widthWeigh;
+        this.align = align;
+    }
+
+    public TableColumn(float widthWeigh, boolean isBold, EllipsizeMode ellipsizeMode, Align align) {
+        this.widthWeigh = widthWeigh;
+        this.isBold = isBold;
+        this.ellipsizeMode = ellipsizeMode;
+        this.align = align;
+    }
+
+    public float getWidthWeigh() {
+        return widthWeigh;
+    }
+
+    public void setWidthWeigh(float widthWeigh) {
+        this.widthWeigh = widthWeigh;
+    }
+
+    public boolean isBold() {
+        return isBold;
+    }
+
+    public void setBold(boolean bold) {
+        isBold = bold;
+    }
+
+    public EllipsizeMode getEllipsizeMode() {
+        return ellipsizeMode;
+    }
+
+    public void setEllipsizeMode(EllipsizeMode ellipsizeMode) {
+        this.ellipsizeMode = ellipsizeMode;
+    }
+
+    public Align getAlign() {
+        return align;
+    }
+
+    public void setAlign(Align align) {
+        this.align = align;
+    }
+}
@@ -11,7 +11,7 @@ import com.richard.printer.model.PortInfo;
 import com.richard.printer.model.ReturnMessage;
 
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -23,10 +23,21 @@ import java.util.UUID;
 public class BluetoothPort extends PrinterPort {
 
     private final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    /**
+     * 单次写入的最大字节数，蓝牙低速链路不宜过大
+     */
+    private static final int WRITE_CHUNK_SIZE = 1024;
+
+    /**
+     * 超时读取时轮询输入流的间隔（毫秒）
+     */
+    private static final int READ_POLL_INTERVAL = 10;
+
     private BluetoothAdapter mBtAdapter = null;
     private BluetoothDevice mBtDevice = null;
     private BluetoothSocket mBtSocket = null;
-    private OutputStream mOutPut = null;
+    private SppOutputStream mOutPut = null;
     private InputStream mInPut = null;
 
     public BluetoothPort(PortInfo portInfo) {
@@ -61,9 +72,11 @@ public class BluetoothPort extends PrinterPort {
             this.mBtSocket = this.mBtDevice.createRfcommSocketToServiceRecord(this.SPP_UUID);
             this.mBtSocket.connect();
             this.mOutPut = null;
-            this.mOutPut = this.mBtSocket.getOutputStream();
+            this.mOutPut = new SppOutputStream(this.mBtSocket.getOutputStream(),
+                    this.mPortInfo.getBluetoothChunkSize(), this.mPortInfo.getBluetoothByteRate());
             this.mInPut = null;
             this.mInPut = this.mBtSocket.getInputStream();
+            this.resetFlowControl();
             this.mIsOpen = true;
         } catch (Exception var2) {
             return new ReturnMessage(ErrorCode.OpenPortFailed, var2.toString());
@@ -74,6 +87,7 @@ public class BluetoothPort extends PrinterPort {
 
     @Override
     public ReturnMessage closePort() {
+        this.resetFlowControl();
         try {
             if (this.mOutPut != null) {
                 this.mOutPut.flush();
@@ -95,34 +109,12 @@ public class BluetoothPort extends PrinterPort {
 
     @Override
     public ReturnMessage write(int data) {
-        if (this.mIsOpen && this.mBtSocket.isConnected() && this.mOutPut != null) {
-            try {
-                this.mOutPut.write(data);
-            } catch (Exception var3) {
-                this.closePort();
-                return new ReturnMessage(ErrorCode.WriteDataFailed, var3.toString());
-            }
-
-            return new ReturnMessage(ErrorCode.WriteDataSuccess, "Send 1 byte .\n", 1);
-        } else {
-            return new ReturnMessage(ErrorCode.WriteDataFailed, "bluetooth port was close !\n");
-        }
+        return this.write(new byte[]{(byte) (data & 255)}, 0, 1);
     }
 
     @Override
     public ReturnMessage write(byte[] data) {
-        if (this.mIsOpen && this.mBtSocket.isConnected() && this.mOutPut != null) {
-            try {
-                this.mOutPut.write(data);
-            } catch (Exception var3) {
-                this.closePort();
-                return new ReturnMessage(ErrorCode.WriteDataFailed, var3.toString());
-            }
-
-            return new ReturnMessage(ErrorCode.WriteDataSuccess, "Send " + data.length + " bytes .\n", data.length);
-        } else {
-            return new ReturnMessage(ErrorCode.WriteDataFailed, "bluetooth port was close !\n");
-        }
+        return this.write(data, 0, data.length);
     }
 
     @Override
@@ -130,7 +122,9 @@ public class BluetoothPort extends PrinterPort {
         if (this.mIsOpen && this.mBtSocket.isConnected() && this.mOutPut != null) {
             try {
                 this.mOutPut.write(data, offset, count);
+                this.mOutPut.flush();
             } catch (Exception var5) {
+                this.closeAfterWriteFailed();
                 return new ReturnMessage(ErrorCode.WriteDataFailed, var5.toString());
             }
 
@@ -141,6 +135,42 @@ public class BluetoothPort extends PrinterPort {
         }
     }
 
+    /**
+     * 合并写入数据，所有数据块写入SPP输出流后只刷新一次，由输出流按块大小和速率发送
+     *
+     * @param data 数据列表
+     */
+    @Override
+    public ReturnMessage write(List<byte[]> data) {
+        if (this.mPortInfo.getFlowControlWindow() > 0) {
+            //开启流控时需要按窗口分段发送
+            return super.write(data);
+        }
+
+        if (!this.mIsOpen || !this.mBtSocket.isConnected() || this.mOutPut == null) {
+            return new ReturnMessage(ErrorCode.WriteDataFailed, "bluetooth port was close !\n");
+        }
+
+        int totalCount = 0;
+        if (data != null) {
+            try {
+                for (byte[] item : data) {
+                    if (item == null || item.length <= 0) {
+                        continue;
+                    }
+                    this.mOutPut.write(item, 0, item.length);
+                    totalCount += item.length;
+                }
+                this.mOutPut.flush();
+            } catch (Exception var5) {
+                this.closeAfterWriteFailed();
+                return new ReturnMessage(ErrorCode.WriteDataFailed, var5.toString());
+            }
+        }
+
+        return new ReturnMessage(ErrorCode.WriteDataSuccess, "Send " + totalCount + " bytes .\n", totalCount);
+    }
+
     @Override
     public ReturnMessage read(byte[] buffer, int offset, int count) {
         if (this.mIsOpen && this.mBtSocket.isConnected() && this.mInPut != null) {
@@ -176,6 +206,52 @@ public class BluetoothPort extends PrinterPort {
         }
     }
 
+    /**
+     * SPP输出流写入失败(不可重发的异常或重试次数用完)，认为连接已断开，丢弃未发送的数据后关闭端口
+     */
+    private void closeAfterWriteFailed() {
+        if (this.mOutPut != null) {
+            this.mOutPut.discardBuffer();
+        }
+        this.closePort();
+    }
+
+    @Override
+    public int getWriteChunkSize() {
+        return WRITE_CHUNK_SIZE;
+    }
+
+    /**
+     * 蓝牙输入流不支持读超时，轮询available()直到有数据或超时
+     */
+    @Override
+    protected int readWithTimeout(int timeoutMillis) {
+        if (!this.mIsOpen || this.mInPut == null) {
+            return -1;
+        }
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            while (this.mInPut.available() <= 0) {
+                if (System.currentTimeMillis() >= deadline) {
+                    return -1;
+                }
+                Thread.sleep(READ_POLL_INTERVAL);
+            }
+            return this.mInPut.read();
+        } catch (InterruptedException var4) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (Exception var5) {
+            return -1;
+        }
+    }
+
+    @Override
+    protected void discardInput() {
+        EthernetPort.discardAvailable(this.mInPut);
+    }
+
     @Override
     public boolean portIsOpen() {
         byte[] b = new byte[4];
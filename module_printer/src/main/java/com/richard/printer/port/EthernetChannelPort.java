@@ -0,0 +1,297 @@
+package com.richard.printer.port;
+
+import com.richard.printer.enumerate.ErrorCode;
+import com.richard.printer.enumerate.PortType;
+import com.richard.printer.model.PortInfo;
+import com.richard.printer.model.ReturnMessage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/**
+ * 基于NIO SocketChannel的网络端口连接实现
+ * 合并写入时使用聚集写(gathering write)，整个打印任务只需一到两次系统调用
+ */
+public class EthernetChannelPort extends PrinterPort {
+
+    private static final int CONNECT_NET_PORT_TIMEOUT = 10000;
+
+    /**
+     * 单次写入的最大字节数
+     */
+    private static final int WRITE_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 单次聚集写的最大缓冲区数量(不超过系统IOV_MAX)
+     */
+    private static final int MAX_GATHER_BUFFERS = 512;
+
+    private InetAddress mInetAddress;
+    private SocketChannel mChannel;
+    private InputStream mInput;
+
+    public EthernetChannelPort(PortInfo portInfo) {
+        super(portInfo);
+        if (portInfo.getPortType() == PortType.Ethernet && portInfo.getEthernetPort() > 0) {
+            try {
+                this.mInetAddress = Inet4Address.getByName(portInfo.getEthernetIP());
+                this.mPortInfo.setParIsOK(true);
+            } catch (Exception var4) {
+                this.mPortInfo.setParIsOK(false);
+            }
+        } else {
+            this.mPortInfo.setParIsOK(false);
+        }
+    }
+
+    @Override
+    public ReturnMessage openPort() {
+        if (!this.mPortInfo.isParIsOK()) {
+            return new ReturnMessage(ErrorCode.OpenPortFailed, "PortInfo error !\n");
+        }
+
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            Socket socket = channel.socket();
+            socket.setTcpNoDelay(this.mPortInfo.isTcpNoDelay());
+            if (this.mPortInfo.getSendBufferSize() > 0) {
+                socket.setSendBufferSize(this.mPortInfo.getSendBufferSize());
+            }
+            socket.connect(new InetSocketAddress(this.mInetAddress, this.mPortInfo.getEthernetPort()),
+                    CONNECT_NET_PORT_TIMEOUT);
+
+            this.mChannel = channel;
+            this.mInput = socket.getInputStream();
+            this.resetFlowControl();
+            this.mIsOpen = true;
+        } catch (Exception var3) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+            return new ReturnMessage(ErrorCode.OpenPortFailed, var3.toString());
+        }
+
+        return new ReturnMessage(ErrorCode.OpenPortSuccess, "Open ethernet channel success !\n");
+    }
+
+    @Override
+    public ReturnMessage closePort() {
+        this.resetFlowControl();
+        try {
+            if (this.mChannel != null) {
+                this.mChannel.close();
+            }
+
+            this.mIsOpen = false;
+            this.mChannel = null;
+            this.mInput = null;
+        } catch (Exception var2) {
+            return new ReturnMessage(ErrorCode.ClosePortFailed, var2.toString());
+        }
+
+        return new ReturnMessage(ErrorCode.ClosePortSuccess, "Close ethernet channel success !\n");
+    }
+
+    @Override
+    public ReturnMessage write(int data) {
+        return this.write(new byte[]{(byte) (data & 255)}, 0, 1);
+    }
+
+    @Override
+    public ReturnMessage write(byte[] data) {
+        return this.write(data, 0, data.length);
+    }
+
+    @Override
+    public ReturnMessage write(byte[] data, int offset, int count) {
+        if (!this.isChannelConnected()) {
+            return new ReturnMessage(ErrorCode.WriteDataFailed, "Ethernet channel was close !\n");
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, count);
+            while (buffer.hasRemaining()) {
+                this.mChannel.write(buffer);
+            }
+        } catch (Exception var5) {
+            return new ReturnMessage(ErrorCode.WriteDataFailed, var5.toString());
+        }
+
+        return new ReturnMessage(ErrorCode.WriteDataSuccess, "Send " + count + " bytes .\n", count);
+    }
+
+    /**
+     * 聚集写入数据，不合并复制，直接把所有数据块交给一次系统调用发送
+     *
+     * @param data 数据列表
+     */
+    @Override
+    public ReturnMessage write(List<byte[]> data) {
+        if (this.mPortInfo.getFlowControlWindow() > 0) {
+            //开启流控时需要按窗口分段发送
+            return super.write(data);
+        }
+
+        if (!this.isChannelConnected()) {
+            return new ReturnMessage(ErrorCode.WriteDataFailed, "Ethernet channel was close !\n");
+        }
+
+        if (data == null || data.isEmpty()) {
+            return new ReturnMessage(ErrorCode.WriteDataSuccess, "Send 0 bytes .\n", 0);
+        }
+
+        ByteBuffer[] buffers = new ByteBuffer[Math.min(data.size(), MAX_GATHER_BUFFERS)];
+        int bufferCount = 0;
+        long totalCount = 0;
+
+        try {
+            for (byte[] item : data) {
+                if (item == null || item.length <= 0) {
+                    continue;
+                }
+
+                buffers[bufferCount++] = ByteBuffer.wrap(item);
+                if (bufferCount == buffers.length) {
+                    totalCount += this.gatheringWrite(buffers, bufferCount);
+                    bufferCount = 0;
+                }
+            }
+
+            if (bufferCount > 0) {
+                totalCount += this.gatheringWrite(buffers, bufferCount);
+            }
+        } catch (Exception var7) {
+            return new ReturnMessage(ErrorCode.WriteDataFailed, var7.toString());
+        }
+
+        return new ReturnMessage(ErrorCode.WriteDataSuccess, "Send " + totalCount + " bytes .\n", (int) totalCount);
+    }
+
+    /**
+     * 阻塞模式下的channel写入会一次写完，无需再分块(开启流控时除外)
+     */
+    @Override
+    public ReturnMessage writeChunked(byte[] data, int offset, int count) {
+        if (this.mPortInfo.getFlowControlWindow() > 0) {
+            return super.writeChunked(data, offset, count);
+        }
+        return this.write(data, offset, count);
+    }
+
+    @Override
+    public ReturnMessage read(byte[] buffer, int offset, int count) {
+        if (!this.isChannelConnected() || this.mInput == null) {
+            return new ReturnMessage(ErrorCode.ReadDataFailed, "Ethernet channel was close !\n");
+        }
+
+        int readBytes;
+        try {
+            readBytes = this.mInput.read(buffer, offset, count);
+            if (readBytes == -1) {
+                return new ReturnMessage(ErrorCode.ReadDataFailed, "Ethernet channel was close !\n");
+            }
+        } catch (Exception var6) {
+            return new ReturnMessage(ErrorCode.ReadDataFailed, var6.toString());
+        }
+
+        return new ReturnMessage(ErrorCode.ReadDataSuccess, "Read " + readBytes + " bytes .\n", readBytes);
+    }
+
+    @Override
+    public ReturnMessage read(byte[] buffer) {
+        return this.read(buffer, 0, buffer.length);
+    }
+
+    @Override
+    public int read() {
+        if (!this.isChannelConnected() || this.mInput == null) {
+            return -1;
+        }
+
+        try {
+            return this.mInput.read();
+        } catch (Exception var2) {
+            return -1;
+        }
+    }
+
+    @Override
+    public int getWriteChunkSize() {
+        return WRITE_CHUNK_SIZE;
+    }
+
+    @Override
+    protected int readWithTimeout(int timeoutMillis) {
+        if (!this.isChannelConnected() || this.mInput == null) {
+            return -1;
+        }
+
+        Socket socket = this.mChannel.socket();
+        try {
+            socket.setSoTimeout(timeoutMillis);
+            return this.mInput.read();
+        } catch (SocketTimeoutException var4) {
+            return -1;
+        } catch (Exception var5) {
+            return -1;
+        } finally {
+            try {
+                socket.setSoTimeout(0);
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    @Override
+    protected void discardInput() {
+        EthernetPort.discardAvailable(this.mInput);
+    }
+
+    /**
+     * 检测已打开的连接是否仍然有效，参考{@link EthernetPort#checkHeldSocket}
+     */
+    @Override
+    public boolean portIsOpen() {
+        this.mIsOpen = this.isChannelConnected()
+                && EthernetPort.checkHeldSocket(this, this.mChannel.socket(), this.mInput);
+        return this.mIsOpen;
+    }
+
+    @Override
+    public boolean isConnectionAlive() {
+        return this.isChannelConnected() && this.queryRealTimeStatus(EthernetPort.STATUS_QUERY_TIMEOUT);
+    }
+
+    private boolean isChannelConnected() {
+        return this.mIsOpen && this.mChannel != null && this.mChannel.isConnected();
+    }
+
+    /**
+     * 循环聚集写直到所有缓冲区写完
+     *
+     * @return 写入字节数
+     */
+    private long gatheringWrite(ByteBuffer[] buffers, int count) throws IOException {
+        long written = 0;
+        int first = 0;
+        while (first < count) {
+            written += this.mChannel.write(buffers, first, count - first);
+            while (first < count && !buffers[first].hasRemaining()) {
+                buffers[first++] = null;
+            }
+        }
+        return written;
+    }
+}
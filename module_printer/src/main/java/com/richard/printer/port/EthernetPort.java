@@ -2,21 +2,21 @@ package com.richard.printer.port;
 
 import android.os.NetworkOnMainThreadException;
 
+import com.richard.printer.command.PrinterCmd;
 import com.richard.printer.enumerate.ErrorCode;
 import com.richard.printer.enumerate.PortType;
 import com.richard.printer.model.PortInfo;
 import com.richard.printer.model.ReturnMessage;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 
 /**
@@ -29,12 +29,26 @@ public class EthernetPort extends PrinterPort {
 
     private static final int CONNECT_NET_PORT_TIMEOUT = 10000;
 
+    /**
+     * 实时状态查询等待回复的超时时间（毫秒）
+     */
+    static final int STATUS_QUERY_TIMEOUT = 500;
+
+    /**
+     * 实时状态指令无回复时，探测打印机是否可达的超时时间（毫秒）
+     */
+    static final int REACHABLE_PROBE_TIMEOUT = 800;
+
+    /**
+     * 单次写入的最大字节数
+     */
+    private static final int WRITE_CHUNK_SIZE = 8192;
+
     private InetAddress mInetAddress;
     private SocketAddress mSocketAddress;
-    private Socket mNetSocket = new Socket();
+    private Socket mNetSocket;
     private OutputStream mOutput;
     private InputStream mInput;
-    private Process process;
 
     public EthernetPort(PortInfo portInfo) {
         super(portInfo);
@@ -57,6 +71,10 @@ public class EthernetPort extends PrinterPort {
             return new ReturnMessage(ErrorCode.OpenPortFailed, "PortInfo error !\n");
         }
 
+        //已关闭的Socket无法再次连接，每次打开端口都创建新的Socket
+        this.closeSocketQuietly();
+        this.mNetSocket = new Socket();
+
         try {
             this.mSocketAddress = new InetSocketAddress(this.mInetAddress, this.mPortInfo.getEthernetPort());
             this.mNetSocket.connect(this.mSocketAddress, CONNECT_NET_PORT_TIMEOUT);
@@ -70,14 +88,19 @@ public class EthernetPort extends PrinterPort {
             }
 
             this.mInput = this.mNetSocket.getInputStream();
+            this.resetFlowControl();
             this.mIsOpen = true;
         } catch (NetworkOnMainThreadException var2) {
+            this.closeSocketQuietly();
             return new ReturnMessage(ErrorCode.OpenPortFailed, var2.toString());
         } catch (UnknownHostException var3) {
+            this.closeSocketQuietly();
             return new ReturnMessage(ErrorCode.OpenPortFailed, var3.toString());
         } catch (IOException var4) {
+            this.closeSocketQuietly();
             return new ReturnMessage(ErrorCode.OpenPortFailed, var4.toString());
         } catch (Exception var5) {
+            this.closeSocketQuietly();
             return new ReturnMessage(ErrorCode.OpenPortFailed, var5.toString());
         }
 
@@ -86,6 +109,7 @@ public class EthernetPort extends PrinterPort {
 
     @Override
     public ReturnMessage closePort() {
+        this.resetFlowControl();
         try {
             if (this.mOutput != null) {
                 this.mOutput.flush();
@@ -188,63 +212,154 @@ public class EthernetPort extends PrinterPort {
     }
 
     @Override
-    public boolean portIsOpen() {
-        this.mIsOpen = this.pingHost(this.mPortInfo.getEthernetIP());
-        if (!this.mIsOpen) {
-            this.mIsOpen = this.pingHost(this.mPortInfo.getEthernetIP());
+    public int getWriteChunkSize() {
+        return WRITE_CHUNK_SIZE;
+    }
+
+    @Override
+    protected int readWithTimeout(int timeoutMillis) {
+        if (!this.mIsOpen || this.mInput == null || !this.mNetSocket.isConnected()) {
+            return -1;
         }
 
+        try {
+            this.mNetSocket.setSoTimeout(timeoutMillis);
+            return this.mInput.read();
+        } catch (SocketTimeoutException var3) {
+            return -1;
+        } catch (Exception var4) {
+            return -1;
+        } finally {
+            try {
+                this.mNetSocket.setSoTimeout(0);
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    @Override
+    protected void discardInput() {
+        discardAvailable(this.mInput);
+    }
+
+    /**
+     * 检测已打开的连接是否仍然有效
+     * 优先在当前连接上检测，打印机不回复时再确认是否可达，参考{@link #checkHeldSocket}
+     */
+    @Override
+    public boolean portIsOpen() {
+        this.mIsOpen = this.mIsOpen && checkHeldSocket(this, this.mNetSocket, this.mInput);
         return this.mIsOpen;
     }
 
+    @Override
+    public boolean isConnectionAlive() {
+        return this.mIsOpen && this.mNetSocket != null && this.mNetSocket.isConnected()
+                && !this.mNetSocket.isClosed() && this.queryRealTimeStatus(STATUS_QUERY_TIMEOUT);
+    }
+
+    private void closeSocketQuietly() {
+        if (this.mNetSocket == null) {
+            return;
+        }
+
+        try {
+            this.mNetSocket.close();
+        } catch (IOException ignored) {
+        }
+        this.mNetSocket = null;
+    }
 
     /**
-     * 验证连接是否畅通
-     *
-     * @param ip ip地址
-     * @return 是否畅通
+     * 丢弃输入流中已到达的数据
      */
-    private boolean pingHost(String ip) {
-        boolean result = false;
-        BufferedReader bufferedReader = null;
+    static void discardAvailable(InputStream input) {
+        if (input == null) {
+            return;
+        }
 
         try {
-            Thread.sleep(2000L);
-            this.process = Runtime.getRuntime().exec("ping -c 1 -w 5 " + ip);
-            InputStream ins = this.process.getInputStream();
-            InputStreamReader reader = new InputStreamReader(ins);
-            bufferedReader = new BufferedReader(reader);
-            Object var6 = null;
-
-            while (bufferedReader.readLine() != null) {
+            int available;
+            while ((available = input.available()) > 0) {
+                if (input.skip(available) <= 0) {
+                    break;
+                }
             }
+        } catch (IOException ignored) {
+        }
+    }
 
-            int status = this.process.waitFor();
-            if (status == 0) {
-                result = true;
-            } else {
-                result = false;
-            }
-        } catch (IOException var18) {
-            result = false;
-        } catch (InterruptedException var19) {
-            result = false;
+    /**
+     * 在已打开的连接上发送实时状态指令检测连接是否断开
+     * 收到回复认为连接有效；写入失败、读到连接关闭时认为已断开。
+     * 等待超时只说明没有确认，打印机可能不回复实时指令，也可能已经断电，此时再通过{@link #probeReachable}确认打印机可达
+     *
+     * @param port   端口
+     * @param socket 已打开的连接
+     * @param input  连接的输入流
+     * @return 连接是否有效
+     */
+    static boolean checkHeldSocket(PrinterPort port, Socket socket, InputStream input) {
+        if (socket == null || input == null || socket.isClosed() || !socket.isConnected()) {
+            return false;
+        }
+
+        discardAvailable(input);
+        ReturnMessage result = port.write(PrinterCmd.realTimeStatusTransmission(1));
+        if (!ErrorCode.WriteDataSuccess.equals(result.getErrorCode())) {
+            return false;
+        }
+
+        boolean timeout = false;
+        try {
+            socket.setSoTimeout(STATUS_QUERY_TIMEOUT);
+            return input.read() != -1;
+        } catch (SocketTimeoutException var4) {
+            timeout = true;
+        } catch (IOException var5) {
+            return false;
         } finally {
-            if (this.process != null) {
-                this.process.destroy();
+            try {
+                socket.setSoTimeout(0);
+            } catch (Exception ignored) {
             }
+        }
 
-            if (bufferedReader != null) {
-                try {
-                    bufferedReader.close();
-                } catch (IOException var17) {
-                    var17.printStackTrace();
-                }
-            }
+        return timeout && probeReachable(socket.getInetAddress(), socket.getPort());
+    }
 
+    /**
+     * 确认打印机是否可达，先做可达性探测，不可达时再尝试建立一次短超时的TCP连接
+     * 两者都失败时无法确认打印机在线，按已断开处理，由调用方重新连接
+     *
+     * @param address 打印机地址
+     * @param port    打印机端口
+     * @return 是否可达
+     */
+    static boolean probeReachable(InetAddress address, int port) {
+        if (address == null || port <= 0) {
+            return false;
         }
 
-        return result;
+        try {
+            if (address.isReachable(REACHABLE_PROBE_TIMEOUT)) {
+                return true;
+            }
+        } catch (IOException ignored) {
+        }
+
+        Socket probe = new Socket();
+        try {
+            probe.connect(new InetSocketAddress(address, port), REACHABLE_PROBE_TIMEOUT);
+            return true;
+        } catch (IOException var3) {
+            return false;
+        } finally {
+            try {
+                probe.close();
+            } catch (IOException ignored) {
+            }
+        }
     }
 
 }
@@ -1,8 +1,11 @@
 package com.richard.printer.port;
 
+import com.richard.printer.command.PrinterCmd;
+import com.richard.printer.enumerate.ErrorCode;
 import com.richard.printer.model.PortInfo;
 import com.richard.printer.model.ReturnMessage;
 
+import java.util.List;
 import java.util.Queue;
 
 /**
@@ -13,11 +16,62 @@ import java.util.Queue;
  */
 public abstract class PrinterPort {
 
+    /**
+     * 默认单次写入端口的最大字节数
+     */
+    protected static final int DEFAULT_WRITE_CHUNK_SIZE = 4096;
+
+    /**
+     * 流控等待打印机回复的轮询间隔（毫秒），每个间隔未收到回复时查询一次脱机状态
+     */
+    protected static final int FLOW_CONTROL_POLL_INTERVAL = 500;
+
+    /**
+     * 流控等待打印机处理完缓冲区数据的最长时间（毫秒），脱机期间不计时，恢复在线后重新计时
+     */
+    protected static final int FLOW_CONTROL_TIMEOUT = 60000;
+
+    /**
+     * 流控时打印机连续脱机（缺纸、开盖、错误）的最长等待时间（毫秒），超过后任务失败
+     */
+    protected static final int FLOW_CONTROL_OFFLINE_TIMEOUT = 10 * 60000;
+
+    /**
+     * DLE EOT 2(脱机状态)回复中表示脱机原因的位：bit2开盖、bit5缺纸停止打印、bit6发生错误
+     */
+    private static final int OFFLINE_CAUSE_MASK = 0x04 | 0x20 | 0x40;
+
+    /**
+     * 连续多少次状态查询无回复时认为打印机不支持状态回传，本连接不再做流控
+     */
+    private static final int FLOW_CONTROL_MAX_UNANSWERED = 2;
+
+    /**
+     * GS r 1从未回复过时，收到多少次在线的DLE EOT回复后认为打印机不支持GS r，本连接改为只按脱机状态暂停
+     */
+    private static final int FLOW_CONTROL_MAX_TRANSMIT_UNANSWERED = 10;
+
     protected PortInfo mPortInfo = null;
     protected Queue<Byte> mRxdQueue = null;
     protected Queue<Byte> mTxdQueue = null;
     protected boolean mIsOpen = false;
 
+    /**
+     * 已发送但打印机尚未确认处理完的字节数
+     */
+    private int mUnconfirmedBytes = 0;
+    private boolean mFlowControlAvailable = true;
+
+    /**
+     * 本连接上打印机是否回复过GS r 1
+     */
+    private boolean mTransmitStatusAnswered = false;
+
+    /**
+     * 本连接上打印机不回复GS r 1，每个窗口只通过DLE EOT 2确认在线
+     */
+    private boolean mTransmitStatusUnsupported = false;
+
     public PrinterPort(PortInfo portInfo) {
         this.mPortInfo = portInfo;
     }
@@ -40,6 +94,275 @@ public abstract class PrinterPort {
 
     public abstract ReturnMessage read(byte[] data);
 
+    /**
+     * 端口是否处于打开状态(仅返回本地记录的状态，不做任何检测)
+     */
+    public boolean isOpen() {
+        return this.mIsOpen;
+    }
+
+    /**
+     * 快速检测已打开的连接是否仍然可用，用于复用长连接前的校验
+     * 默认只检查本地记录的状态，网络端口会通过实时状态指令确认
+     */
+    public boolean isConnectionAlive() {
+        return this.mIsOpen;
+    }
+
+    /**
+     * 获取单次写入端口的最大字节数，合并写入时按该大小分块发送
+     */
+    public int getWriteChunkSize() {
+        return DEFAULT_WRITE_CHUNK_SIZE;
+    }
+
+    /**
+     * 合并写入数据
+     * 将多个小数据块合并成不超过{@link #getWriteChunkSize()}的块后再发送，整个任务只返回一个结果
+     *
+     * @param data 数据列表
+     */
+    public ReturnMessage write(List<byte[]> data) {
+        if (data == null || data.isEmpty()) {
+            return new ReturnMessage(ErrorCode.WriteDataSuccess, "Send 0 bytes .\n", 0);
+        }
+
+        int chunkSize = Math.max(1, this.getWriteChunkSize());
+        byte[] chunk = null;
+        int chunkLength = 0;
+        int totalCount = 0;
+        ReturnMessage result;
+
+        for (byte[] item : data) {
+            if (item == null || item.length <= 0) {
+                continue;
+            }
+
+            //放不下当前数据时先发送已合并的数据
+            if (chunkLength > 0 && chunkLength + item.length > chunkSize) {
+                result = this.writeChunk(chunk, 0, chunkLength);
+                if (!ErrorCode.WriteDataSuccess.equals(result.getErrorCode())) {
+                    return result;
+                }
+                totalCount += chunkLength;
+                chunkLength = 0;
+            }
+
+            //超过块大小的数据直接分块发送，无需再复制
+            if (item.length >= chunkSize) {
+                result = this.writeChunked(item, 0, item.length);
+                if (!ErrorCode.WriteDataSuccess.equals(result.getErrorCode())) {
+                    return result;
+                }
+                totalCount += item.length;
+                continue;
+            }
+
+            if (chunk == null) {
+                chunk = new byte[chunkSize];
+            }
+            System.arraycopy(item, 0, chunk, chunkLength, item.length);
+            chunkLength += item.length;
+        }
+
+        if (chunkLength > 0) {
+            result = this.writeChunk(chunk, 0, chunkLength);
+            if (!ErrorCode.WriteDataSuccess.equals(result.getErrorCode())) {
+                return result;
+            }
+            totalCount += chunkLength;
+        }
+
+        return new ReturnMessage(ErrorCode.WriteDataSuccess, "Send " + totalCount + " bytes .\n", totalCount);
+    }
+
+    /**
+     * 按{@link #getWriteChunkSize()}分块写入数据
+     *
+     * @param data   数据
+     * @param offset 起始位置
+     * @param count  写入字节数
+     */
+    public ReturnMessage writeChunked(byte[] data, int offset, int count) {
+        int chunkSize = Math.max(1, this.getWriteChunkSize());
+        int end = offset + count;
+        ReturnMessage result;
+
+        for (int position = offset; position < end; position += chunkSize) {
+            result = this.writeChunk(data, position, Math.min(chunkSize, end - position));
+            if (!ErrorCode.WriteDataSuccess.equals(result.getErrorCode())) {
+                return result;
+            }
+        }
+
+        return new ReturnMessage(ErrorCode.WriteDataSuccess, "Send " + count + " bytes .\n", count);
+    }
+
+    /**
+     * 写入一块数据，开启流控时每发送{@link PortInfo#getFlowControlWindow()}字节等待打印机处理完已发送的数据
+     *
+     * @param data   数据
+     * @param offset 起始位置
+     * @param count  写入字节数
+     */
+    protected ReturnMessage writeChunk(byte[] data, int offset, int count) {
+        int window = this.mPortInfo.getFlowControlWindow();
+        if (window <= 0 || !this.mFlowControlAvailable) {
+            return this.write(data, offset, count);
+        }
+
+        int sent = 0;
+        ReturnMessage result;
+        while (sent < count) {
+            int length = this.mFlowControlAvailable
+                    ? Math.min(count - sent, Math.max(1, window - this.mUnconfirmedBytes)) : count - sent;
+            result = this.write(data, offset + sent, length);
+            if (!ErrorCode.WriteDataSuccess.equals(result.getErrorCode())) {
+                return result;
+            }
+            sent += length;
+            this.mUnconfirmedBytes += length;
+
+            if (this.mUnconfirmedBytes >= window && this.mFlowControlAvailable) {
+                result = this.awaitPrinterReady();
+                if (!ErrorCode.WriteDataSuccess.equals(result.getErrorCode())) {
+                    return result;
+                }
+            }
+        }
+
+        return new ReturnMessage(ErrorCode.WriteDataSuccess, "Send " + count + " bytes .\n", count);
+    }
+
+    /**
+     * 等待打印机处理完已发送的数据
+     * 发送GS r 1后，打印机要等缓冲区中此前的数据处理完才会回复，收到回复即说明缓冲区已清空；
+     * 每个轮询间隔未收到回复时通过DLE EOT 2查询脱机原因，脱机（开盖、缺纸、错误）时暂停写入继续等待，
+     * 脱机期间不计入{@link #FLOW_CONTROL_TIMEOUT}，连续脱机超过{@link #FLOW_CONTROL_OFFLINE_TIMEOUT}时失败。
+     * 两种回复通过bit4区分：GS r的回复bit4固定为0，DLE EOT的回复bit4固定为1。
+     * 两种指令都不回复时关闭流控；只回复DLE EOT时不再发送GS r，之后每个窗口只等待打印机在线
+     */
+    private ReturnMessage awaitPrinterReady() {
+        this.discardInput();
+        ReturnMessage result = this.mTransmitStatusUnsupported
+                ? this.write(PrinterCmd.realTimeStatusTransmission(2)) : this.write(PrinterCmd.transmitStatus(1));
+        if (!ErrorCode.WriteDataSuccess.equals(result.getErrorCode())) {
+            return result;
+        }
+
+        long deadline = System.currentTimeMillis() + FLOW_CONTROL_TIMEOUT;
+        long offlineSince = 0;
+        int unanswered = 0;
+        int transmitUnanswered = 0;
+        while (true) {
+            int status = this.readWithTimeout(FLOW_CONTROL_POLL_INTERVAL);
+            long now = System.currentTimeMillis();
+            if (status != -1) {
+                unanswered = 0;
+                if ((status & 0x10) == 0) {
+                    this.mTransmitStatusAnswered = true;
+                    this.mTransmitStatusUnsupported = false;
+                    this.mUnconfirmedBytes = 0;
+                    return new ReturnMessage(ErrorCode.WriteDataSuccess, "Printer ready .\n", 0);
+                }
+
+                if ((status & OFFLINE_CAUSE_MASK) != 0) {
+                    if (offlineSince == 0) {
+                        offlineSince = now;
+                    }
+                    continue;
+                }
+
+                if (offlineSince != 0) {
+                    //恢复在线，重新计时
+                    offlineSince = 0;
+                    deadline = now + FLOW_CONTROL_TIMEOUT;
+                }
+
+                if (!this.mTransmitStatusUnsupported && !this.mTransmitStatusAnswered
+                        && ++transmitUnanswered >= FLOW_CONTROL_MAX_TRANSMIT_UNANSWERED) {
+                    //只回复实时状态，不回复GS r，之后只按脱机状态暂停
+                    this.mTransmitStatusUnsupported = true;
+                }
+
+                if (this.mTransmitStatusUnsupported) {
+                    this.mUnconfirmedBytes = 0;
+                    return new ReturnMessage(ErrorCode.WriteDataSuccess, "Printer on-line .\n", 0);
+                }
+                continue;
+            }
+
+            if (++unanswered > FLOW_CONTROL_MAX_UNANSWERED) {
+                //打印机不回传状态，关闭流控避免每个窗口都空等
+                this.mFlowControlAvailable = false;
+                this.mUnconfirmedBytes = 0;
+                return new ReturnMessage(ErrorCode.WriteDataSuccess, "Printer status not supported .\n", 0);
+            }
+
+            if (offlineSince != 0) {
+                if (now - offlineSince >= FLOW_CONTROL_OFFLINE_TIMEOUT) {
+                    return new ReturnMessage(ErrorCode.WriteDataFailed, "Printer off-line !\n");
+                }
+            } else if (now >= deadline) {
+                return new ReturnMessage(ErrorCode.WriteDataFailed, "Wait printer ready timeout !\n");
+            }
+
+            result = this.write(PrinterCmd.realTimeStatusTransmission(2));
+            if (!ErrorCode.WriteDataSuccess.equals(result.getErrorCode())) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * 重置流控状态，端口打开和关闭时调用，新连接重新检测打印机是否支持状态回传
+     */
+    protected void resetFlowControl() {
+        this.mUnconfirmedBytes = 0;
+        this.mFlowControlAvailable = true;
+        this.mTransmitStatusAnswered = false;
+        this.mTransmitStatusUnsupported = false;
+    }
+
+    /**
+     * 任务结束时推送端口中尚未发出的数据，默认无需处理
+     */
+    public ReturnMessage flush() {
+        return new ReturnMessage(ErrorCode.WriteDataSuccess, "Flush success !\n", 0);
+    }
+
+    /**
+     * 在超时时间内读取一个字节，不支持超时读取的端口直接返回-1
+     *
+     * @param timeoutMillis 超时时间（毫秒）
+     * @return 读取到的字节(0-255)，超时或失败返回-1
+     */
+    protected int readWithTimeout(int timeoutMillis) {
+        return -1;
+    }
+
+    /**
+     * 丢弃端口中已接收但尚未读取的数据
+     */
+    protected void discardInput() {
+    }
+
+    /**
+     * 通过实时状态指令(DLE EOT 1)检测打印机是否在线
+     * 实时指令不进入打印缓冲区，打印机收到后立即回复一个状态字节
+     *
+     * @param timeoutMillis 等待回复的超时时间（毫秒）
+     * @return 是否收到打印机回复
+     */
+    protected boolean queryRealTimeStatus(int timeoutMillis) {
+        this.discardInput();
+        ReturnMessage result = this.write(PrinterCmd.realTimeStatusTransmission(1));
+        if (!ErrorCode.WriteDataSuccess.equals(result.getErrorCode())) {
+            return false;
+        }
+        return this.readWithTimeout(timeoutMillis) != -1;
+    }
+
     public int getRxdCount() {
         return this.mRxdQueue != null ? this.mRxdQueue.size() : 0;
     }
@@ -0,0 +1,230 @@
+package com.richard.printer.port;
+
+import com.richard.printer.exception.TransientWriteException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * 蓝牙SPP缓冲输出流
+ * 把零散的写入合并成适合RFCOMM传输的数据块，按设定的速率匀速发送，避免低端便携打印机接收缓冲区溢出；
+ * 底层流抛出{@link TransientWriteException}(确定没有发出任何数据)时按递增间隔重试，重试次数用完才抛出异常；
+ * 其它写入异常无法得知已发出多少字节，重发可能使数据重复，直接抛出。
+ * 只依赖OutputStream，可以用内存流替代蓝牙连接来测试吞吐量和发送节奏
+ */
+public class SppOutputStream extends OutputStream {
+
+    /**
+     * 默认数据块大小，小于常见RFCOMM帧长(约990字节)，一块数据可以在一帧内发完
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 512;
+
+    /**
+     * 默认单块数据最大重试次数
+     */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    /**
+     * 默认首次重试等待时间（毫秒），之后每次重试加倍
+     */
+    public static final int DEFAULT_RETRY_DELAY = 100;
+
+    private final OutputStream mOut;
+    private final byte[] mBuffer;
+    private int mCount = 0;
+
+    /**
+     * 发送速率（字节/秒），0表示不限速
+     */
+    private int mBytesPerSecond;
+    private int mMaxRetries = DEFAULT_MAX_RETRIES;
+    private int mRetryDelay = DEFAULT_RETRY_DELAY;
+
+    /**
+     * 限速时下一块数据最早的发送时间(System.nanoTime)
+     */
+    private long mNextSendTime = 0;
+
+    private long mBytesWritten = 0;
+    private int mChunkCount = 0;
+    private int mRetryCount = 0;
+
+    public SppOutputStream(OutputStream out) {
+        this(out, DEFAULT_CHUNK_SIZE, 0);
+    }
+
+    /**
+     * @param out            蓝牙连接的输出流
+     * @param chunkSize      数据块大小，0表示使用默认值
+     * @param bytesPerSecond 发送速率（字节/秒），0表示不限速
+     */
+    public SppOutputStream(OutputStream out, int chunkSize, int bytesPerSecond) {
+        if (out == null) {
+            throw new NullPointerException("out == null");
+        }
+        this.mOut = out;
+        this.mBuffer = new byte[chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE];
+        this.mBytesPerSecond = Math.max(0, bytesPerSecond);
+    }
+
+    /**
+     * 设置失败重试策略
+     *
+     * @param maxRetries 单块数据遇到{@link TransientWriteException}时的最大重试次数，0表示不重试
+     * @param retryDelay 首次重试等待时间（毫秒），之后每次重试加倍
+     */
+    public void setRetryPolicy(int maxRetries, int retryDelay) {
+        this.mMaxRetries = Math.max(0, maxRetries);
+        this.mRetryDelay = Math.max(0, retryDelay);
+    }
+
+    public int getChunkSize() {
+        return this.mBuffer.length;
+    }
+
+    public int getBytesPerSecond() {
+        return this.mBytesPerSecond;
+    }
+
+    /**
+     * 已成功发送到底层输出流的字节数
+     */
+    public long getBytesWritten() {
+        return this.mBytesWritten;
+    }
+
+    /**
+     * 已发送的数据块数
+     */
+    public int getChunkCount() {
+        return this.mChunkCount;
+    }
+
+    /**
+     * 累计重试次数
+     */
+    public int getRetryCount() {
+        return this.mRetryCount;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (this.mCount == this.mBuffer.length) {
+            this.flushBuffer();
+        }
+        this.mBuffer[this.mCount++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", length=" + b.length);
+        }
+
+        while (len > 0) {
+            //缓冲区为空时整块数据直接发送，无需复制
+            if (this.mCount == 0 && len >= this.mBuffer.length) {
+                this.sendChunk(b, off, this.mBuffer.length);
+                off += this.mBuffer.length;
+                len -= this.mBuffer.length;
+                continue;
+            }
+
+            int length = Math.min(len, this.mBuffer.length - this.mCount);
+            System.arraycopy(b, off, this.mBuffer, this.mCount, length);
+            this.mCount += length;
+            off += length;
+            len -= length;
+            if (this.mCount == this.mBuffer.length) {
+                this.flushBuffer();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.flushBuffer();
+        this.mOut.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.mOut.close();
+        }
+    }
+
+    /**
+     * 丢弃缓冲区中尚未发送的数据
+     */
+    public void discardBuffer() {
+        this.mCount = 0;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.mCount > 0) {
+            this.sendChunk(this.mBuffer, 0, this.mCount);
+            this.mCount = 0;
+        }
+    }
+
+    /**
+     * 按速率等待后发送一块数据
+     * 只有{@link TransientWriteException}保证没有发出任何数据，此时整块重发；
+     * 其它IOException可能已发出部分数据，重发会使打印内容重复(如光栅图片中间多出一段)，因此不重试
+     */
+    private void sendChunk(byte[] data, int offset, int count) throws IOException {
+        this.pace(count);
+
+        int attempt = 0;
+        while (true) {
+            try {
+                this.mOut.write(data, offset, count);
+                break;
+            } catch (TransientWriteException var6) {
+                if (attempt >= this.mMaxRetries) {
+                    throw var6;
+                }
+                this.sleep((long) this.mRetryDelay << attempt);
+                ++attempt;
+                ++this.mRetryCount;
+            }
+        }
+
+        this.mBytesWritten += count;
+        ++this.mChunkCount;
+    }
+
+    /**
+     * 限速发送：每块数据占用count/速率的时间，上一块的时间未用完时等待
+     */
+    private void pace(int count) throws IOException {
+        if (this.mBytesPerSecond <= 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (this.mNextSendTime > now) {
+            long waitNanos = this.mNextSendTime - now;
+            this.sleep(waitNanos / 1000000L, (int) (waitNanos % 1000000L));
+            now = this.mNextSendTime;
+        }
+        this.mNextSendTime = now + count * 1000000000L / this.mBytesPerSecond;
+    }
+
+    private void sleep(long millis) throws IOException {
+        this.sleep(millis, 0);
+    }
+
+    private void sleep(long millis, int nanos) throws IOException {
+        try {
+            Thread.sleep(millis, nanos);
+        } catch (InterruptedException var5) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bluetooth write interrupted");
+        }
+    }
+}
@@ -10,6 +10,7 @@ import android.hardware.usb.UsbDeviceConnection;
 import android.hardware.usb.UsbEndpoint;
 import android.hardware.usb.UsbInterface;
 import android.hardware.usb.UsbManager;
+import android.os.Build;
 import android.util.Log;
 
 import com.richard.printer.enumerate.ErrorCode;
@@ -32,6 +33,22 @@ public class USBPort extends PrinterPort {
     private final String ACTION_USB_PERMISSION = "com.richard.printer.port.USB_PERMISSION";
     private int PRINTER_TIMEOUT = 3000;//打印超时时间（毫秒）
 
+    /**
+     * 单次bulkTransfer的最大字节数(Android 9以下单次传输上限为16384)
+     */
+    private static final int WRITE_CHUNK_SIZE = 16384;
+
+    /**
+     * 端点未提供最大包长时使用的默认值(全速设备bulk端点最大包长)
+     */
+    private static final int DEFAULT_MAX_PACKET_SIZE = 64;
+
+    /**
+     * 丢弃输入数据时单次读取的超时时间（毫秒）及最多读取次数
+     */
+    private static final int DISCARD_READ_TIMEOUT = 10;
+    private static final int MAX_DISCARD_READS = 16;
+
     private UsbManager mUsbManager = null;
     private UsbDevice mUsbDevice = null;
     private UsbInterface mUsbInterface = null;
@@ -40,6 +57,11 @@ public class USBPort extends PrinterPort {
     private UsbEndpoint mUsbOutEndpoint = null;
     private String mUserUsbName = null;
 
+    /**
+     * Android 4.3以下bulkTransfer不支持偏移量，用于分块发送的复用缓冲区
+     */
+    private byte[] mWriteBuffer = null;
+
     /**
      * usb授权结果接收广播
      */
@@ -178,6 +200,7 @@ public class USBPort extends PrinterPort {
         this.mUsbDeviceConnection = this.mUsbManager.openDevice(this.mUsbDevice);
         if (this.mUsbDeviceConnection != null && this.mUsbDeviceConnection.claimInterface(this.mUsbInterface, true)) {
             this.mPortInfo.setUsbPathName(this.mUsbDevice.getDeviceName());
+            this.resetFlowControl();
             this.mIsOpen = true;
             return new ReturnMessage(ErrorCode.OpenPortSuccess, "Open USB port success !\n");
         } else {
@@ -187,6 +210,7 @@ public class USBPort extends PrinterPort {
 
     @Override
     public ReturnMessage closePort() {
+        this.resetFlowControl();
         if (this.mUsbDeviceConnection != null) {
             this.mUsbInEndpoint = null;
             this.mUsbOutEndpoint = null;
@@ -209,27 +233,58 @@ public class USBPort extends PrinterPort {
         return this.write(data, 0, data.length);
     }
 
+    /**
+     * 写入数据
+     * 按端点最大包长对齐分块发送，短传输时从未确认的部分继续发送；
+     * bulkTransfer失败或超时时无法得知设备已接收多少字节，整块重发可能使数据重复(如光栅图片中间多出一段)，
+     * 因此不重试，直接返回失败及已确认发送的字节数
+     */
     @Override
     public ReturnMessage write(byte[] data, int offset, int count) {
         if (!this.mIsOpen) {
             return new ReturnMessage(ErrorCode.WriteDataFailed, "USB port was closed !\n");
         }
 
-        byte[] temData = new byte[count];
-
-        for (int i = offset; i < offset + count; ++i) {
-            temData[i - offset] = data[i];
-        }
+        int chunkSize = this.getWriteChunkSize();
+        int sendCount = 0;
 
         try {
-            int writeCount = this.mUsbDeviceConnection.bulkTransfer(this.mUsbOutEndpoint, temData, temData.length, PRINTER_TIMEOUT);
-            return writeCount < 0
-                    ? new ReturnMessage(ErrorCode.WriteDataFailed, "usb port write bulkTransfer failed !\n")
-                    : new ReturnMessage(ErrorCode.WriteDataSuccess, "send " + writeCount + " bytes.\n", writeCount);
+            while (sendCount < count) {
+                int length = Math.min(chunkSize, count - sendCount);
+                int writeCount = this.bulkWrite(data, offset + sendCount, length);
+                if (writeCount <= 0) {
+                    return new ReturnMessage(ErrorCode.WriteDataFailed,
+                            "usb port write bulkTransfer failed, send " + sendCount + " bytes !\n", sendCount);
+                }
+                sendCount += writeCount;
+            }
         } catch (NullPointerException var7) {
             var7.printStackTrace();
-            return new ReturnMessage(ErrorCode.WriteDataFailed, "usb port write bulkTransfer failed !\n");
+            return new ReturnMessage(ErrorCode.WriteDataFailed, "usb port write bulkTransfer failed !\n", sendCount);
         }
+
+        return new ReturnMessage(ErrorCode.WriteDataSuccess, "send " + sendCount + " bytes.\n", sendCount);
+    }
+
+    /**
+     * 执行一次bulkTransfer，Android 4.3及以上直接使用带偏移量的接口，避免复制数据
+     *
+     * @return 实际发送字节数，失败返回负数
+     */
+    private int bulkWrite(byte[] data, int offset, int length) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return this.mUsbDeviceConnection.bulkTransfer(this.mUsbOutEndpoint, data, offset, length, PRINTER_TIMEOUT);
+        }
+
+        if (offset == 0) {
+            return this.mUsbDeviceConnection.bulkTransfer(this.mUsbOutEndpoint, data, length, PRINTER_TIMEOUT);
+        }
+
+        if (this.mWriteBuffer == null || this.mWriteBuffer.length < length) {
+            this.mWriteBuffer = new byte[this.getWriteChunkSize()];
+        }
+        System.arraycopy(data, offset, this.mWriteBuffer, 0, length);
+        return this.mUsbDeviceConnection.bulkTransfer(this.mUsbOutEndpoint, this.mWriteBuffer, length, PRINTER_TIMEOUT);
     }
 
     @Override
@@ -263,6 +318,46 @@ public class USBPort extends PrinterPort {
         return this.read(temBuffer).getErrorCode() == ErrorCode.OpenPortFailed ? -1 : temBuffer[0];
     }
 
+    /**
+     * 获取单次写入的最大字节数，按输出端点最大包长向下对齐
+     */
+    @Override
+    public int getWriteChunkSize() {
+        int packetSize = this.mUsbOutEndpoint != null ? this.mUsbOutEndpoint.getMaxPacketSize() : 0;
+        if (packetSize <= 0) {
+            packetSize = DEFAULT_MAX_PACKET_SIZE;
+        }
+        return Math.max(packetSize, WRITE_CHUNK_SIZE / packetSize * packetSize);
+    }
+
+    /**
+     * 按输入端点最大包长读取，避免打印机一次回复多个字节时溢出
+     */
+    @Override
+    protected int readWithTimeout(int timeoutMillis) {
+        if (!this.mIsOpen || this.mUsbDeviceConnection == null || this.mUsbInEndpoint == null) {
+            return -1;
+        }
+
+        byte[] buffer = new byte[Math.max(1, this.mUsbInEndpoint.getMaxPacketSize())];
+        int readBytes = this.mUsbDeviceConnection.bulkTransfer(this.mUsbInEndpoint, buffer, buffer.length, timeoutMillis);
+        return readBytes > 0 ? buffer[0] & 255 : -1;
+    }
+
+    @Override
+    protected void discardInput() {
+        if (!this.mIsOpen || this.mUsbDeviceConnection == null || this.mUsbInEndpoint == null) {
+            return;
+        }
+
+        byte[] buffer = new byte[Math.max(1, this.mUsbInEndpoint.getMaxPacketSize())];
+        for (int i = 0; i < MAX_DISCARD_READS; ++i) {
+            if (this.mUsbDeviceConnection.bulkTransfer(this.mUsbInEndpoint, buffer, buffer.length, DISCARD_READ_TIMEOUT) <= 0) {
+                return;
+            }
+        }
+    }
+
     @Override
     public boolean portIsOpen() {
         if (this.mUsbDevice == null || this.mUsbInEndpoint == null || this.mUsbOutEndpoint == null) {
@@ -0,0 +1,227 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.enumerate.TicketSpec;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+/**
+ * 列宽分配方案
+ * 按小票规格、字体倍数和列占宽权重计算好每列的字节宽度，创建后不可修改，可以在多行、多线程之间共用；
+ * 通过{@link #of}获取时相同参数的方案只计算一次
+ */
+public final class ColumnPlan {
+
+    /**
+     * 缓存的方案数量上限，超过后清空重新缓存
+     */
+    private static final int MAX_CACHE_SIZE = 256;
+
+    /**
+     * ESC D 最多可设置的制表位数量
+     */
+    private static final int MAX_TAB_STOPS = 32;
+
+    /**
+     * ESC D 制表位的最大值
+     */
+    private static final int MAX_TAB_POSITION = 255;
+
+    private static final ConcurrentMap<Key, ColumnPlan> CACHE = new ConcurrentHashMap<>();
+
+    private final TicketSpec spec;
+    private final int fontSize;
+    private final int lineMaxLength;
+
+    /**
+     * 每列分配的字节宽度，最后一列占用剩余宽度
+     */
+    private final int[] columnWidths;
+
+    /**
+     * 每列的起始位置，columnStarts[i]为前i列宽度之和
+     */
+    private final int[] columnStarts;
+
+    /**
+     * 除第一列外每列起始位置对应的制表位，无法用ESC D表示时为null
+     */
+    private final byte[] tabStops;
+
+    private ColumnPlan(TicketSpec spec, int fontSize, float[] widthWeigh) {
+        this.spec = spec;
+        this.fontSize = fontSize;
+        this.lineMaxLength = PrintParams.getLineMaxLength(spec, fontSize);
+
+        float totalColumnWeigh = 0;
+        for (float item : widthWeigh) {
+            totalColumnWeigh += item;
+        }
+
+        int columnCount = widthWeigh.length;
+        this.columnWidths = new int[columnCount];
+        this.columnStarts = new int[columnCount + 1];
+        int totalAllocatedColumnLength = 0;
+        for (int index = 0; index < columnCount; index++) {
+            if (index == columnCount - 1) {
+                //最后一列
+                this.columnWidths[index] = this.lineMaxLength - totalAllocatedColumnLength;
+            } else {
+                this.columnWidths[index] = (int) Math.floor(widthWeigh[index] / (totalColumnWeigh * 1F) * this.lineMaxLength);
+            }
+            totalAllocatedColumnLength += this.columnWidths[index];
+            this.columnStarts[index + 1] = totalAllocatedColumnLength;
+        }
+        this.tabStops = createTabStops(this.columnStarts);
+    }
+
+    /**
+     * 制表位必须严格递增且在1-255之间，数量不超过32
+     */
+    private static byte[] createTabStops(int[] columnStarts) {
+        int count = columnStarts.length - 2;
+        if (count <= 0 || count > MAX_TAB_STOPS) {
+            return null;
+        }
+
+        byte[] tabStops = new byte[count];
+        int previous = 0;
+        for (int index = 0; index < count; index++) {
+            int position = columnStarts[index + 1];
+            if (position <= previous || position > MAX_TAB_POSITION) {
+                return null;
+            }
+            tabStops[index] = (byte) position;
+            previous = position;
+        }
+        return tabStops;
+    }
+
+    /**
+     * 获取列宽分配方案
+     *
+     * @param spec       小票规格
+     * @param fontSize   字体倍数值（仅支持0-1）
+     * @param widthWeigh 列占宽权重
+     */
+    public static ColumnPlan of(@NonNull TicketSpec spec, @IntRange(from = 0, to = 1) int fontSize, @NonNull float... widthWeigh) {
+        if (widthWeigh.length == 0) {
+            throw new IllegalArgumentException("widthWeigh 不能为空");
+        }
+
+        Key key = new Key(spec, fontSize, widthWeigh);
+        ColumnPlan plan = CACHE.get(key);
+        if (plan != null) {
+            return plan;
+        }
+
+        //缓存中保存权重的副本，避免调用方修改数组后影响已缓存的方案
+        float[] weighCopy = widthWeigh.clone();
+        plan = new ColumnPlan(spec, fontSize, weighCopy);
+        if (CACHE.size() >= MAX_CACHE_SIZE) {
+            CACHE.clear();
+        }
+        ColumnPlan existing = CACHE.putIfAbsent(new Key(spec, fontSize, weighCopy), plan);
+        return existing != null ? existing : plan;
+    }
+
+    /**
+     * 获取等宽列的分配方案
+     *
+     * @param spec        小票规格
+     * @param fontSize    字体倍数值（仅支持0-1）
+     * @param columnCount 列数
+     */
+    public static ColumnPlan ofEqualColumns(@NonNull TicketSpec spec, @IntRange(from = 0, to = 1) int fontSize, int columnCount) {
+        float[] widthWeigh = new float[columnCount];
+        Arrays.fill(widthWeigh, 1);
+        return of(spec, fontSize, widthWeigh);
+    }
+
+    public TicketSpec getSpec() {
+        return spec;
+    }
+
+    public int getFontSize() {
+        return fontSize;
+    }
+
+    public int getColumnCount() {
+        return columnWidths.length;
+    }
+
+    /**
+     * 一行最大字节长度
+     */
+    public int getLineMaxLength() {
+        return lineMaxLength;
+    }
+
+    /**
+     * 获取列分配的字节宽度
+     */
+    public int getColumnWidth(int index) {
+        return columnWidths[index];
+    }
+
+    /**
+     * 获取列的起始位置，即前index列的宽度之和
+     */
+    public int getColumnStart(int index) {
+        return columnStarts[index];
+    }
+
+    /**
+     * 是否可以用水平制表位排版
+     */
+    public boolean supportsTabStops() {
+        return tabStops != null;
+    }
+
+    /**
+     * 获取制表位，用于{@link com.richard.printer.command.PrinterCmd#setHorizontalTabPositions}，不可修改返回的数组
+     */
+    byte[] tabStops() {
+        return tabStops;
+    }
+
+    /**
+     * 缓存键，构造时不复制权重数组，只用于查找；放入缓存的键使用副本
+     */
+    private static final class Key {
+        private final TicketSpec spec;
+        private final int fontSize;
+        private final float[] widthWeigh;
+        private final int hash;
+
+        Key(TicketSpec spec, int fontSize, float[] widthWeigh) {
+            this.spec = spec;
+            this.fontSize = fontSize;
+            this.widthWeigh = widthWeigh;
+            this.hash = (spec.ordinal() * 31 + fontSize) * 31 + Arrays.hashCode(widthWeigh);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return fontSize == key.fontSize
+                    && spec == key.spec
+                    && Arrays.equals(widthWeigh, key.widthWeigh);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -7,28 +7,80 @@ package com.richard.printer.utils;
 
 import android.bluetooth.BluetoothAdapter;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
 
+import com.richard.printer.command.BitmapToByteData;
+import com.richard.printer.command.RasterBandEncoder;
 import com.richard.printer.enumerate.ErrorCode;
 import com.richard.printer.enumerate.PortType;
 import com.richard.printer.exception.PrinterException;
 import com.richard.printer.model.PortInfo;
 import com.richard.printer.model.ReturnMessage;
 import com.richard.printer.port.BluetoothPort;
+import com.richard.printer.port.EthernetChannelPort;
 import com.richard.printer.port.EthernetPort;
 import com.richard.printer.port.PrinterPort;
 import com.richard.printer.port.USBPort;
 
 import java.net.Inet4Address;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 打印
+ * 单个方法调用是线程安全的；需要连续执行多个操作(连接、写入、断开)时，
+ * 用{@link #beginSession()}/{@link #endSession()}独占打印机，避免多个线程的数据交错
  */
 public class POSPrinter {
 
-    private PortInfo mPortInfo = new PortInfo();
-    private PrinterPort mPort = null;
+    private volatile PortInfo mPortInfo = new PortInfo();
+    private volatile PrinterPort mPort = null;
+
+    /**
+     * 打印机会话锁，公平锁保证多个线程按请求顺序独占打印机
+     */
+    private final ReentrantLock mSessionLock = new ReentrantLock(true);
+
+    /**
+     * 最近一次连接或写入数据的时间(开机时长，毫秒)
+     */
+    private volatile long mLastActiveTime = SystemClock.elapsedRealtime();
+
+    /**
+     * 打印任务线程空闲退出时间（秒）
+     */
+    private static final long JOB_THREAD_KEEP_ALIVE = 30;
+
+    /**
+     * 异步打印任务队列，每台打印机一个写入线程，按提交顺序依次执行
+     */
+    private ThreadPoolExecutor mJobExecutor = null;
+
+    /**
+     * 光栅位图已转换但尚未发送的最大段数，发送跟不上转换时转换线程等待
+     */
+    private static final int RASTER_QUEUE_BANDS = 8;
+
+    /**
+     * 光栅位图转换结束标记
+     */
+    private static final byte[] END_OF_BANDS = new byte[0];
+
+    /**
+     * 光栅位图分段转换线程，所有打印机共用，线程数不超过CPU核数，空闲时退出
+     */
+    private static final ThreadPoolExecutor RASTER_EXECUTOR = newRasterExecutor();
 
     /**
      * POSPrinter构造
@@ -69,34 +121,227 @@ public class POSPrinter {
         this.mPortInfo.setEthernetPort(ethernetPort);
     }
 
+    /**
+     * 设置网络端口是否使用NIO SocketChannel聚集写发送(下次连接时生效)
+     *
+     * @param channelMode 是否使用SocketChannel
+     * @param tcpNoDelay  是否开启TCP_NODELAY，建议开启，关闭后任务末尾的数据可能被延迟发送
+     * @param sendBuffer  发送缓冲区大小，0表示使用系统默认值
+     */
+    public void setEthernetChannelMode(boolean channelMode, boolean tcpNoDelay, int sendBuffer) {
+        this.mSessionLock.lock();
+        try {
+            this.mPortInfo.setEthernetChannelMode(channelMode);
+            this.mPortInfo.setTcpNoDelay(tcpNoDelay);
+            this.mPortInfo.setSendBufferSize(sendBuffer);
+        } finally {
+            this.mSessionLock.unlock();
+        }
+    }
+
+    /**
+     * 设置流控窗口(下次连接时生效)
+     * 每发送window字节后等待打印机处理完缓冲区中的数据再继续发送，打印机脱机时暂停发送；
+     * 适用于缓冲区较小、大图片任务容易丢数据的打印机，0表示不启用
+     *
+     * @param window 流控窗口字节数，建议不超过打印机接收缓冲区大小
+     */
+    public void setFlowControlWindow(int window) {
+        this.mSessionLock.lock();
+        try {
+            this.mPortInfo.setFlowControlWindow(Math.max(0, window));
+        } finally {
+            this.mSessionLock.unlock();
+        }
+    }
+
+    /**
+     * 设置蓝牙发送节奏(下次连接时生效)
+     * 低端便携打印机处理速度跟不上蓝牙传输速度时，限制发送速率可以避免丢数据
+     *
+     * @param chunkSize      单次发送的数据块大小，0表示使用默认值
+     * @param bytesPerSecond 发送速率（字节/秒），0表示不限速
+     */
+    public void setBluetoothPacing(int chunkSize, int bytesPerSecond) {
+        this.mSessionLock.lock();
+        try {
+            this.mPortInfo.setBluetoothChunkSize(Math.max(0, chunkSize));
+            this.mPortInfo.setBluetoothByteRate(Math.max(0, bytesPerSecond));
+        } finally {
+            this.mSessionLock.unlock();
+        }
+    }
+
     /**
      * 连接并打开端口
      */
     public void connect() throws PrinterException {
-        switch (this.mPortInfo.getPortType()) {
-            case USB:
-                this.connectUSB(this.mPortInfo.getContext(), this.mPortInfo.getUsbPathName());
-                break;
-            case Bluetooth:
-                this.connectBluetooth(this.mPortInfo.getBluetoothId());
-                break;
-            case Ethernet:
-                this.connectNet(this.mPortInfo.getEthernetIP(), this.mPortInfo.getEthernetPort());
-                break;
-            default:
-                throw new PrinterException("未找到相应的打印机连接设备");
+        this.mSessionLock.lock();
+        try {
+            switch (this.mPortInfo.getPortType()) {
+                case USB:
+                    this.connectUSB(this.mPortInfo.getContext(), this.mPortInfo.getUsbPathName());
+                    break;
+                case Bluetooth:
+                    this.connectBluetooth(this.mPortInfo.getBluetoothId());
+                    break;
+                case Ethernet:
+                    this.connectNet(this.mPortInfo.getEthernetIP(), this.mPortInfo.getEthernetPort());
+                    break;
+                default:
+                    throw new PrinterException("未找到相应的打印机连接设备");
+            }
+            this.mLastActiveTime = SystemClock.elapsedRealtime();
+        } finally {
+            this.mSessionLock.unlock();
+        }
+    }
+
+    /**
+     * 复用已打开的连接，连接不可用时重新连接
+     * 已打开的网络连接会先发送实时状态指令确认打印机仍可通讯
+     */
+    public void connectIfNeeded() throws PrinterException {
+        this.mSessionLock.lock();
+        try {
+            if (this.mPort != null && this.mPort.isConnectionAlive()) {
+                this.mLastActiveTime = SystemClock.elapsedRealtime();
+                return;
+            }
+
+            this.connect();
+        } finally {
+            this.mSessionLock.unlock();
+        }
+    }
+
+    /**
+     * 开始独占会话，阻塞直到其它线程的会话结束
+     * 会话内可以连续调用连接、写入、断开等方法，其它线程对该打印机的操作会等待会话结束；
+     * 同一线程可以嵌套调用，每次调用都必须对应一次{@link #endSession()}
+     */
+    public void beginSession() {
+        this.mSessionLock.lock();
+    }
+
+    /**
+     * 在超时时间内尝试开始独占会话
+     *
+     * @return 是否成功开始会话，成功时必须调用{@link #endSession()}
+     */
+    public boolean tryBeginSession(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.mSessionLock.tryLock(timeout, unit);
+    }
+
+    /**
+     * 结束独占会话
+     */
+    public void endSession() {
+        this.mSessionLock.unlock();
+    }
+
+    /**
+     * 同步执行一个完整的打印任务：独占打印机、复用或建立连接、写入数据
+     *
+     * @param data            打印数据
+     * @param disconnectAfter 任务结束后是否断开连接，任务失败时同样断开
+     * @return 写入字节数
+     */
+    public int print(List<byte[]> data, boolean disconnectAfter) throws PrinterException {
+        this.mSessionLock.lock();
+        boolean completed = false;
+        try {
+            this.connectIfNeeded();
+            int writeCount = this.writeJob(data);
+            completed = true;
+            return writeCount;
+        } finally {
+            try {
+                if (disconnectAfter) {
+                    this.disconnectAfterJob(completed);
+                }
+            } finally {
+                this.mSessionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 同步打印光栅位图：独占打印机、复用或建立连接，按{@value RasterBandEncoder#BAND_HEIGHT}行分段转换，
+     * 转换下一段的同时发送已完成的段，打印机不用等整张图片转换完成就可以开始打印
+     *
+     * @param m               位图模式(GS v 0 的m参数)
+     * @param bitmap          图片
+     * @param bmpType         转换方式
+     * @param disconnectAfter 任务结束后是否断开连接，任务失败时同样断开
+     * @return 写入字节数
+     */
+    public int printRaster(int m, Bitmap bitmap, BitmapToByteData.BmpType bmpType, boolean disconnectAfter) throws PrinterException {
+        this.mSessionLock.lock();
+        boolean completed = false;
+        try {
+            this.connectIfNeeded();
+            int writeCount = this.writeRaster(m, bitmap, bmpType);
+            completed = true;
+            return writeCount;
+        } finally {
+            try {
+                if (disconnectAfter) {
+                    this.disconnectAfterJob(completed);
+                }
+            } finally {
+                this.mSessionLock.unlock();
+            }
         }
     }
 
+    /**
+     * 连接空闲超过指定时长时断开，打印机正在被其它线程使用时直接跳过
+     *
+     * @param idleTimeout 空闲时长（毫秒）
+     * @return 是否断开了连接
+     */
+    boolean disconnectIfIdle(long idleTimeout) throws PrinterException {
+        if (!this.mSessionLock.tryLock()) {
+            return false;
+        }
+
+        try {
+            if (!this.isConnected() || this.getIdleTime() < idleTimeout) {
+                return false;
+            }
+            this.disconnect();
+            return true;
+        } finally {
+            this.mSessionLock.unlock();
+        }
+    }
+
+    /**
+     * 端口是否处于打开状态(不做连接检测)
+     */
+    public boolean isConnected() {
+        PrinterPort port = this.mPort;
+        return port != null && port.isOpen();
+    }
+
+    /**
+     * 获取距最近一次成功连接或写入数据的空闲时长（毫秒）
+     */
+    public long getIdleTime() {
+        return SystemClock.elapsedRealtime() - this.mLastActiveTime;
+    }
+
     /**
      * 重置端口连接
      */
     private void resetPort() {
+        PortInfo portInfo = new PortInfo();
         if (this.mPortInfo != null) {
-            this.mPortInfo = null;
+            portInfo.copyOptions(this.mPortInfo);
         }
 
-        this.mPortInfo = new PortInfo();
+        this.mPortInfo = portInfo;
         if (this.mPort != null) {
             this.mPort.closePort();
             this.mPort = null;
@@ -183,7 +428,11 @@ public class POSPrinter {
         this.mPortInfo.setEthernetPort(port);
         this.mPortInfo.setEthernetIP(ip);
         this.mPortInfo.setPortType(PortType.Ethernet);
-        this.mPort = new EthernetPort(this.mPortInfo);
+        if (this.mPortInfo.isEthernetChannelMode()) {
+            this.mPort = new EthernetChannelPort(this.mPortInfo);
+        } else {
+            this.mPort = new EthernetPort(this.mPortInfo);
+        }
 
         ReturnMessage result = this.mPort.openPort();
         if (result == null) {
@@ -197,8 +446,10 @@ public class POSPrinter {
 
     /**
      * 处理打印机写入数据结果
+     *
+     * @return 写入字节数
      */
-    private void handleWriteResult(ReturnMessage result) throws PrinterException {
+    private int handleWriteResult(ReturnMessage result) throws PrinterException {
         if (result == null) {
             throw new PrinterException(String.format("设备为[%s]出现未知打印机异常", this.getPrinterLinkName()));
         }
@@ -206,6 +457,17 @@ public class POSPrinter {
         if (!ErrorCode.WriteDataSuccess.equals(result.getErrorCode())) {
             throw new PrinterException(String.format("向[%s]打印机写入数据失败", this.getPrinterLinkName()));
         }
+
+        //只有写入成功才说明连接仍可用，失败时保留原来的空闲时长
+        this.mLastActiveTime = SystemClock.elapsedRealtime();
+        return result.getWriteByteCount();
+    }
+
+    /**
+     * 获取端口类型
+     */
+    public PortType getPortType() {
+        return this.mPortInfo == null ? PortType.Unknown : this.mPortInfo.getPortType();
     }
 
     /**
@@ -238,30 +500,310 @@ public class POSPrinter {
         if (data == null || data.length <= 0) {
             return;
         }
-        this.handleWriteResult(this.mPort.write(data));
+
+        this.mSessionLock.lock();
+        try {
+            this.handleWriteResult(this.requirePort().write(data));
+        } finally {
+            this.mSessionLock.unlock();
+        }
     }
 
     /**
      * 写入数据到当前已连接打印机
+     * 数据会按端口类型合并成较大的块后发送，减少端口写入次数
      *
      * @param data 写入数据
      */
     public void write(List<byte[]> data) throws PrinterException {
+        this.writeJob(data);
+    }
+
+    /**
+     * 写入打印参数到当前已连接打印机
+     * 直接发送打印参数的连续缓冲区，无需再合并
+     *
+     * @param params 打印参数
+     */
+    public void write(PrintParams params) throws PrinterException {
+        this.writeJob(params);
+    }
+
+    /**
+     * 写入一个完整的打印任务
+     *
+     * @return 写入字节数
+     */
+    private int writeJob(List<byte[]> data) throws PrinterException {
         if (data == null || data.size() <= 0) {
-            return;
+            return 0;
+        }
+
+        this.mSessionLock.lock();
+        try {
+            PrinterPort port = this.requirePort();
+            int writeCount;
+            if (data instanceof PrintParams) {
+                PrintParams params = (PrintParams) data;
+                writeCount = this.handleWriteResult(port.writeChunked(params.array(), 0, params.getByteLength()));
+            } else {
+                writeCount = this.handleWriteResult(port.write(data));
+            }
+            this.handleWriteResult(port.flush());
+
+            return writeCount;
+        } finally {
+            this.mSessionLock.unlock();
+        }
+    }
+
+    /**
+     * 分段写入光栅位图，转换线程把完成的段放入有界队列，当前线程取出后发送；
+     * 转换失败时已发送的段无法撤回，打印机只会打印出图片的上半部分
+     *
+     * @return 写入字节数
+     */
+    private int writeRaster(final int m, final Bitmap bitmap, final BitmapToByteData.BmpType bmpType) throws PrinterException {
+        this.mSessionLock.lock();
+        try {
+            PrinterPort port = this.requirePort();
+            final ArrayBlockingQueue<byte[]> bands = new ArrayBlockingQueue<>(RASTER_QUEUE_BANDS);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            Future<?> converter = RASTER_EXECUTOR.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        try {
+                            RasterBandEncoder encoder = BitmapToByteData.newRasterBandEncoder(m, bitmap, bmpType);
+                            while (encoder.hasNextBand()) {
+                                bands.put(encoder.nextBand());
+                            }
+                        } catch (RuntimeException | Error e) {
+                            failure.set(e);
+                        }
+                        bands.put(END_OF_BANDS);
+                    } catch (InterruptedException e) {
+                        //发送失败，不再继续转换
+                    }
+                }
+            });
+
+            int writeCount = 0;
+            List<byte[]> batch = new ArrayList<>();
+            try {
+                boolean finished = false;
+                while (!finished) {
+                    //一次取出所有已完成的段合并发送
+                    batch.clear();
+                    batch.add(bands.take());
+                    bands.drainTo(batch);
+                    if (batch.get(batch.size() - 1) == END_OF_BANDS) {
+                        batch.remove(batch.size() - 1);
+                        finished = true;
+                    }
+
+                    if (!batch.isEmpty()) {
+                        writeCount += this.handleWriteResult(port.write(batch));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PrinterException(String.format("向[%s]打印机发送图片时被中断", this.getPrinterLinkName()), e);
+            } finally {
+                converter.cancel(true);
+            }
+
+            Throwable cause = failure.get();
+            if (cause != null) {
+                throw new PrinterException(String.format("图片转换失败：%s", cause), cause);
+            }
+
+            this.handleWriteResult(port.flush());
+            return writeCount;
+        } finally {
+            this.mSessionLock.unlock();
         }
+    }
 
-        for (byte[] item : data) {
-            this.write(item);
+    /**
+     * 推送端口中尚未发出的数据
+     */
+    public void flush() throws PrinterException {
+        this.mSessionLock.lock();
+        try {
+            this.handleWriteResult(this.requirePort().flush());
+        } finally {
+            this.mSessionLock.unlock();
         }
     }
 
+    /**
+     * 获取写入当前打印机的输出目标，用于{@link StreamingPrintParams}边构造边打印
+     * 数据按端口类型分块写入(开启流控时按窗口发送)；多线程使用同一台打印机时，
+     * 应在{@link #beginSession()}/{@link #endSession()}之间完成整个流式任务
+     */
+    public PrintSink asSink() {
+        return new PrintSink() {
+            @Override
+            public void write(byte[] data, int offset, int count) throws PrinterException {
+                if (data == null || count <= 0) {
+                    return;
+                }
+
+                mSessionLock.lock();
+                try {
+                    handleWriteResult(requirePort().writeChunked(data, offset, count));
+                } finally {
+                    mSessionLock.unlock();
+                }
+            }
+
+            @Override
+            public void flush() throws PrinterException {
+                POSPrinter.this.flush();
+            }
+        };
+    }
+
+    /**
+     * 异步提交打印任务，立即返回
+     * 任务在该打印机专属的写入线程中按提交顺序执行，执行时独占打印机，执行前会复用或重新建立连接
+     *
+     * @param data 打印数据
+     * @return 任务结果，完成后可获取写入的字节数
+     */
+    public Future<Integer> submit(List<byte[]> data) {
+        return this.submit(data, false, null);
+    }
+
+    /**
+     * 异步提交打印任务，立即返回
+     * 任务在该打印机专属的写入线程中按提交顺序执行，执行前会复用或重新建立连接
+     *
+     * @param data     打印数据
+     * @param callback 任务结果回调(在写入线程中回调)，可为空
+     * @return 任务结果，完成后可获取写入的字节数
+     */
+    public Future<Integer> submit(List<byte[]> data, PrintCallback callback) {
+        return this.submit(data, false, callback);
+    }
+
+    /**
+     * 异步提交打印任务
+     *
+     * @param data            打印数据
+     * @param disconnectAfter 任务完成后是否断开连接
+     * @param callback        任务结果回调，可为空
+     */
+    Future<Integer> submit(final List<byte[]> data, final boolean disconnectAfter, PrintCallback callback) {
+        return this.submitJob(new Callable<Integer>() {
+            @Override
+            public Integer call() throws PrinterException {
+                return print(data, disconnectAfter);
+            }
+        }, callback);
+    }
+
+    /**
+     * 异步提交光栅位图打印任务，立即返回，参考{@link #printRaster}
+     *
+     * @param m        位图模式(GS v 0 的m参数)
+     * @param bitmap   图片，任务完成前不能回收
+     * @param bmpType  转换方式
+     * @param callback 任务结果回调(在写入线程中回调)，可为空
+     * @return 任务结果，完成后可获取写入的字节数
+     */
+    public Future<Integer> submitRaster(final int m, final Bitmap bitmap, final BitmapToByteData.BmpType bmpType, PrintCallback callback) {
+        return this.submitJob(new Callable<Integer>() {
+            @Override
+            public Integer call() throws PrinterException {
+                return printRaster(m, bitmap, bmpType, false);
+            }
+        }, callback);
+    }
+
+    /**
+     * 在写入线程中按提交顺序执行打印任务，任务抛出的任何异常都以{@link PrinterException}回调onFailure
+     *
+     * @param job      打印任务，返回写入字节数
+     * @param callback 任务结果回调，可为空
+     */
+    private Future<Integer> submitJob(final Callable<Integer> job, final PrintCallback callback) {
+        return this.getJobExecutor().submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                int writeCount;
+                try {
+                    writeCount = job.call();
+                } catch (PrinterException e) {
+                    if (callback != null) {
+                        callback.onFailure(e);
+                    }
+                    throw e;
+                } catch (Exception e) {
+                    //参数错误等运行时异常同样通过回调通知，否则异步调用方收不到任何结果
+                    PrinterException failure = new PrinterException(String.format("打印任务异常：%s", e), e);
+                    if (callback != null) {
+                        callback.onFailure(failure);
+                    }
+                    throw failure;
+                }
+
+                if (callback != null) {
+                    callback.onSuccess(writeCount);
+                }
+                return writeCount;
+            }
+        });
+    }
+
+    private synchronized ThreadPoolExecutor getJobExecutor() {
+        if (this.mJobExecutor == null) {
+            final String threadName = "printer-job-" + this.getPrinterLinkName();
+            this.mJobExecutor = new ThreadPoolExecutor(1, 1, JOB_THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, threadName);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.mJobExecutor.allowCoreThreadTimeOut(true);
+        }
+        return this.mJobExecutor;
+    }
+
+    /**
+     * 创建光栅位图转换线程池
+     * 同时打印图片的打印机多于线程数时，多出的转换任务排队等待；正在转换的任务只等待自己的打印机取走数据，不会互相等待
+     */
+    private static ThreadPoolExecutor newRasterExecutor() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, JOB_THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "printer-raster");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * 向端口写入数据
      */
     public void write(int data) throws PrinterException {
         data &= 255;
-        this.handleWriteResult(this.mPort.write(data));
+        this.mSessionLock.lock();
+        try {
+            this.handleWriteResult(this.requirePort().write(data));
+        } finally {
+            this.mSessionLock.unlock();
+        }
     }
 
     /**
@@ -271,7 +813,13 @@ public class POSPrinter {
         if (data == null || data.length <= 0) {
             return;
         }
-        this.handleWriteResult(this.mPort.write(data, offset, count));
+
+        this.mSessionLock.lock();
+        try {
+            this.handleWriteResult(this.requirePort().write(data, offset, count));
+        } finally {
+            this.mSessionLock.unlock();
+        }
     }
 
     /**
@@ -285,7 +833,14 @@ public class POSPrinter {
      * 读取端口数据
      */
     public void read(byte[] buffer, int offset, int count) throws PrinterException {
-        ReturnMessage result = this.mPort.read(buffer, offset, count);
+        ReturnMessage result;
+        this.mSessionLock.lock();
+        try {
+            result = this.requirePort().read(buffer, offset, count);
+        } finally {
+            this.mSessionLock.unlock();
+        }
+
         if (result == null) {
             throw new PrinterException(String.format("设备为[%s]出现未知打印机异常", this.getPrinterLinkName()));
         }
@@ -308,14 +863,22 @@ public class POSPrinter {
      * 获取连接端口信息
      */
     public PortInfo getPortInfo() {
-        this.mPortInfo.setOpened(this.mPort.portIsOpen());
-        return this.mPortInfo;
+        this.mSessionLock.lock();
+        try {
+            this.mPortInfo.setOpened(this.requirePort().portIsOpen());
+            return this.mPortInfo;
+        } catch (PrinterException e) {
+            this.mPortInfo.setOpened(false);
+            return this.mPortInfo;
+        } finally {
+            this.mSessionLock.unlock();
+        }
     }
 
     /**
      * 检查打印机连接状态
      *
-     * @return 是否已连接(耗时可能较长)
+     * @return 是否已连接(网络打印机最长耗时约1秒)
      */
     public boolean checkLinkedState() {
         if (this.mPortInfo == null || this.mPort == null) {
@@ -328,19 +891,54 @@ public class POSPrinter {
      * 断开连接
      */
     public void disconnect() throws PrinterException {
-        if (this.mPort == null) {
-            throw new PrinterException(String.format("设备为[%s]没有已打开的端口", this.getPrinterLinkName()));
+        this.mSessionLock.lock();
+        try {
+            if (this.mPort == null) {
+                throw new PrinterException(String.format("设备为[%s]没有已打开的端口", this.getPrinterLinkName()));
+            }
+
+            ReturnMessage result = this.mPort.closePort();
+            if (result == null) {
+                throw new PrinterException(String.format("设备为[%s]出现未知打印机异常", this.getPrinterLinkName()));
+            }
+
+            if (!ErrorCode.ClosePortSuccess.equals(result.getErrorCode())) {
+                throw new PrinterException(String.format("关闭[%s]打印机端口发生异常", this.getPrinterLinkName()));
+            }
+
+            this.mPort = null;
+        } finally {
+            this.mSessionLock.unlock();
         }
+    }
 
-        ReturnMessage result = this.mPort.closePort();
-        if (result == null) {
-            throw new PrinterException(String.format("设备为[%s]出现未知打印机异常", this.getPrinterLinkName()));
+    /**
+     * 任务结束后断开连接，任务失败时同样断开，断开时的异常不覆盖任务本身的异常
+     *
+     * @param completed 任务是否成功完成
+     */
+    private void disconnectAfterJob(boolean completed) throws PrinterException {
+        if (completed) {
+            this.disconnect();
+            return;
         }
 
-        if (!ErrorCode.ClosePortSuccess.equals(result.getErrorCode())) {
-            throw new PrinterException(String.format("关闭[%s]打印机端口发生异常", this.getPrinterLinkName()));
+        if (this.mPort != null) {
+            try {
+                this.disconnect();
+            } catch (PrinterException ignored) {
+            }
         }
+    }
 
-        this.mPort = null;
+    /**
+     * 获取当前端口，未连接时抛出异常
+     */
+    private PrinterPort requirePort() throws PrinterException {
+        PrinterPort port = this.mPort;
+        if (port == null) {
+            throw new PrinterException(String.format("设备为[%s]没有已打开的端口", this.getPrinterLinkName()));
+        }
+        return port;
     }
 }
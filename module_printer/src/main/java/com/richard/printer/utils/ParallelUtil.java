@@ -0,0 +1,101 @@
+package com.richard.printer.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行执行工具，位图转换和表格分块生成共用
+ * worker由调用方实现为自行领取任务的循环，线程池中的线程和当前线程运行同一个worker
+ */
+public final class ParallelUtil {
+
+    private ParallelUtil() {
+    }
+
+    /**
+     * 在线程池中并行执行worker，当前线程同时参与；worker自行领取剩余的任务，
+     * 线程池繁忙(或就是当前线程所在的线程池)时由当前线程完成全部任务，不会互相等待；
+     * worker在当前线程抛出的异常直接抛出，在线程池中抛出的异常等待结束后抛出
+     */
+    public static void runParallel(ExecutorService executor, Runnable worker) {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        if (executor == null || parallelism <= 1) {
+            worker.run();
+            return;
+        }
+
+        List<ParallelTask> tasks = new ArrayList<>(parallelism - 1);
+        try {
+            for (int i = 1; i < parallelism; ++i) {
+                ParallelTask task = new ParallelTask(worker);
+                executor.execute(task);
+                tasks.add(task);
+            }
+        } catch (RejectedExecutionException e) {
+            //线程池已满或已关闭，由已提交的任务和当前线程完成
+        }
+
+        worker.run();
+
+        try {
+            for (ParallelTask task : tasks) {
+                task.awaitOrAbandon();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("并行任务被中断");
+        }
+    }
+
+    /**
+     * 提交到线程池的任务，当前线程完成自己的部分后，尚未开始的任务直接放弃，已开始的等待其结束
+     */
+    private static final class ParallelTask implements Runnable {
+        private static final int WAITING = 0;
+        private static final int RUNNING = 1;
+        private static final int ABANDONED = 2;
+
+        private final Runnable worker;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Throwable failure;
+
+        ParallelTask(Runnable worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        public void run() {
+            if (!this.state.compareAndSet(WAITING, RUNNING)) {
+                return;
+            }
+
+            try {
+                this.worker.run();
+            } catch (RuntimeException | Error e) {
+                this.failure = e;
+            } finally {
+                this.done.countDown();
+            }
+        }
+
+        void awaitOrAbandon() throws InterruptedException {
+            if (this.state.compareAndSet(WAITING, ABANDONED)) {
+                return;
+            }
+
+            this.done.await();
+            Throwable failure = this.failure;
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+        }
+    }
+}
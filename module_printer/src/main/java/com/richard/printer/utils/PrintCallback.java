@@ -0,0 +1,23 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.exception.PrinterException;
+
+/**
+ * 异步打印任务结果回调
+ */
+public interface PrintCallback {
+
+    /**
+     * 打印数据发送完成
+     *
+     * @param writeCount 写入字节数
+     */
+    void onSuccess(int writeCount);
+
+    /**
+     * 打印失败
+     *
+     * @param e 异常信息
+     */
+    void onFailure(PrinterException e);
+}
@@ -4,14 +4,20 @@ import com.richard.printer.command.PrinterCmd;
 import com.richard.printer.command.PrinterCmdUtil;
 import com.richard.printer.enumerate.Align;
 import com.richard.printer.enumerate.EllipsizeMode;
+import com.richard.printer.enumerate.LayoutMode;
 import com.richard.printer.enumerate.TicketSpec;
 import com.richard.printer.model.ColumnItem;
+import com.richard.printer.model.TableColumn;
 
-import java.io.UnsupportedEncodingException;
-import java.nio.charset.Charset;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
@@ -24,10 +30,34 @@ import static com.richard.printer.enumerate.EllipsizeMode.COLUMN_LINE;
  * version V1.0
  * description: 打印机打印参数构造
  * 注：目前只适配了58和80规格的小票
+ * 所有内容都写入同一块连续的字节缓冲区，列表中的每个元素对应缓冲区中的一段数据；
+ * 记录打印机当前的字体大小、加粗和对齐方式，状态没有变化时不再重复发送对应指令
  */
-public class PrintParams extends ArrayList<byte[]> {
+public class PrintParams extends AbstractList<byte[]> implements RandomAccess, Cloneable, Serializable {
 
-    private static final long serialVersionUID = 5569224436177287937L;
+    private static final long serialVersionUID = -2210736493416826583L;
+
+    /**
+     * 缓冲区初始容量
+     */
+    private static final int DEFAULT_CAPACITY = 512;
+
+    /**
+     * 分段数组初始容量
+     */
+    private static final int DEFAULT_SEGMENT_CAPACITY = 64;
+
+    /**
+     * 并行生成表格时每个任务处理的行数
+     */
+    private static final int TABLE_CHUNK_ROWS = 256;
+
+    /**
+     * 表格分块中第一次设置字体大小、加粗、制表位的指令，见{@link #leadingCommands}
+     */
+    private static final int LEADING_SIZE = 0;
+    private static final int LEADING_EMPHASIZED = 1;
+    private static final int LEADING_TAB_STOPS = 2;
 
     /**
      * 空白占位符
@@ -40,6 +70,25 @@ public class PrintParams extends ArrayList<byte[]> {
      */
     private final byte SPLIT_CHAR = 45;
 
+    /**
+     * 水平制表符
+     */
+    private static final byte TAB_CHAR = 9;
+
+    /**
+     * 绝对位置排版时，空白不超过该字符数则以空格填充，不比ESC $指令(4字节)长
+     */
+    private static final int MAX_POSITION_SPACES = 4;
+
+    private static final byte ESC = 27;
+    private static final byte FS = 28;
+    private static final byte GS = 29;
+
+    /**
+     * 打印机状态未知
+     */
+    private static final int STATE_UNKNOWN = -1;
+
     /**
      * byte 编码格式
      */
@@ -50,11 +99,80 @@ public class PrintParams extends ArrayList<byte[]> {
      */
     private TicketSpec spec = TicketSpec.SPEC_80;
 
+    /**
+     * 数据缓冲区
+     */
+    private byte[] buffer = new byte[DEFAULT_CAPACITY];
+
+    /**
+     * 缓冲区已使用长度
+     */
+    private int length;
+
+    /**
+     * 每段数据在缓冲区中的结束位置
+     */
+    private int[] segmentEnds = new int[DEFAULT_SEGMENT_CAPACITY];
+
+    /**
+     * 分段数量
+     */
+    private int segmentCount;
+
+    /**
+     * 表格列排版方式，默认以空格填充
+     */
+    private LayoutMode layoutMode = LayoutMode.PADDING;
+
+    /**
+     * 最近一次设置制表位所用的列宽分配方案，表格连续使用同一方案时不重复发送ESC D
+     */
+    private transient ColumnPlan tabStopPlan;
+
+    /**
+     * 打印机当前的字符大小(GS ! n 的参数n)
+     */
+    private int characterSizeState = STATE_UNKNOWN;
+
+    /**
+     * 打印机当前是否加粗(ESC E n 的参数n)
+     */
+    private int emphasizedState = STATE_UNKNOWN;
+
+    /**
+     * 打印机当前的对齐方式(ESC a n 的参数n)
+     */
+    private int justificationState = STATE_UNKNOWN;
+
+    /**
+     * 字体、字符间距和移动单位是否保持默认，绝对位置排版按默认的字符宽度计算位置，
+     * 添加了改变这些设置的指令(ESC SP、ESC !、ESC M、GS P、FS !、FS S)后改用空格填充，直到ESC @恢复默认
+     */
+    private boolean defaultPitch = true;
+
+    /**
+     * 表格分块开始时打印机状态未知，每种状态第一次设置的指令所在的元素位置(未设置为-1)；
+     * 拼接时前面内容结束的状态已与之相同的指令去掉，与逐行生成的结果一致。只用于表格分块
+     */
+    private transient int[] leadingCommands;
+
     public PrintParams(TicketSpec spec) {
         this.spec = spec;
         this.add(PrinterCmdUtil.setPrintSpec(spec));
     }
 
+    /**
+     * 创建不含规格设置指令的打印参数，用于并行生成表格的分块；
+     * 表格行不改变对齐方式和字符间距，沿用表格开始时的状态
+     */
+    private PrintParams(TicketSpec spec, LayoutMode layoutMode, boolean defaultPitch, int justificationState) {
+        this.spec = spec;
+        this.layoutMode = layoutMode;
+        this.defaultPitch = defaultPitch;
+        this.justificationState = justificationState;
+        this.leadingCommands = new int[]{-1, -1, -1};
+    }
+
     /**
      * 获取小票规格
      */
@@ -62,31 +180,246 @@ public class PrintParams extends ArrayList<byte[]> {
         return spec;
     }
 
+    public LayoutMode getLayoutMode() {
+        return layoutMode;
+    }
+
+    /**
+     * 设置表格列排版方式，对之后添加的行生效
+     */
+    public void setLayoutMode(LayoutMode layoutMode) {
+        this.layoutMode = layoutMode == null ? LayoutMode.PADDING : layoutMode;
+    }
+
     /**
      * 添加元素
      */
     public boolean add(byte item) {
-        return this.add(new byte[]{item});
+        if (isCommandByte(item)) {
+            this.invalidateModeState();
+        }
+        this.ensureByteCapacity(this.length + 1);
+        this.buffer[this.length++] = item;
+        this.addSegmentEnd(this.length);
+        return true;
     }
 
     /**
      * 添加元素
      */
+    @Override
     public boolean add(byte[] item) {
         if (item == null || item.length <= 0) {
             return false;
         }
-        return super.add(item);
+        this.trackCommand(item, 0, item.length);
+        this.append(item, 0, item.length);
+        return true;
+    }
+
+    /**
+     * 在指定位置插入元素
+     */
+    @Override
+    public void add(int index, byte[] item) {
+        if (index < 0 || index > this.segmentCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.segmentCount);
+        }
+        if (item == null || item.length <= 0) {
+            return;
+        }
+        //插入位置之后的内容已按原状态生成，无法再确定之后的状态
+        this.invalidateModeState();
+
+        int start = this.segmentStart(index);
+        this.ensureByteCapacity(this.length + item.length);
+        System.arraycopy(this.buffer, start, this.buffer, start + item.length, this.length - start);
+        System.arraycopy(item, 0, this.buffer, start, item.length);
+        this.length += item.length;
+
+        this.ensureSegmentCapacity(this.segmentCount + 1);
+        System.arraycopy(this.segmentEnds, index, this.segmentEnds, index + 1, this.segmentCount - index);
+        this.segmentEnds[index] = start;
+        this.segmentCount++;
+        this.shiftSegmentEnds(index, item.length);
+        this.modCount++;
+    }
+
+    /**
+     * 获取指定位置的元素(返回数据副本)
+     */
+    @Override
+    public byte[] get(int index) {
+        this.checkIndex(index);
+        return Arrays.copyOfRange(this.buffer, this.segmentStart(index), this.segmentEnds[index]);
+    }
+
+    /**
+     * 替换指定位置的元素
+     */
+    @Override
+    public byte[] set(int index, byte[] item) {
+        byte[] old = this.remove(index);
+        this.add(index, item);
+        return old;
+    }
+
+    /**
+     * 移除指定位置的元素
+     */
+    @Override
+    public byte[] remove(int index) {
+        byte[] old = this.get(index);
+        this.invalidateModeState();
+        int start = this.segmentStart(index);
+        int end = this.segmentEnds[index];
+        System.arraycopy(this.buffer, end, this.buffer, start, this.length - end);
+        this.length -= old.length;
+
+        System.arraycopy(this.segmentEnds, index + 1, this.segmentEnds, index, this.segmentCount - index - 1);
+        this.segmentCount--;
+        this.shiftSegmentEnds(index, -old.length);
+        this.modCount++;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return this.segmentCount;
+    }
+
+    @Override
+    public void clear() {
+        this.clearBuffer();
+        this.invalidateModeState();
+    }
+
+    /**
+     * 清空数据，保留打印机状态，用于数据已按顺序发送给打印机的情况
+     */
+    void clearBuffer() {
+        this.length = 0;
+        this.segmentCount = 0;
+        this.modCount++;
+    }
+
+    /**
+     * 获取全部数据的字节长度
+     */
+    public int getByteLength() {
+        return this.length;
+    }
+
+    /**
+     * 获取当前位置标记，可用于{@link #reset(int)}和{@link #asByteBuffer(int, int)}
+     */
+    public int mark() {
+        return this.length;
+    }
+
+    /**
+     * 回退到指定标记位置，丢弃标记之后添加的数据
+     *
+     * @param mark {@link #mark()}返回的位置
+     */
+    public void reset(int mark) {
+        if (mark < 0 || mark > this.length) {
+            throw new IndexOutOfBoundsException("Mark: " + mark + ", Length: " + this.length);
+        }
+
+        while (this.segmentCount > 0 && this.segmentStart(this.segmentCount - 1) >= mark) {
+            this.segmentCount--;
+        }
+        if (this.segmentCount > 0 && this.segmentEnds[this.segmentCount - 1] > mark) {
+            this.segmentEnds[this.segmentCount - 1] = mark;
+        }
+        this.length = mark;
+        this.modCount++;
+        this.invalidateModeState();
+    }
+
+    /**
+     * 获取全部数据(单个数组副本)
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.length);
+    }
+
+    /**
+     * 获取全部数据的只读视图(不复制数据)
+     */
+    public ByteBuffer asByteBuffer() {
+        return this.asByteBuffer(0, this.length);
+    }
+
+    /**
+     * 获取两个标记之间数据的只读视图(不复制数据)
+     *
+     * @param fromMark 起始标记
+     * @param toMark   结束标记
+     */
+    public ByteBuffer asByteBuffer(int fromMark, int toMark) {
+        if (fromMark < 0 || toMark > this.length || fromMark > toMark) {
+            throw new IndexOutOfBoundsException("From: " + fromMark + ", To: " + toMark + ", Length: " + this.length);
+        }
+        return ByteBuffer.wrap(this.buffer, fromMark, toMark - fromMark).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * 预留元素数量，与原ArrayList的同名方法兼容
+     *
+     * @param minCapacity 最少可容纳的元素数量
+     */
+    public void ensureCapacity(int minCapacity) {
+        this.ensureSegmentCapacity(minCapacity);
+    }
+
+    /**
+     * 释放缓冲区中未使用的空间，与原ArrayList的同名方法兼容
+     */
+    public void trimToSize() {
+        this.modCount++;
+        if (this.buffer.length > this.length) {
+            this.buffer = Arrays.copyOf(this.buffer, this.length);
+        }
+        if (this.segmentEnds.length > this.segmentCount) {
+            this.segmentEnds = Arrays.copyOf(this.segmentEnds, this.segmentCount);
+        }
+    }
+
+    /**
+     * 复制打印参数，数据和打印机状态都独立于原对象
+     */
+    @Override
+    public PrintParams clone() {
+        try {
+            PrintParams copy = (PrintParams) super.clone();
+            copy.buffer = Arrays.copyOf(this.buffer, this.length);
+            copy.segmentEnds = Arrays.copyOf(this.segmentEnds, this.segmentCount);
+            copy.leadingCommands = this.leadingCommands == null ? null : this.leadingCommands.clone();
+            copy.modCount = 0;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e.toString());
+        }
+    }
+
+    /**
+     * 获取底层缓冲区，有效数据长度为{@link #getByteLength()}
+     */
+    byte[] array() {
+        return this.buffer;
     }
 
     /**
      * 添加元素
      */
     public boolean add(String item) {
-        if (item == null) {
+        if (item == null || item.length() == 0) {
             return false;
         }
-        return this.add(PrintParams.getByte(item));
+        this.appendText(item);
+        return true;
     }
 
     /**
@@ -117,7 +450,7 @@ public class PrintParams extends ArrayList<byte[]> {
      * @param isBold   是否加粗
      */
     public void add(String item, @IntRange(from = 0, to = 1) int fontSize, boolean isBold) {
-        this.add(PrintParams.getByte(item), fontSize, isBold, null);
+        this.addText(item, this.getLineMaxLength(fontSize), fontSize, isBold, null, false);
     }
 
     /**
@@ -129,7 +462,7 @@ public class PrintParams extends ArrayList<byte[]> {
      * @param align    内容对齐方式
      */
     public void add(String item, @IntRange(from = 0, to = 1) int fontSize, boolean isBold, Align align) {
-        this.add(PrintParams.getByte(item), fontSize, isBold, align);
+        this.addText(item, this.getLineMaxLength(fontSize), fontSize, isBold, align, false);
     }
 
     /**
@@ -155,15 +488,37 @@ public class PrintParams extends ArrayList<byte[]> {
      */
     public void add(byte[] item, int allocColumnLength, @IntRange(from = 0, to = 1) int fontSize,
                     boolean isBold, Align align) {
+        this.addAligned(item, null, item.length, allocColumnLength, fontSize, isBold, align, false);
+    }
+
+    /**
+     * 添加文本，直接编码到缓冲区
+     *
+     * @param text              文本
+     * @param allocColumnLength 分配的列最大字节长度
+     * @param fontSize          字体倍数值（仅支持0-1）
+     * @param isBold            是否加粗
+     * @param align             内容对齐方式
+     * @param tabToNext         尾部空白是否以制表符跳到下一列
+     */
+    private void addText(String text, int allocColumnLength, int fontSize, boolean isBold, Align align,
+                         boolean tabToNext) {
+        this.addAligned(null, text, getBytesLength(text), allocColumnLength, fontSize, isBold, align, tabToNext);
+    }
+
+    /**
+     * 按对齐方式添加内容，item和text二选一
+     *
+     * @param itemLength 内容编码后的字节长度
+     * @param tabToNext  尾部空白是否以制表符跳到下一列，调用方需保证下一列起始位置已设置制表位
+     */
+    private void addAligned(byte[] item, String text, int itemLength, int allocColumnLength, int fontSize,
+                            boolean isBold, Align align, boolean tabToNext) {
         //设置字体大小
-        this.add(PrinterCmdUtil.fontSizeSetBig(fontSize));
+        this.selectFontSize(fontSize);
 
         //字体加粗
-        if (isBold) {
-            this.add(PrinterCmdUtil.emphasizedOn());
-        } else {
-            this.add(PrinterCmdUtil.emphasizedOff());
-        }
+        this.selectEmphasized(isBold);
 
         //对齐方式
         if (align == null) {
@@ -173,39 +528,45 @@ public class PrintParams extends ArrayList<byte[]> {
         int spaceCount;
         switch (align) {
             case CENTER:
-                spaceCount = (allocColumnLength - item.length) / 2;
+                spaceCount = (allocColumnLength - itemLength) / 2;
                 break;
             case RIGHT:
-                spaceCount = allocColumnLength - item.length;
+                spaceCount = allocColumnLength - itemLength;
                 break;
             case LEFT:
             default:
                 spaceCount = 0;
         }
 
-        for (int i = 0; i < spaceCount; i++) {
-            this.add(PLACE_CHAR);
-        }
+        this.appendFill(PLACE_CHAR, spaceCount);
 
-        this.add(item);
+        if (item != null) {
+            this.add(item);
+        } else if (text != null && text.length() > 0) {
+            this.appendText(text);
+        }
 
-        byte[] leftSpaceBytes = null;
+        int trailingCount;
         switch (align) {
             case LEFT:
-                int length = allocColumnLength - item.length;
-                if (length > 0) {
-                    leftSpaceBytes = new byte[length];
-                    Arrays.fill(leftSpaceBytes, PLACE_CHAR);
-                    this.add(leftSpaceBytes);
-                }
+                trailingCount = allocColumnLength - itemLength;
                 break;
             case CENTER:
-                if (spaceCount > 0) {
-                    leftSpaceBytes = new byte[spaceCount];
-                    Arrays.fill(leftSpaceBytes, PLACE_CHAR);
-                    this.add(leftSpaceBytes);
-                }
+                //奇数的空白余量补在尾部，保证填满整列，后面的列不会左移
+                trailingCount = allocColumnLength - itemLength - spaceCount;
                 break;
+            case RIGHT:
+            default:
+                trailingCount = 0;
+        }
+
+        if (tabToNext) {
+            //居中时奇数的空白余量不在尾部补齐，以制表符跳转可以回到下一列的起始位置
+            if (spaceCount + itemLength < allocColumnLength) {
+                this.appendFill(TAB_CHAR, 1);
+            }
+        } else {
+            this.appendFill(PLACE_CHAR, trailingCount);
         }
     }
 
@@ -338,116 +699,218 @@ public class PrintParams extends ArrayList<byte[]> {
             throw new IllegalArgumentException("widthWeigh 或者 columns的元素数量必须一致");
         }
 
+        this.addRow(ColumnPlan.of(this.spec, fontSize, widthWeigh), isBold, align, ellipsizeMode, columns);
+    }
+
+    /**
+     * 按列宽分配方案添加一行，多行使用相同的列时复用同一个方案，无需每行重新计算列宽
+     *
+     * @param plan          列宽分配方案，规格必须与当前小票一致
+     * @param isBold        是否加粗
+     * @param align         对齐方式
+     * @param ellipsizeMode 列文本显示模式
+     * @param columns       列文本，数量必须与方案的列数一致
+     */
+    public void addRow(@NonNull ColumnPlan plan, boolean isBold, Align align, EllipsizeMode ellipsizeMode, @NonNull String... columns) {
+        this.checkPlan(plan, columns.length);
+
         if (ellipsizeMode == null) {
             ellipsizeMode = EllipsizeMode.LINE;
         }
 
-        int lineMaxLength = this.getLineMaxLength(fontSize);
-        int totalAllocatedColumnLength = 0;//总共已分配的列长度
+        int columnCount = columns.length;
+        boolean[] bolds = new boolean[columnCount];
+        Align[] aligns = new Align[columnCount];
+        EllipsizeMode[] ellipsizeModes = new EllipsizeMode[columnCount];
+        Arrays.fill(bolds, isBold);
+        Arrays.fill(aligns, align);
+        Arrays.fill(ellipsizeModes, ellipsizeMode);
+
+        this.addRowCells(plan, columns, bolds, aligns, ellipsizeModes, newSplitTexts(columnCount));
+    }
+
+    /**
+     * 添加一行
+     *
+     * @param fontSize 字体倍数值（仅支持0-1）
+     * @param columns  列文本
+     */
+    public void addRow(@IntRange(from = 0, to = 1) int fontSize, @NonNull float[] widthWeigh, ColumnItem... columns) {
+        if (widthWeigh.length != columns.length) {
+            throw new IllegalArgumentException("widthWeigh 或者 columns的元素数量必须一致");
+        }
+
+        this.addRow(ColumnPlan.of(this.spec, fontSize, widthWeigh), columns);
+    }
 
-        float totalColumnWeigh = 0;
-        for (float item : widthWeigh) {
-            totalColumnWeigh += item;
+    /**
+     * 按列宽分配方案添加一行，多行使用相同的列时复用同一个方案，无需每行重新计算列宽
+     *
+     * @param plan    列宽分配方案，规格必须与当前小票一致
+     * @param columns 列文本，数量必须与方案的列数一致
+     */
+    public void addRow(@NonNull ColumnPlan plan, ColumnItem... columns) {
+        this.checkPlan(plan, columns.length);
+
+        int columnCount = columns.length;
+        String[] texts = new String[columnCount];
+        boolean[] bolds = new boolean[columnCount];
+        Align[] aligns = new Align[columnCount];
+        EllipsizeMode[] ellipsizeModes = new EllipsizeMode[columnCount];
+        for (int index = 0; index < columnCount; index++) {
+            ColumnItem columnItem = columns[index];
+            texts[index] = columnItem.getText();
+            bolds[index] = columnItem.isBold();
+            aligns[index] = columnItem.getAlign();
+            ellipsizeModes[index] = columnItem.getEllipsizeMode();
         }
 
+        List<String>[] splitTexts = newSplitTexts(columnCount);
+        this.addRowCells(plan, texts, bolds, aligns, ellipsizeModes, splitTexts);
+
+        //保留分解结果，与之前的行为一致
+        for (int index = 0; index < columnCount; index++) {
+            List<String> subList = splitTexts[index];
+            if (subList == null) {
+                subList = new ArrayList<>();
+                subList.add(texts[index]);
+            }
+            columns[index].setSubstringList(subList);
+        }
+    }
+
+    /**
+     * 按列宽分配方案添加一行，列的样式以数组传入，不需要为每个单元格创建对象
+     *
+     * @param texts          列文本
+     * @param bolds          每列是否加粗
+     * @param aligns         每列的对齐方式
+     * @param ellipsizeModes 每列的文本显示模式
+     * @param splitTexts     保存每列按列宽分解后的文本，不需要分解的列为null；可以在多行之间复用
+     */
+    private void addRowCells(ColumnPlan plan, String[] texts, boolean[] bolds, Align[] aligns,
+                             EllipsizeMode[] ellipsizeModes, List<String>[] splitTexts) {
+        int fontSize = plan.getFontSize();
+        int lineMaxLength = plan.getLineMaxLength();
+        int columnCount = texts.length;
+
         //换行
         this.addNextRow();
 
+        boolean useTabs = this.prepareTabStops(plan);
+        //单列的多行内容之间没有换行，依靠填满整行自动换行，不能使用绝对位置
+        boolean useAbsolute = this.layoutMode == LayoutMode.ABSOLUTE_POSITION && columnCount > 1 && this.defaultPitch;
+        int lastIndex = columnCount - 1;
+
         int allocColumnLength;//该列分配总长度
         int columnTextLength;//列文本内容实际长度
 
         //分解打印内容
         int totalSize = 0;//总数据数量
-        List<List<String>> fullSplitList = new ArrayList<>();
-        List<String> subList = null;
-        for (int index = 0; index < columns.length; index++) {
-            String columnItem = columns[index];
-            if (ellipsizeMode == COLUMN_LINE) {
-                if (index == columns.length - 1) {
-                    //最后一列
-                    allocColumnLength = lineMaxLength - totalAllocatedColumnLength;
-                } else {
-                    allocColumnLength = (int) Math.floor(widthWeigh[index] / (totalColumnWeigh * 1F) * lineMaxLength);
-                }
-                totalAllocatedColumnLength += allocColumnLength;
-                subList = StringUtil.substring(columnItem, BYTE_CHARSET, allocColumnLength);
+        for (int index = 0; index < columnCount; index++) {
+            if (ellipsizeModes[index] == COLUMN_LINE) {
+                splitTexts[index] = StringUtil.substring(texts[index], BYTE_CHARSET, plan.getColumnWidth(index));
+                totalSize += splitTexts[index].size();
             } else {
-                subList = new ArrayList<>();
-                subList.add(columnItem);
+                splitTexts[index] = null;
+                totalSize++;
             }
-
-            totalSize += subList.size();
-            fullSplitList.add(subList);
         }
 
         //添加打印内容
         int rowIndex = 0;
         while (totalSize > 0) {
-            totalAllocatedColumnLength = 0;
-            for (int index = 0; index < fullSplitList.size(); index++) {
-                List<String> item = fullSplitList.get(index);
-
-                //最后一列
-                if (index == fullSplitList.size() - 1) {
-                    allocColumnLength = lineMaxLength - totalAllocatedColumnLength;
-                } else {
-                    allocColumnLength = (int) Math.floor(widthWeigh[index]
-                            / (totalColumnWeigh * 1F) * lineMaxLength);
-                }
-                totalAllocatedColumnLength += allocColumnLength;
+            //超出列宽的内容会挤占后面的列，之后该行不能再以制表符或绝对位置对齐
+            boolean aligned = useTabs || useAbsolute;
+            int cursor = 0;//绝对位置排版时的当前打印位置(点)
+            for (int index = 0; index < columnCount; index++) {
+                List<String> subList = splitTexts[index];
+                EllipsizeMode ellipsizeMode = ellipsizeModes[index];
+                boolean isBold = bolds[index];
+                Align align = aligns[index];
+                allocColumnLength = plan.getColumnWidth(index);
+
+                boolean tabToNext = useTabs && aligned && index < lastIndex;
+                boolean positioned = useAbsolute && aligned;
 
                 //--无内容打印的列以空字符填充
-                if (rowIndex >= item.size()) {
-                    byte[] columnSpaceBytes = new byte[allocColumnLength];
-                    Arrays.fill(columnSpaceBytes, PLACE_CHAR);
-                    this.add(columnSpaceBytes);
+                if (rowIndex >= (subList == null ? 1 : subList.size())) {
+                    if (!positioned) {
+                        this.skipColumn(allocColumnLength, fontSize, tabToNext);
+                    }
                     continue;
                 }
 
                 //--若该列还有内容未打印完
                 totalSize--;
-                String columnItem = item.get(rowIndex);
+                String columnItem = subList == null ? texts[index] : subList.get(rowIndex);
                 columnTextLength = this.getBytesLength(columnItem);
+                if (positioned && columnTextLength == 0) {
+                    //空文本不需要定位
+                    continue;
+                }
 
                 //添加列文本内容
                 if ((ellipsizeMode != EllipsizeMode.LINE && ellipsizeMode != EllipsizeMode.ELLIPSIS)
                         || columnTextLength < allocColumnLength) {
+                    if (positioned) {
+                        if (columnTextLength <= allocColumnLength) {
+                            cursor = this.addPositionedColumn(columnItem, columnTextLength, allocColumnLength,
+                                    plan, index, cursor, isBold, align);
+                            continue;
+                        }
+                        this.moveToColumn(plan, index, cursor);
+                    }
                     this.addColumn(columnItem, columnTextLength, allocColumnLength, lineMaxLength,
-                            fontSize, isBold, align);
+                            fontSize, isBold, align, tabToNext);
+                    if (columnTextLength > allocColumnLength) {
+                        aligned = false;
+                    }
                     continue;
                 }
 
                 switch (ellipsizeMode) {
                     case LINE:
+                        if (positioned) {
+                            this.moveToColumn(plan, index, cursor);
+                        }
                         //添加列文本内容
                         this.addColumn(columnItem, columnTextLength, allocColumnLength,
-                                lineMaxLength, fontSize, isBold, align);
+                                lineMaxLength, fontSize, isBold, align, tabToNext);
 
-                        if (fullSplitList.size() > 1 && index < fullSplitList.size() - 1) {
+                        if (columnCount > 1 && index < columnCount - 1) {
                             this.addNextRow();
-                            //占满左边空白列
-                            int leftPadLength = index + 1;
-                            for (int lineIndex = 0; lineIndex < leftPadLength; lineIndex++) {
-                                int leftPlaceholderLength = (int) Math.floor(widthWeigh[lineIndex]
-                                        / (totalColumnWeigh * 1F) * lineMaxLength);
-
-                                byte[] columnLeftSpaceBytes = new byte[leftPlaceholderLength];
-                                Arrays.fill(columnLeftSpaceBytes, PLACE_CHAR);
-                                this.add(columnLeftSpaceBytes);
+                            //占满左边空白列，绝对位置排版时由下一列自行定位
+                            if (!useAbsolute) {
+                                this.skipToColumn(plan, index + 1, useTabs);
                             }
+                            aligned = useTabs || useAbsolute;
+                            cursor = 0;
+                        } else {
+                            //最后一列的内容已按空格填充
+                            aligned = false;
                         }
                         continue;
                     case ELLIPSIS:
                         String columnText = columnItem.substring(0,
                                 (int) Math.floor(allocColumnLength / 2D) - 2).concat("...");
                         columnTextLength = this.getBytesLength(columnText);
+                        if (positioned && columnTextLength <= allocColumnLength) {
+                            cursor = this.addPositionedColumn(columnText, columnTextLength, allocColumnLength,
+                                    plan, index, cursor, isBold, align);
+                            break;
+                        }
                         this.addColumn(columnText, columnTextLength, allocColumnLength, lineMaxLength,
-                                fontSize, isBold, align);
+                                fontSize, isBold, align, tabToNext);
                         break;
                 }
             }
 
-            if (fullSplitList.size() > 1 && totalSize > 0) {
+            if (useAbsolute && aligned) {
+                this.fillPositionedLine(plan, cursor);
+            }
+
+            if (columnCount > 1 && totalSize > 0) {
                 this.addNextRow();
             }
             rowIndex++;
@@ -455,124 +918,252 @@ public class PrintParams extends ArrayList<byte[]> {
     }
 
     /**
-     * 添加一行
-     *
-     * @param fontSize 字体倍数值（仅支持0-1）
-     * @param columns  列文本
+     * 逐行添加表格中[from, to)范围的行
      */
-    public void addRow(@IntRange(from = 0, to = 1) int fontSize, @NonNull float[] widthWeigh, ColumnItem... columns) {
-        if (widthWeigh.length != columns.length) {
-            throw new IllegalArgumentException("widthWeigh 或者 columns的元素数量必须一致");
+    private void addTableRows(ColumnPlan plan, boolean[] bolds, Align[] aligns, EllipsizeMode[] ellipsizeModes,
+                              TableRowSource rows, int from, int to) {
+        int columnCount = plan.getColumnCount();
+        String[] texts = new String[columnCount];
+        List<String>[] splitTexts = newSplitTexts(columnCount);
+        for (int row = from; row < to; row++) {
+            for (int column = 0; column < columnCount; column++) {
+                texts[column] = rows.getText(row, column);
+            }
+            this.addRowCells(plan, texts, bolds, aligns, ellipsizeModes, splitTexts);
+        }
+    }
+
+    /**
+     * 按顺序追加并行生成的表格分块，保留分块的元素划分和结束时的打印机状态；
+     * 去掉分块开头当前状态下不需要的设置指令，指令后并入的填充空格并入上一元素，与逐行生成时一致
+     */
+    void appendChunk(PrintParams chunk) {
+        int[] skipped = chunk.redundantLeadingCommands(this);
+        this.ensureByteCapacity(this.length + chunk.length);
+        this.ensureSegmentCapacity(this.segmentCount + chunk.segmentCount);
+
+        int from = 0;
+        for (int i = 0; i <= skipped.length; i++) {
+            int to = i < skipped.length ? skipped[i] : chunk.segmentCount;
+            if (to > from) {
+                //复制[from, to)的元素
+                int start = chunk.segmentStart(from);
+                int count = chunk.segmentEnds[to - 1] - start;
+                int offset = this.length - start;
+                System.arraycopy(chunk.buffer, start, this.buffer, this.length, count);
+                this.length += count;
+                for (int segment = from; segment < to; segment++) {
+                    this.segmentEnds[this.segmentCount++] = offset + chunk.segmentEnds[segment];
+                }
+            }
+            if (i < skipped.length) {
+                //跳过的指令之后的填充
+                int start = chunk.segmentStart(to) + chunk.leadingCommandLength(to);
+                int count = chunk.segmentEnds[to] - start;
+                if (count > 0) {
+                    System.arraycopy(chunk.buffer, start, this.buffer, this.length, count);
+                    this.length += count;
+                    if (this.segmentCount > 0) {
+                        this.segmentEnds[this.segmentCount - 1] = this.length;
+                    } else {
+                        this.segmentEnds[this.segmentCount++] = this.length;
+                    }
+                }
+            }
+            from = to + 1;
+        }
+        this.modCount++;
+
+        this.characterSizeState = chunk.characterSizeState;
+        this.emphasizedState = chunk.emphasizedState;
+        this.justificationState = chunk.justificationState;
+        this.tabStopPlan = chunk.tabStopPlan;
+        this.defaultPitch = chunk.defaultPitch;
+    }
+
+    /**
+     * 分块开头的设置指令中，target当前状态已相同、逐行生成时不会发送的指令位置(升序)
+     */
+    private int[] redundantLeadingCommands(PrintParams target) {
+        int[] skipped = new int[this.leadingCommands.length];
+        int count = 0;
+        for (int kind = 0; kind < this.leadingCommands.length; kind++) {
+            int index = this.leadingCommands[kind];
+            if (index < 0) {
+                continue;
+            }
+            boolean redundant;
+            int n = this.buffer[this.segmentStart(index) + 2] & 0xFF;
+            switch (kind) {
+                case LEADING_SIZE:
+                    redundant = target.characterSizeState == n;
+                    break;
+                case LEADING_EMPHASIZED:
+                    redundant = target.emphasizedState == (n & 1);
+                    break;
+                default:
+                    //同一表格的分块使用同一个列宽分配方案
+                    redundant = target.tabStopPlan != null && target.tabStopPlan == this.tabStopPlan;
+                    break;
+            }
+            if (redundant) {
+                skipped[count++] = index;
+            }
         }
+        Arrays.sort(skipped, 0, count);
+        return Arrays.copyOf(skipped, count);
+    }
 
-        int lineMaxLength = this.getLineMaxLength(fontSize);
-        int totalAllocatedColumnLength = 0;//总共已分配的列长度
+    /**
+     * 分块开头设置指令的长度：制表位指令以0结尾，其他为3字节
+     */
+    private int leadingCommandLength(int index) {
+        int start = this.segmentStart(index);
+        if (this.buffer[start] == ESC && this.buffer[start + 1] == 'D') {
+            return indexOf(this.buffer, start + 2, this.segmentEnds[index], (byte) 0) + 1 - start;
+        }
+        return 3;
+    }
 
-        float totalColumnWeigh = 0;
-        for (float item : widthWeigh) {
-            totalColumnWeigh += item;
+    /**
+     * 表格分块记录状态未知时第一次设置的指令位置
+     */
+    private void markLeadingCommand(int kind, boolean unknown) {
+        if (this.leadingCommands != null && unknown && this.leadingCommands[kind] < 0) {
+            this.leadingCommands[kind] = this.segmentCount;
         }
+    }
 
-        //换行
-        this.addNextRow();
+    @SuppressWarnings("unchecked")
+    private static List<String>[] newSplitTexts(int columnCount) {
+        return (List<String>[]) new List<?>[columnCount];
+    }
 
-        int allocColumnLength;//该列分配总长度
-        int columnTextLength;//列文本内容实际长度
+    /**
+     * 设置打印机的对齐方式(ESC a)，用于图片、二维码等整行内容；与当前状态相同时不发送
+     * 注：文本和表格以空格对齐，打印机对齐方式需为左对齐
+     */
+    public void addAlign(Align align) {
+        byte[] command;
+        switch (align) {
+            case CENTER:
+                command = PrinterCmdUtil.alignCenter();
+                break;
+            case RIGHT:
+                command = PrinterCmdUtil.alignRight();
+                break;
+            case LEFT:
+            default:
+                command = PrinterCmdUtil.alignLeft();
+        }
+        if (this.justificationState != command[2]) {
+            this.add(command);
+        }
+    }
 
-        //分解打印内容
-        int totalSize = 0;//总数据数量
-        List<String> subList = null;
-        for (int index = 0; index < columns.length; index++) {
-            ColumnItem columnItem = columns[index];
-            if (columnItem.getEllipsizeMode() == COLUMN_LINE) {
-                if (index == columns.length - 1) {
-                    //最后一列
-                    allocColumnLength = lineMaxLength - totalAllocatedColumnLength;
-                } else {
-                    allocColumnLength = (int) Math.floor(widthWeigh[index] / (totalColumnWeigh * 1F) * lineMaxLength);
-                }
-                totalAllocatedColumnLength += allocColumnLength;
-                subList = StringUtil.substring(columnItem.getText(), BYTE_CHARSET, allocColumnLength);
-            } else {
-                subList = new ArrayList<>();
-                subList.add(columnItem.getText());
+    /**
+     * 添加表格，列宽只计算一次，每行不需要创建{@link ColumnItem}
+     *
+     * @param fontSize 字体倍数值（仅支持0-1）
+     * @param columns  列定义
+     * @param rows     行数据，每行的列文本数量必须与列定义一致
+     */
+    public void addTable(@IntRange(from = 0, to = 1) int fontSize, @NonNull TableColumn[] columns,
+                         @NonNull final List<String[]> rows) {
+        for (String[] row : rows) {
+            if (row.length != columns.length) {
+                throw new IllegalArgumentException("columns 或者 rows中每行的元素数量必须一致");
             }
-
-            totalSize += subList.size();
-            columnItem.setSubstringList(subList);
         }
 
-        //添加打印内容
-        int rowIndex = 0;
-        while (totalSize > 0) {
-            totalAllocatedColumnLength = 0;
-            for (int index = 0; index < columns.length; index++) {
-                ColumnItem item = columns[index];
-
-                //最后一列
-                if (index == columns.length - 1) {
-                    allocColumnLength = lineMaxLength - totalAllocatedColumnLength;
-                } else {
-                    allocColumnLength = (int) Math.floor(widthWeigh[index]
-                            / (totalColumnWeigh * 1F) * lineMaxLength);
-                }
-                totalAllocatedColumnLength += allocColumnLength;
+        this.addTable(fontSize, columns, new TableRowSource() {
+            @Override
+            public int getRowCount() {
+                return rows.size();
+            }
 
-                //--无内容打印的列以空字符填充
-                if (rowIndex >= item.getSubstringList().size()) {
-                    byte[] columnSpaceBytes = new byte[allocColumnLength];
-                    Arrays.fill(columnSpaceBytes, PLACE_CHAR);
-                    this.add(columnSpaceBytes);
-                    continue;
-                }
+            @Override
+            public String getText(int row, int column) {
+                return rows.get(row)[column];
+            }
+        });
+    }
 
-                //--若该列还有内容未打印完
-                totalSize--;
-                String columnItem = item.getSubstringList().get(rowIndex);
-                columnTextLength = this.getBytesLength(columnItem);
+    /**
+     * 添加表格，列宽只计算一次，每行不需要创建{@link ColumnItem}
+     *
+     * @param fontSize 字体倍数值（仅支持0-1）
+     * @param columns  列定义
+     * @param rows     行数据
+     */
+    public void addTable(@IntRange(from = 0, to = 1) int fontSize, @NonNull TableColumn[] columns,
+                         @NonNull TableRowSource rows) {
+        this.addTable(fontSize, columns, rows, null);
+    }
 
-                //添加列文本内容
-                if ((item.getEllipsizeMode() != EllipsizeMode.LINE && item.getEllipsizeMode() != EllipsizeMode.ELLIPSIS)
-                        || columnTextLength < allocColumnLength) {
-                    this.addColumn(columnItem, columnTextLength, allocColumnLength, lineMaxLength,
-                            fontSize, item.isBold(), item.getAlign());
-                    continue;
-                }
+    /**
+     * 添加表格，行数较多时按{@value #TABLE_CHUNK_ROWS}行分块，在线程池中并行排版编码，再按顺序拼接；
+     * 结果与逐行添加完全一致
+     *
+     * @param fontSize 字体倍数值（仅支持0-1）
+     * @param columns  列定义
+     * @param rows     行数据，会在多个线程中同时读取
+     * @param executor 执行分块任务的线程池，为null时在当前线程逐行生成；当前线程同时领取分块，
+     *                 只等待线程池中已开始的分块，可以传入当前线程所在的线程池
+     */
+    public void addTable(@IntRange(from = 0, to = 1) int fontSize, @NonNull TableColumn[] columns,
+                         @NonNull TableRowSource rows, ExecutorService executor) {
+        int columnCount = columns.length;
+        float[] widthWeigh = new float[columnCount];
+        final boolean[] bolds = new boolean[columnCount];
+        final Align[] aligns = new Align[columnCount];
+        final EllipsizeMode[] ellipsizeModes = new EllipsizeMode[columnCount];
+        for (int index = 0; index < columnCount; index++) {
+            TableColumn column = columns[index];
+            widthWeigh[index] = column.getWidthWeigh();
+            bolds[index] = column.isBold();
+            aligns[index] = column.getAlign();
+            ellipsizeModes[index] = column.getEllipsizeMode();
+        }
+        final ColumnPlan plan = ColumnPlan.of(this.spec, fontSize, widthWeigh);
 
-                switch (item.getEllipsizeMode()) {
-                    case LINE:
-                        //添加列文本内容
-                        this.addColumn(columnItem, columnTextLength, allocColumnLength,
-                                lineMaxLength, fontSize, item.isBold(), item.getAlign());
+        int rowCount = rows.getRowCount();
+        if (executor == null || rowCount <= TABLE_CHUNK_ROWS) {
+            this.addTableRows(plan, bolds, aligns, ellipsizeModes, rows, 0, rowCount);
+            return;
+        }
 
-                        if (columns.length > 1 && index < columns.length - 1) {
-                            this.addNextRow();
-                            //占满左边空白列
-                            int leftPadLength = index + 1;
-                            for (int lineIndex = 0; lineIndex < leftPadLength; lineIndex++) {
-                                int leftPlaceholderLength = (int) Math.floor(widthWeigh[lineIndex]
-                                        / (totalColumnWeigh * 1F) * lineMaxLength);
-
-                                byte[] columnLeftSpaceBytes = new byte[leftPlaceholderLength];
-                                Arrays.fill(columnLeftSpaceBytes, PLACE_CHAR);
-                                this.add(columnLeftSpaceBytes);
-                            }
-                        }
-                        continue;
-                    case ELLIPSIS:
-                        String columnText = columnItem.substring(0,
-                                (int) Math.floor(allocColumnLength / 2D) - 2).concat("...");
-                        columnTextLength = this.getBytesLength(columnText);
-                        this.addColumn(columnText, columnTextLength, allocColumnLength, lineMaxLength,
-                                fontSize, item.isBold(), item.getAlign());
-                        break;
+        //当前线程与线程池一起按块领取，当前线程可能就在该线程池中，只等待已开始的块
+        final int chunkCount = (rowCount + TABLE_CHUNK_ROWS - 1) / TABLE_CHUNK_ROWS;
+        final PrintParams[] chunks = new PrintParams[chunkCount];
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final TableRowSource source = rows;
+        final int totalRows = rowCount;
+        final boolean pitch = this.defaultPitch;
+        final int justification = this.justificationState;
+        ParallelUtil.runParallel(executor, new Runnable() {
+            @Override
+            public void run() {
+                int chunkIndex;
+                while ((chunkIndex = nextChunk.getAndIncrement()) < chunkCount) {
+                    int start = chunkIndex * TABLE_CHUNK_ROWS;
+                    PrintParams chunk = new PrintParams(spec, layoutMode, pitch, justification);
+                    try {
+                        chunk.addTableRows(plan, bolds, aligns, ellipsizeModes, source, start,
+                                Math.min(start + TABLE_CHUNK_ROWS, totalRows));
+                    } catch (RuntimeException | Error e) {
+                        //其他线程不再领取新的块
+                        nextChunk.set(chunkCount);
+                        throw e;
+                    }
+                    chunks[chunkIndex] = chunk;
                 }
             }
+        });
 
-            if (columns.length > 1 && totalSize > 0) {
-                this.addNextRow();
-            }
-            rowIndex++;
+        //全部分块生成成功后再拼接，失败时不留下部分表格
+        for (PrintParams chunk : chunks) {
+            this.appendChunk(chunk);
         }
     }
 
@@ -580,7 +1171,7 @@ public class PrintParams extends ArrayList<byte[]> {
      * 添加换行
      */
     public void addNextRow() {
-        super.add(PrinterCmd.printLineFeed());
+        this.add(PrinterCmd.printLineFeed());
     }
 
     /**
@@ -600,6 +1191,84 @@ public class PrintParams extends ArrayList<byte[]> {
 
     //----------------------------------------------------------------------------------------------
 
+    /**
+     * 以新分段的方式追加数据
+     */
+    private void append(byte[] data, int offset, int count) {
+        this.ensureByteCapacity(this.length + count);
+        System.arraycopy(data, offset, this.buffer, this.length, count);
+        this.length += count;
+        this.addSegmentEnd(this.length);
+    }
+
+    /**
+     * 以新分段的方式追加文本，直接编码到缓冲区
+     * 文本中可能带有指令字符(如"\u001bE\u0001")，与添加字节数组一样更新打印机状态
+     */
+    private void appendText(String text) {
+        int start = this.length;
+        this.ensureByteCapacity(this.length + TextEncoder.maxLength(text, BYTE_CHARSET));
+        this.length += TextEncoder.encode(text, BYTE_CHARSET, this.buffer, this.length);
+        if (this.length > start) {
+            this.trackCommand(this.buffer, start, this.length - start);
+        }
+        this.addSegmentEnd(this.length);
+    }
+
+    /**
+     * 追加count个相同字节，并入上一分段，不单独产生新的元素
+     */
+    private void appendFill(byte value, int count) {
+        if (count <= 0) {
+            return;
+        }
+        this.ensureByteCapacity(this.length + count);
+        Arrays.fill(this.buffer, this.length, this.length + count, value);
+        this.length += count;
+        if (this.segmentCount > 0) {
+            this.segmentEnds[this.segmentCount - 1] = this.length;
+        } else {
+            this.addSegmentEnd(this.length);
+        }
+    }
+
+    private void addSegmentEnd(int end) {
+        this.ensureSegmentCapacity(this.segmentCount + 1);
+        this.segmentEnds[this.segmentCount++] = end;
+        this.modCount++;
+    }
+
+    private int segmentStart(int index) {
+        return index == 0 ? 0 : this.segmentEnds[index - 1];
+    }
+
+    /**
+     * 从index开始的分段结束位置整体偏移delta
+     */
+    private void shiftSegmentEnds(int index, int delta) {
+        for (int i = index; i < this.segmentCount; i++) {
+            this.segmentEnds[i] += delta;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.segmentCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.segmentCount);
+        }
+    }
+
+    private void ensureByteCapacity(int minCapacity) {
+        if (minCapacity > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(minCapacity, this.buffer.length << 1));
+        }
+    }
+
+    private void ensureSegmentCapacity(int minCapacity) {
+        if (minCapacity > this.segmentEnds.length) {
+            this.segmentEnds = Arrays.copyOf(this.segmentEnds, Math.max(minCapacity, this.segmentEnds.length << 1));
+        }
+    }
+
     /**
      * 添加列（兼容了长文本多行显示）
      *
@@ -610,19 +1279,21 @@ public class PrintParams extends ArrayList<byte[]> {
      * @param fontSize          字体放大倍数
      * @param isBold            是否加粗
      * @param align             对齐方式
+     * @param tabToNext         文本未占满该列时是否以制表符跳到下一列
      */
-    private void addColumn(String text, int columnTextLength, int allocColumnLength, int lineMaxLength, int fontSize, boolean isBold, Align align) {
+    private void addColumn(String text, int columnTextLength, int allocColumnLength, int lineMaxLength, int fontSize,
+                           boolean isBold, Align align, boolean tabToNext) {
         //添加列文本内容
         if (columnTextLength > allocColumnLength) {
             List<String> splitTextList = StringUtil.substring(text, BYTE_CHARSET, lineMaxLength);
             for (int i = 0, size = splitTextList.size(); i < size; i++) {
-                this.add(getByte(splitTextList.get(i)), allocColumnLength, fontSize, isBold, align);
+                this.addText(splitTextList.get(i), allocColumnLength, fontSize, isBold, align, false);
                 if (i < size - 1) {
                     this.addNextRow();
                 }
             }
         } else {
-            this.add(getByte(text), allocColumnLength, fontSize, isBold, align);
+            this.addText(text, allocColumnLength, fontSize, isBold, align, tabToNext);
         }
     }
 
@@ -634,6 +1305,283 @@ public class PrintParams extends ArrayList<byte[]> {
      * @return 最大字符数(以半角字符为基础 ， 比如 ： 中文单个字符长度为2 ， 数字字母长度为1)
      */
     public int getLineMaxLength(@IntRange(from = 0, to = 1) int fontSize) {
+        return getLineMaxLength(this.spec, fontSize);
+    }
+
+    /**
+     * 设置字体大小，与当前状态相同时不发送
+     */
+    private void selectFontSize(int fontSize) {
+        byte[] command = PrinterCmdUtil.fontSizeSetBig(fontSize);
+        if (this.characterSizeState != (command[2] & 0xFF)) {
+            this.markLeadingCommand(LEADING_SIZE, this.characterSizeState == STATE_UNKNOWN);
+            this.add(command);
+        }
+    }
+
+    /**
+     * 设置加粗，与当前状态相同时不发送
+     */
+    private void selectEmphasized(boolean isBold) {
+        if (this.emphasizedState != (isBold ? 1 : 0)) {
+            this.markLeadingCommand(LEADING_EMPHASIZED, this.emphasizedState == STATE_UNKNOWN);
+            this.add(isBold ? PrinterCmdUtil.emphasizedOn() : PrinterCmdUtil.emphasizedOff());
+        }
+    }
+
+    /**
+     * 根据添加的数据更新打印机状态：
+     * 初始化指令(ESC @)恢复默认状态，字体大小、加粗、对齐和制表位指令更新对应状态，
+     * 其他指令可能改变打印模式，之后的状态视为未知
+     */
+    void trackCommand(byte[] data, int offset, int count) {
+        int end = offset + count;
+        boolean hasCommand = false;
+        for (int i = offset; i < end; i++) {
+            if (isCommandByte(data[i])) {
+                hasCommand = true;
+                break;
+            }
+        }
+        if (!hasCommand) {
+            //纯文本
+            return;
+        }
+
+        byte prefix = data[offset];
+        byte code = count > 1 ? data[offset + 1] : 0;
+        if (count == 2 && prefix == ESC && code == '@') {
+            this.characterSizeState = 0;
+            this.emphasizedState = 0;
+            this.justificationState = 0;
+            this.tabStopPlan = null;
+            this.defaultPitch = true;
+            return;
+        }
+
+        if (changesPitch(prefix, code)) {
+            this.defaultPitch = false;
+        }
+
+        if (count == 3) {
+            int n = data[offset + 2] & 0xFF;
+            if (prefix == GS && code == '!') {
+                this.characterSizeState = n;
+                return;
+            }
+            if (prefix == ESC && code == 'E') {
+                this.emphasizedState = n & 1;
+                return;
+            }
+            if (prefix == ESC && code == 'a' && (n <= 2 || (n >= '0' && n <= '2'))) {
+                this.justificationState = n >= '0' ? n - '0' : n;
+                return;
+            }
+        }
+
+        if (count == 4 && prefix == ESC && (code == '$' || code == '\\')) {
+            //打印位置指令，不影响打印模式
+            return;
+        }
+
+        if (prefix == ESC && code == 'D' && data[end - 1] == 0 && indexOf(data, offset + 2, end - 1, (byte) 0) < 0) {
+            this.tabStopPlan = null;
+            return;
+        }
+
+        this.invalidateModeState();
+    }
+
+    /**
+     * 打印机状态视为未知，之后的内容重新发送需要的指令
+     */
+    void invalidateModeState() {
+        this.characterSizeState = STATE_UNKNOWN;
+        this.emphasizedState = STATE_UNKNOWN;
+        this.justificationState = STATE_UNKNOWN;
+        this.tabStopPlan = null;
+    }
+
+    private static boolean isCommandByte(byte b) {
+        return b == ESC || b == FS || b == GS;
+    }
+
+    /**
+     * 是否为改变字体、字符间距或移动单位的指令
+     */
+    private static boolean changesPitch(byte prefix, byte code) {
+        switch (prefix) {
+            case ESC:
+                return code == ' ' || code == '!' || code == 'M';
+            case GS:
+                return code == 'P';
+            case FS:
+                return code == '!' || code == 'S';
+            default:
+                return false;
+        }
+    }
+
+    private static int indexOf(byte[] data, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 制表位排版时为列宽分配方案设置制表位，同一方案连续使用时只设置一次
+     *
+     * @return 该行是否使用制表位排版
+     */
+    private boolean prepareTabStops(ColumnPlan plan) {
+        if (this.layoutMode != LayoutMode.TAB_STOP || !plan.supportsTabStops()) {
+            return false;
+        }
+
+        if (this.tabStopPlan != plan) {
+            //制表位按设置时的字符宽度计算，需要先设置字体大小
+            this.selectFontSize(plan.getFontSize());
+            this.markLeadingCommand(LEADING_TAB_STOPS, this.tabStopPlan == null);
+            this.add(PrinterCmd.setHorizontalTabPositions(plan.tabStops()));
+            this.tabStopPlan = plan;
+        }
+        return true;
+    }
+
+    /**
+     * 以绝对位置放置列文本，文本前的空白以ESC $定位，较短时以空格填充；文本后不填充
+     *
+     * @param cursor 当前打印位置(点)
+     * @return 文本结束后的打印位置(点)
+     */
+    private int addPositionedColumn(String text, int columnTextLength, int allocColumnLength, ColumnPlan plan,
+                                    int index, int cursor, boolean isBold, Align align) {
+        int fontSize = plan.getFontSize();
+        int charDotWidth = this.getCharDotWidth(fontSize);
+
+        int offset;
+        if (align == Align.RIGHT) {
+            offset = (allocColumnLength - columnTextLength) * charDotWidth;
+        } else if (align == Align.CENTER) {
+            //按点计算，居中不再因奇数空白偏左半个字符
+            offset = (allocColumnLength - columnTextLength) * charDotWidth / 2;
+        } else {
+            offset = 0;
+        }
+
+        int position = plan.getColumnStart(index) * charDotWidth + offset;
+        this.moveTo(cursor, position, fontSize);
+        this.addAligned(null, text, columnTextLength, columnTextLength, fontSize, isBold, Align.LEFT, false);
+        return position + columnTextLength * charDotWidth;
+    }
+
+    /**
+     * 移动到列的起始位置
+     *
+     * @param cursor 当前打印位置(点)
+     */
+    private void moveToColumn(ColumnPlan plan, int index, int cursor) {
+        int fontSize = plan.getFontSize();
+        this.moveTo(cursor, plan.getColumnStart(index) * this.getCharDotWidth(fontSize), fontSize);
+    }
+
+    /**
+     * 绝对位置排版的一行结束时补齐到行尾，与空格填充一样依靠打印机自动换行，
+     * 否则之后不以换行开头的内容(如分隔线)会接在该行后面打印
+     *
+     * @param cursor 当前打印位置(点)
+     */
+    private void fillPositionedLine(ColumnPlan plan, int cursor) {
+        int fontSize = plan.getFontSize();
+        int charDotWidth = this.getCharDotWidth(fontSize);
+        int lastPosition = (plan.getLineMaxLength() - 1) * charDotWidth;
+        if (cursor > lastPosition) {
+            //剩余宽度不足一个字符，下一个字符会自动换行
+            return;
+        }
+
+        //移动到最后一个字符的位置再补一个空格，最多5字节
+        this.moveTo(cursor, lastPosition, fontSize);
+        this.selectFontSize(fontSize);
+        this.appendFill(PLACE_CHAR, 1);
+    }
+
+    /**
+     * 从当前打印位置向右移动到指定位置(点)
+     */
+    private void moveTo(int cursor, int position, int fontSize) {
+        int distance = position - cursor;
+        if (distance <= 0) {
+            return;
+        }
+
+        int charDotWidth = this.getCharDotWidth(fontSize);
+        if (distance % charDotWidth == 0 && distance / charDotWidth <= MAX_POSITION_SPACES) {
+            //空格宽度随字体大小变化
+            this.selectFontSize(fontSize);
+            this.appendFill(PLACE_CHAR, distance / charDotWidth);
+        } else {
+            this.add(PrinterCmd.setAbsolutePrintPosition(position & 0xFF, position >> 8));
+        }
+    }
+
+    /**
+     * 指定字体倍数下一个半角字符的宽度(点)，由小票规格的可打印宽度和一行字符数计算
+     */
+    private int getCharDotWidth(int fontSize) {
+        return this.spec.getDotWidth() / this.getLineMaxLength(fontSize);
+    }
+
+    /**
+     * 跳过无内容的列，以空格填充时空格宽度随字体大小变化，需要先设置该行的字体大小
+     */
+    private void skipColumn(int allocColumnLength, int fontSize, boolean tabToNext) {
+        if (tabToNext) {
+            this.appendFill(TAB_CHAR, 1);
+        } else {
+            this.selectFontSize(fontSize);
+            this.appendFill(PLACE_CHAR, allocColumnLength);
+        }
+    }
+
+    /**
+     * 从行首跳到指定列的起始位置
+     */
+    private void skipToColumn(ColumnPlan plan, int index, boolean useTabs) {
+        if (useTabs) {
+            this.appendFill(TAB_CHAR, index);
+        } else {
+            this.selectFontSize(plan.getFontSize());
+            this.appendFill(PLACE_CHAR, plan.getColumnStart(index));
+        }
+    }
+
+    /**
+     * 校验列宽分配方案与当前小票及列数是否匹配
+     */
+    private void checkPlan(ColumnPlan plan, int columnCount) {
+        if (plan.getSpec() != this.spec) {
+            throw new IllegalArgumentException("ColumnPlan 的小票规格与当前小票规格不一致");
+        }
+
+        if (plan.getColumnCount() != columnCount) {
+            throw new IllegalArgumentException("ColumnPlan 或者 columns的元素数量必须一致");
+        }
+    }
+
+    //----------------------静态方法----------------------
+
+    /**
+     * 获取指定规格小票一行最大字符数
+     *
+     * @param spec     小票规格
+     * @param fontSize 目前只适配了0-1的字体倍数
+     * @return 最大字符数(以半角字符为基础 ， 比如 ： 中文单个字符长度为2 ， 数字字母长度为1)
+     */
+    public static int getLineMaxLength(TicketSpec spec, @IntRange(from = 0, to = 1) int fontSize) {
         int maxLineLength = 0;
         switch (spec) {
             case SPEC_58:
@@ -662,7 +1610,6 @@ public class PrintParams extends ArrayList<byte[]> {
         return maxLineLength;
     }
 
-    //----------------------静态方法----------------------
     /**
      * 获取text的byte数组
      */
@@ -671,8 +1618,8 @@ public class PrintParams extends ArrayList<byte[]> {
             return null;
         }
         try {
-            return text.getBytes(BYTE_CHARSET);
-        } catch (UnsupportedEncodingException e) {
+            return TextEncoder.getBytes(text, BYTE_CHARSET);
+        } catch (IllegalArgumentException e) {
             e.printStackTrace();
         }
         return null;
@@ -684,6 +1631,6 @@ public class PrintParams extends ArrayList<byte[]> {
      * @param text 文本
      */
     public static int getBytesLength(String text) {
-        return text.getBytes(Charset.forName(BYTE_CHARSET)).length;
+        return StringUtil.getByteWidth(text, BYTE_CHARSET);
     }
 }
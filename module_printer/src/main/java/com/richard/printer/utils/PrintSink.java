@@ -0,0 +1,23 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.exception.PrinterException;
+
+/**
+ * 打印数据输出目标，流式构造打印参数时已编码的数据直接写入该目标
+ */
+public interface PrintSink {
+
+    /**
+     * 写入数据
+     *
+     * @param data   数据
+     * @param offset 起始位置
+     * @param count  写入字节数
+     */
+    void write(byte[] data, int offset, int count) throws PrinterException;
+
+    /**
+     * 推送尚未发出的数据，一个打印任务结束时调用
+     */
+    void flush() throws PrinterException;
+}
@@ -5,18 +5,50 @@ import android.content.Context;
 import com.richard.printer.enumerate.PortType;
 import com.richard.printer.exception.PrinterException;
 
-import androidx.collection.SimpleArrayMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * author Richard
  * date 2021/1/5 14:41
  * version V1.0
  * description: 打印机管理类
+ * 打印机注册表支持多线程并发访问；不同打印机之间完全并行，同一台打印机的任务通过会话锁依次执行
  */
 public final class PrinterManager {
 
-    private static PrinterManager helper;
-    private final SimpleArrayMap<String, POSPrinter> printerMap = new SimpleArrayMap<>();
+    /**
+     * 长连接默认空闲关闭时间（毫秒）
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 60 * 1000;
+
+    /**
+     * 空闲检测的最小间隔（毫秒）
+     */
+    private static final long MIN_IDLE_CHECK_PERIOD = 1000;
+
+    private static volatile PrinterManager helper;
+    private final ConcurrentMap<String, POSPrinter> printerMap = new ConcurrentHashMap<>();
+
+    /**
+     * 网络打印机是否保持长连接
+     */
+    private volatile boolean keepAlive = false;
+
+    /**
+     * 长连接空闲关闭时间（毫秒）
+     */
+    private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    private ScheduledExecutorService idleExecutor;
+    private ScheduledFuture<?> idleFuture;
 
     private PrinterManager() {
     }
@@ -33,24 +65,95 @@ public final class PrinterManager {
         return helper;
     }
 
+    /**
+     * 设置网络打印机长连接模式
+     * 开启后网络打印机在多次打印之间保持连接，复用前通过实时状态指令校验，失效时自动重连，空闲超时后自动断开
+     *
+     * @param keepAlive         是否保持长连接
+     * @param idleTimeoutMillis 空闲关闭时间（毫秒），小于等于0时使用默认值
+     */
+    public synchronized void setKeepAlive(boolean keepAlive, long idleTimeoutMillis) {
+        this.keepAlive = keepAlive;
+        this.idleTimeout = idleTimeoutMillis > 0 ? idleTimeoutMillis : DEFAULT_IDLE_TIMEOUT;
+
+        this.stopIdleCheck();
+        this.ensureIdleCheck();
+    }
+
     /**
      * 连接网络打印机
+     * 连接后的写入可能与其它线程交错，多线程打印时使用printNetPort/submitNetPort或POSPrinter会话
      *
      * @param ip   IP 地址
      * @param port 端口
      */
     public POSPrinter connectNetPort(String ip, int port) throws PrinterException {
+        POSPrinter printer = this.obtainNetPrinter(ip, port);
+        if (keepAlive) {
+            this.ensureIdleCheck();
+            printer.connectIfNeeded();
+        } else {
+            printer.connect();
+        }
+
+        return printer;
+    }
+
+    /**
+     * 同步打印到网络打印机，打印期间独占该打印机，其它线程对同一打印机的任务等待执行
+     * 未开启长连接时任务完成后自动断开连接
+     *
+     * @param ip   IP 地址
+     * @param port 端口
+     * @param data 打印数据
+     * @return 写入字节数
+     */
+    public int printNetPort(String ip, int port, List<byte[]> data) throws PrinterException {
+        POSPrinter printer = this.obtainNetPrinter(ip, port);
+        if (keepAlive) {
+            this.ensureIdleCheck();
+        }
+        return printer.print(data, !keepAlive);
+    }
+
+    /**
+     * 异步提交网络打印机打印任务，不阻塞调用线程
+     * 同一台打印机的任务按提交顺序依次执行；未开启长连接时任务完成后自动断开连接
+     *
+     * @param ip       IP 地址
+     * @param port     端口
+     * @param data     打印数据
+     * @param callback 任务结果回调(在写入线程中回调)，可为空
+     * @return 任务结果，完成后可获取写入的字节数
+     */
+    public Future<Integer> submitNetPort(String ip, int port, List<byte[]> data, PrintCallback callback) {
+        POSPrinter printer = this.obtainNetPrinter(ip, port);
+        if (keepAlive) {
+            this.ensureIdleCheck();
+        }
+        return printer.submit(data, !keepAlive, callback);
+    }
+
+    /**
+     * 获取网络打印机，不存在时创建
+     */
+    private POSPrinter obtainNetPrinter(String ip, int port) {
         String key = String.format("%s:%s", ip, port);
         POSPrinter printer = printerMap.get(key);
         if (printer == null) {
-            printer = new POSPrinter(PortType.Ethernet, ip, port);
-            printerMap.put(key, printer);
+            printer = this.register(key, new POSPrinter(PortType.Ethernet, ip, port));
         }
-        printer.connect();
-
         return printer;
     }
 
+    /**
+     * 注册打印机，其它线程已注册相同key时返回已注册的打印机
+     */
+    private POSPrinter register(String key, POSPrinter printer) {
+        POSPrinter existing = printerMap.putIfAbsent(key, printer);
+        return existing != null ? existing : printer;
+    }
+
     /**
      * 连接蓝牙打印机
      *
@@ -59,8 +162,7 @@ public final class PrinterManager {
     public POSPrinter connectBTPort(String bluetoothID) throws PrinterException {
         POSPrinter printer = printerMap.get(bluetoothID);
         if (printer == null) {
-            printer = new POSPrinter(PortType.Bluetooth, bluetoothID);
-            printerMap.put(bluetoothID, printer);
+            printer = this.register(bluetoothID, new POSPrinter(PortType.Bluetooth, bluetoothID));
         }
         printer.connect();
 
@@ -76,8 +178,7 @@ public final class PrinterManager {
     public POSPrinter connectUSBPort(Context context, String usbPathName) throws PrinterException {
         POSPrinter printer = printerMap.get(usbPathName);
         if (printer == null) {
-            printer = new POSPrinter(PortType.USB, context, usbPathName);
-            printerMap.put(usbPathName, printer);
+            printer = this.register(usbPathName, new POSPrinter(PortType.USB, context, usbPathName));
         }
         printer.connect();
 
@@ -88,12 +189,71 @@ public final class PrinterManager {
      * 断开所有打印机连接
      */
     public void disconnectAll() {
-        try {
-            for (int i = 0; i < printerMap.size(); i++) {
-                printerMap.valueAt(i).disconnect();
+        synchronized (this) {
+            this.stopIdleCheck();
+        }
+
+        //逐台断开，正在打印的打印机等待当前会话结束后再断开
+        for (POSPrinter printer : printerMap.values()) {
+            if (!printer.isConnected()) {
+                continue;
+            }
+
+            try {
+                printer.disconnect();
+            } catch (PrinterException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 断开空闲超时的网络打印机长连接
+     */
+    private void closeIdlePrinters() {
+        for (POSPrinter printer : printerMap.values()) {
+            if (printer.getPortType() != PortType.Ethernet || !printer.isConnected()) {
+                continue;
             }
-        } catch (PrinterException e) {
-            e.printStackTrace();
+
+            try {
+                //正在打印的打印机不等待，下次检测时再处理
+                printer.disconnectIfIdle(idleTimeout);
+            } catch (PrinterException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private synchronized void ensureIdleCheck() {
+        if (!keepAlive || idleFuture != null) {
+            return;
+        }
+
+        if (idleExecutor == null) {
+            idleExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "printer-idle-check");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        long period = Math.max(MIN_IDLE_CHECK_PERIOD, idleTimeout / 2);
+        idleFuture = idleExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                closeIdlePrinters();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopIdleCheck() {
+        if (idleFuture != null) {
+            idleFuture.cancel(false);
+            idleFuture = null;
         }
     }
 }
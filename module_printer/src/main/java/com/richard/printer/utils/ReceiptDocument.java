@@ -0,0 +1,309 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.enumerate.Align;
+import com.richard.printer.enumerate.EllipsizeMode;
+import com.richard.printer.enumerate.LayoutMode;
+import com.richard.printer.enumerate.TicketSpec;
+import com.richard.printer.model.ColumnItem;
+import com.richard.printer.model.TableColumn;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+/**
+ * 与小票规格无关的小票文档
+ * 只记录内容和排版方式，按打印机的小票规格和排版方式生成字节数据；
+ * 同一份订单发送到58和80规格的打印机时不需要分别构造，每种规格只生成一次并缓存，内容修改后缓存失效。
+ * 可以在多线程之间共用
+ */
+public class ReceiptDocument {
+
+    /**
+     * 按添加顺序记录的内容
+     */
+    private final List<Part> parts = new ArrayList<>();
+
+    /**
+     * 已生成的字节数据，按小票规格和排版方式缓存
+     */
+    private final Map<TicketSpec, Map<LayoutMode, byte[]>> cache = new EnumMap<>(TicketSpec.class);
+
+    /**
+     * 添加文本
+     */
+    public synchronized ReceiptDocument add(String text, @IntRange(from = 0, to = 1) int fontSize, boolean isBold, Align align) {
+        this.addPart(new TextPart(text, fontSize, isBold, align));
+        return this;
+    }
+
+    /**
+     * 添加原始指令(如切纸、开钱箱)
+     */
+    public synchronized ReceiptDocument add(@NonNull byte[] command) {
+        this.addPart(new RawPart(command.clone()));
+        return this;
+    }
+
+    /**
+     * 设置打印机的对齐方式，参考{@link PrintParams#addAlign}
+     */
+    public synchronized ReceiptDocument addAlign(@NonNull Align align) {
+        this.addPart(new AlignPart(align));
+        return this;
+    }
+
+    /**
+     * 添加换行
+     */
+    public synchronized ReceiptDocument addNextRow() {
+        this.addPart(new NextRowPart());
+        return this;
+    }
+
+    /**
+     * 添加分隔线，长度随小票规格变化
+     */
+    public synchronized ReceiptDocument addSplitLine(@IntRange(from = 0, to = 1) int fontSize, boolean isAloneLine) {
+        this.addPart(new SplitLinePart(fontSize, isAloneLine));
+        return this;
+    }
+
+    /**
+     * 添加一行，列宽按小票规格计算
+     *
+     * @param widthWeigh 列占宽权重，widthWeigh数量和columns数量必须一致
+     * @param columns    列文本
+     */
+    public synchronized ReceiptDocument addRow(@IntRange(from = 0, to = 1) int fontSize, boolean isBold, @NonNull float[] widthWeigh,
+                                               Align align, EllipsizeMode ellipsizeMode, @NonNull String... columns) {
+        if (widthWeigh.length != columns.length) {
+            throw new IllegalArgumentException("widthWeigh 或者 columns的元素数量必须一致");
+        }
+
+        TableColumn[] tableColumns = new TableColumn[columns.length];
+        for (int index = 0; index < columns.length; index++) {
+            tableColumns[index] = new TableColumn(widthWeigh[index], isBold,
+                    ellipsizeMode == null ? EllipsizeMode.LINE : ellipsizeMode, align);
+        }
+        this.addPart(new TablePart(fontSize, tableColumns, Collections.singletonList(columns.clone())));
+        return this;
+    }
+
+    /**
+     * 添加一行，列宽按小票规格计算
+     *
+     * @param widthWeigh 列占宽权重，widthWeigh数量和columns数量必须一致
+     * @param columns    列信息，添加时复制，之后修改不影响文档
+     */
+    public synchronized ReceiptDocument addRow(@IntRange(from = 0, to = 1) int fontSize, @NonNull float[] widthWeigh,
+                                               @NonNull ColumnItem... columns) {
+        if (widthWeigh.length != columns.length) {
+            throw new IllegalArgumentException("widthWeigh 或者 columns的元素数量必须一致");
+        }
+
+        TableColumn[] tableColumns = new TableColumn[columns.length];
+        String[] texts = new String[columns.length];
+        for (int index = 0; index < columns.length; index++) {
+            ColumnItem item = columns[index];
+            tableColumns[index] = new TableColumn(widthWeigh[index], item.isBold(), item.getEllipsizeMode(), item.getAlign());
+            texts[index] = item.getText();
+        }
+        this.addPart(new TablePart(fontSize, tableColumns, Collections.singletonList(texts)));
+        return this;
+    }
+
+    /**
+     * 添加表格，参考{@link PrintParams#addTable}
+     *
+     * @param columns 列定义，添加时复制
+     * @param rows    行数据，添加时复制
+     */
+    public synchronized ReceiptDocument addTable(@IntRange(from = 0, to = 1) int fontSize, @NonNull TableColumn[] columns,
+                                                 @NonNull List<String[]> rows) {
+        TableColumn[] tableColumns = new TableColumn[columns.length];
+        for (int index = 0; index < columns.length; index++) {
+            TableColumn column = columns[index];
+            tableColumns[index] = new TableColumn(column.getWidthWeigh(), column.isBold(), column.getEllipsizeMode(), column.getAlign());
+        }
+
+        List<String[]> rowsCopy = new ArrayList<>(rows.size());
+        for (String[] row : rows) {
+            if (row.length != columns.length) {
+                throw new IllegalArgumentException("columns 或者 rows中每行的元素数量必须一致");
+            }
+            rowsCopy.add(row.clone());
+        }
+        this.addPart(new TablePart(fontSize, tableColumns, rowsCopy));
+        return this;
+    }
+
+    /**
+     * 清空内容
+     */
+    public synchronized void clear() {
+        this.parts.clear();
+        this.cache.clear();
+    }
+
+    /**
+     * 按小票规格生成打印参数，以空格填充排版
+     */
+    public PrintParams render(@NonNull TicketSpec spec) {
+        return this.render(spec, LayoutMode.PADDING);
+    }
+
+    /**
+     * 按小票规格和排版方式生成新的打印参数，可以继续追加内容；不使用缓存
+     */
+    public synchronized PrintParams render(@NonNull TicketSpec spec, @NonNull LayoutMode layoutMode) {
+        PrintParams params = new PrintParams(spec);
+        params.setLayoutMode(layoutMode);
+        for (Part part : this.parts) {
+            part.render(params);
+        }
+        return params;
+    }
+
+    /**
+     * 获取指定小票规格的字节数据，以空格填充排版
+     */
+    public byte[] getBytes(@NonNull TicketSpec spec) {
+        return this.getBytes(spec, LayoutMode.PADDING);
+    }
+
+    /**
+     * 获取指定小票规格和排版方式的字节数据，首次获取时生成并缓存，内容修改前重复获取不再生成；
+     * 返回缓存数据的副本，发送给多台打印机时可使用{@link #asByteBuffer(TicketSpec, LayoutMode)}避免复制
+     */
+    public byte[] getBytes(@NonNull TicketSpec spec, @NonNull LayoutMode layoutMode) {
+        return this.getCachedBytes(spec, layoutMode).clone();
+    }
+
+    /**
+     * 以只读ByteBuffer获取指定小票规格和排版方式的字节数据，直接包装缓存的数组，不复制
+     */
+    public ByteBuffer asByteBuffer(@NonNull TicketSpec spec, @NonNull LayoutMode layoutMode) {
+        return ByteBuffer.wrap(this.getCachedBytes(spec, layoutMode)).asReadOnlyBuffer();
+    }
+
+    /**
+     * 获取缓存的字节数据，没有时生成；返回的数组不能交给调用方
+     */
+    private synchronized byte[] getCachedBytes(TicketSpec spec, LayoutMode layoutMode) {
+        Map<LayoutMode, byte[]> specCache = this.cache.get(spec);
+        if (specCache == null) {
+            specCache = new EnumMap<>(LayoutMode.class);
+            this.cache.put(spec, specCache);
+        }
+
+        byte[] data = specCache.get(layoutMode);
+        if (data == null) {
+            data = this.render(spec, layoutMode).toByteArray();
+            specCache.put(layoutMode, data);
+        }
+        return data;
+    }
+
+    private void addPart(Part part) {
+        this.parts.add(part);
+        //内容变化，已生成的数据失效
+        this.cache.clear();
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    private interface Part {
+        void render(PrintParams target);
+    }
+
+    private static final class TextPart implements Part {
+        private final String text;
+        private final int fontSize;
+        private final boolean isBold;
+        private final Align align;
+
+        TextPart(String text, int fontSize, boolean isBold, Align align) {
+            this.text = text;
+            this.fontSize = fontSize;
+            this.isBold = isBold;
+            this.align = align;
+        }
+
+        @Override
+        public void render(PrintParams target) {
+            target.add(this.text, this.fontSize, this.isBold, this.align);
+        }
+    }
+
+    private static final class RawPart implements Part {
+        private final byte[] command;
+
+        RawPart(byte[] command) {
+            this.command = command;
+        }
+
+        @Override
+        public void render(PrintParams target) {
+            target.add(this.command);
+        }
+    }
+
+    private static final class AlignPart implements Part {
+        private final Align align;
+
+        AlignPart(Align align) {
+            this.align = align;
+        }
+
+        @Override
+        public void render(PrintParams target) {
+            target.addAlign(this.align);
+        }
+    }
+
+    private static final class NextRowPart implements Part {
+        @Override
+        public void render(PrintParams target) {
+            target.addNextRow();
+        }
+    }
+
+    private static final class SplitLinePart implements Part {
+        private final int fontSize;
+        private final boolean isAloneLine;
+
+        SplitLinePart(int fontSize, boolean isAloneLine) {
+            this.fontSize = fontSize;
+            this.isAloneLine = isAloneLine;
+        }
+
+        @Override
+        public void render(PrintParams target) {
+            target.addSplitLine(this.fontSize, this.isAloneLine);
+        }
+    }
+
+    private static final class TablePart implements Part {
+        private final int fontSize;
+        private final TableColumn[] columns;
+        private final List<String[]> rows;
+
+        TablePart(int fontSize, TableColumn[] columns, List<String[]> rows) {
+            this.fontSize = fontSize;
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        @Override
+        public void render(PrintParams target) {
+            target.addTable(this.fontSize, this.columns, this.rows);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.enumerate.Align;
+import com.richard.printer.enumerate.EllipsizeMode;
+import com.richard.printer.enumerate.TicketSpec;
+import com.richard.printer.model.ColumnItem;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+/**
+ * 预编译小票模板
+ * 表头、列标题、分隔线、页脚等固定内容在创建模板时排版并编码一次，保存为字节片段；
+ * 打印时只对订单号、商品行、金额等可变内容排版编码，再与固定片段按顺序拼接。
+ * 模板创建后不可修改，可以在多线程之间共用
+ */
+public final class ReceiptTemplate {
+
+    private final TicketSpec spec;
+
+    /**
+     * 按顺序排列的固定片段和可变位置
+     */
+    private final Part[] parts;
+
+    private final int staticLength;
+
+    private ReceiptTemplate(TicketSpec spec, List<Part> parts) {
+        this.spec = spec;
+        this.parts = parts.toArray(new Part[parts.size()]);
+
+        int length = 0;
+        for (Part part : this.parts) {
+            if (part instanceof StaticPart) {
+                length += ((StaticPart) part).data.length;
+            }
+        }
+        this.staticLength = length;
+    }
+
+    public TicketSpec getSpec() {
+        return spec;
+    }
+
+    /**
+     * 固定内容的字节长度
+     */
+    public int getStaticLength() {
+        return staticLength;
+    }
+
+    /**
+     * 按模板生成打印参数
+     *
+     * @param data 模板数据，未填充的位置输出为空
+     */
+    public PrintParams render(@NonNull TemplateData data) {
+        PrintParams params = new PrintParams(this.spec);
+        this.render(data, params);
+        return params;
+    }
+
+    /**
+     * 按模板把内容追加到指定的打印参数，可以配合{@link StreamingPrintParams}边生成边打印
+     *
+     * @param data   模板数据，未填充的位置输出为空
+     * @param target 目标打印参数，规格必须与模板一致
+     */
+    public void render(@NonNull TemplateData data, @NonNull PrintParams target) {
+        if (target.getSpec() != this.spec) {
+            throw new IllegalArgumentException("模板的小票规格与目标打印参数的规格不一致");
+        }
+
+        for (Part part : this.parts) {
+            part.render(data, target);
+        }
+    }
+
+    /**
+     * 模板构造器，固定内容和可变位置按添加顺序输出
+     */
+    public static final class Builder {
+
+        private final TicketSpec spec;
+
+        /**
+         * 固定内容排版使用的打印参数
+         */
+        private final PrintParams layout;
+
+        private final List<Part> parts = new ArrayList<>();
+
+        /**
+         * 尚未切分为固定片段的起始位置
+         */
+        private int segmentStart;
+
+        public Builder(@NonNull TicketSpec spec) {
+            this.spec = spec;
+            this.layout = new PrintParams(spec);
+            //打印参数自带的规格设置指令在生成时由目标打印参数提供，不计入模板
+            this.segmentStart = this.layout.getByteLength();
+        }
+
+        /**
+         * 添加固定文本
+         */
+        public Builder text(String text, @IntRange(from = 0, to = 1) int fontSize, boolean isBold, Align align) {
+            this.layout.add(text, fontSize, isBold, align);
+            return this;
+        }
+
+        /**
+         * 添加固定的一行(如列标题)
+         */
+        public Builder row(@NonNull ColumnPlan plan, boolean isBold, Align align, EllipsizeMode ellipsizeMode, @NonNull String... columns) {
+            this.layout.addRow(plan, isBold, align, ellipsizeMode, columns);
+            return this;
+        }
+
+        /**
+         * 添加固定的一行(如列标题)
+         */
+        public Builder row(@NonNull ColumnPlan plan, ColumnItem... columns) {
+            this.layout.addRow(plan, columns);
+            return this;
+        }
+
+        /**
+         * 添加换行
+         */
+        public Builder nextRow() {
+            this.layout.addNextRow();
+            return this;
+        }
+
+        /**
+         * 添加分隔线
+         */
+        public Builder splitLine(@IntRange(from = 0, to = 1) int fontSize, boolean isAloneLine) {
+            this.layout.addSplitLine(fontSize, isAloneLine);
+            return this;
+        }
+
+        /**
+         * 添加固定指令(如切纸、开钱箱)
+         */
+        public Builder raw(byte[] command) {
+            this.layout.add(command);
+            return this;
+        }
+
+        /**
+         * 添加文本位置
+         *
+         * @param name 位置名称，对应{@link TemplateData#putText}
+         */
+        public Builder textSlot(@NonNull String name, @IntRange(from = 0, to = 1) int fontSize, boolean isBold, Align align) {
+            this.addSlot(new TextSlot(name, null, fontSize, isBold, align));
+            return this;
+        }
+
+        /**
+         * 添加数字位置
+         *
+         * @param name    位置名称，对应{@link TemplateData#putNumber}
+         * @param pattern 数字格式，如"0.00"，参考{@link DecimalFormat}
+         */
+        public Builder numberSlot(@NonNull String name, @NonNull String pattern, @IntRange(from = 0, to = 1) int fontSize,
+                                  boolean isBold, Align align) {
+            //提前校验格式
+            new DecimalFormat(pattern);
+            this.addSlot(new TextSlot(name, pattern, fontSize, isBold, align));
+            return this;
+        }
+
+        /**
+         * 添加表格位置，每行按列宽分配方案排版
+         *
+         * @param name 位置名称，对应{@link TemplateData#putRows}/{@link TemplateData#addRow}
+         */
+        public Builder rowSlot(@NonNull String name, @NonNull ColumnPlan plan, boolean isBold, Align align, EllipsizeMode ellipsizeMode) {
+            if (plan.getSpec() != this.spec) {
+                throw new IllegalArgumentException("ColumnPlan 的小票规格与模板规格不一致");
+            }
+            this.addSlot(new RowSlot(name, plan, isBold, align, ellipsizeMode));
+            return this;
+        }
+
+        public ReceiptTemplate build() {
+            this.cutStaticPart();
+            return new ReceiptTemplate(this.spec, new ArrayList<>(this.parts));
+        }
+
+        private void addSlot(Part slot) {
+            this.cutStaticPart();
+            this.parts.add(slot);
+            //可变内容可能改变打印机状态，之后的固定内容不能沿用之前的状态
+            this.layout.invalidateModeState();
+        }
+
+        /**
+         * 把上一个位置之后的固定内容保存为一个已编码的片段
+         */
+        private void cutStaticPart() {
+            int end = this.layout.getByteLength();
+            if (end > this.segmentStart) {
+                byte[] data = new byte[end - this.segmentStart];
+                this.layout.asByteBuffer(this.segmentStart, end).get(data);
+                this.parts.add(new StaticPart(data));
+            }
+            this.segmentStart = end;
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    private interface Part {
+        void render(TemplateData data, PrintParams target);
+    }
+
+    private static final class StaticPart implements Part {
+        private final byte[] data;
+
+        StaticPart(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public void render(TemplateData data, PrintParams target) {
+            target.add(this.data);
+        }
+    }
+
+    private static final class TextSlot implements Part {
+        private final String name;
+        private final String pattern;
+        private final int fontSize;
+        private final boolean isBold;
+        private final Align align;
+
+        TextSlot(String name, String pattern, int fontSize, boolean isBold, Align align) {
+            this.name = name;
+            this.pattern = pattern;
+            this.fontSize = fontSize;
+            this.isBold = isBold;
+            this.align = align;
+        }
+
+        @Override
+        public void render(TemplateData data, PrintParams target) {
+            Object value = data.get(this.name);
+            String text;
+            if (value == null) {
+                text = "";
+            } else if (this.pattern != null && value instanceof Number) {
+                //DecimalFormat非线程安全，每次生成时创建
+                text = new DecimalFormat(this.pattern).format(value);
+            } else {
+                text = value.toString();
+            }
+            target.add(text, this.fontSize, this.isBold, this.align);
+        }
+    }
+
+    private static final class RowSlot implements Part {
+        private final String name;
+        private final ColumnPlan plan;
+        private final boolean isBold;
+        private final Align align;
+        private final EllipsizeMode ellipsizeMode;
+
+        RowSlot(String name, ColumnPlan plan, boolean isBold, Align align, EllipsizeMode ellipsizeMode) {
+            this.name = name;
+            this.plan = plan;
+            this.isBold = isBold;
+            this.align = align;
+            this.ellipsizeMode = ellipsizeMode;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void render(TemplateData data, PrintParams target) {
+            Object value = data.get(this.name);
+            if (!(value instanceof List)) {
+                return;
+            }
+
+            for (String[] columns : (List<String[]>) value) {
+                target.addRow(this.plan, this.isBold, this.align, this.ellipsizeMode, columns);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.enumerate.TicketSpec;
+import com.richard.printer.exception.PrinterException;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 流式打印参数构造
+ * 用法与{@link PrintParams}相同，已缓存的数据达到阈值后在行结束时写入输出目标并清空缓冲区，
+ * 打印机可以边构造边打印，超长报表(日结、盘点)的内存占用也不会随行数增长；
+ * 构造完成后必须调用{@link #finish()}发送剩余数据。
+ * 注意：列表中只包含尚未发送的数据，发送后之前的索引和标记({@link #mark()})都会失效
+ */
+public class StreamingPrintParams extends PrintParams {
+
+    private static final long serialVersionUID = 4216873154622104518L;
+
+    /**
+     * 默认发送阈值（字节）
+     */
+    public static final int DEFAULT_FLUSH_THRESHOLD = 4096;
+
+    private final transient PrintSink sink;
+    private final int flushThreshold;
+
+    /**
+     * 已发送到输出目标的字节数
+     */
+    private long flushedLength;
+
+    /**
+     * 写入输出目标时发生的异常，发生后不再缓存数据，在flush或finish时抛出
+     */
+    private PrinterException error;
+
+    public StreamingPrintParams(TicketSpec spec, @NonNull PrintSink sink) {
+        this(spec, sink, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    /**
+     * @param spec           小票规格
+     * @param sink           输出目标
+     * @param flushThreshold 发送阈值（字节），缓存的数据达到该长度后在行结束时发送
+     */
+    public StreamingPrintParams(TicketSpec spec, @NonNull PrintSink sink, int flushThreshold) {
+        super(spec);
+        this.sink = sink;
+        this.flushThreshold = Math.max(1, flushThreshold);
+    }
+
+    /**
+     * 添加元素，超过阈值的大块数据(如图片)不再复制到缓冲区，发送已缓存的数据后直接写入输出目标
+     */
+    @Override
+    public boolean add(byte[] item) {
+        //父类构造时sink尚未赋值，直接缓存
+        if (this.sink == null) {
+            return super.add(item);
+        }
+
+        if (this.error != null) {
+            return false;
+        }
+
+        if (item != null && item.length >= this.flushThreshold) {
+            this.flushBuffer();
+            this.trackCommand(item, 0, item.length);
+            this.writeToSink(item, 0, item.length);
+            return this.error == null;
+        }
+
+        return super.add(item);
+    }
+
+    /**
+     * 添加换行，缓存的数据达到阈值时发送
+     */
+    @Override
+    public void addNextRow() {
+        super.addNextRow();
+        if (this.sink != null && this.getByteLength() >= this.flushThreshold) {
+            this.flushBuffer();
+        }
+    }
+
+    /**
+     * 追加并行生成的表格分块，缓存的数据达到阈值时发送
+     */
+    @Override
+    void appendChunk(PrintParams chunk) {
+        if (this.error != null) {
+            return;
+        }
+        super.appendChunk(chunk);
+        if (this.getByteLength() >= this.flushThreshold) {
+            this.flushBuffer();
+        }
+    }
+
+    /**
+     * 发送已缓存的数据
+     */
+    public void flush() throws PrinterException {
+        this.flushBuffer();
+        this.throwIfError();
+    }
+
+    /**
+     * 发送剩余数据并推送输出目标中尚未发出的数据，构造完成后调用
+     */
+    public void finish() throws PrinterException {
+        this.flushBuffer();
+        this.throwIfError();
+        this.sink.flush();
+    }
+
+    /**
+     * 已发送到输出目标的字节数
+     */
+    public long getFlushedLength() {
+        return this.flushedLength;
+    }
+
+    private void flushBuffer() {
+        int length = this.getByteLength();
+        if (length > 0 && this.error == null) {
+            this.writeToSink(this.array(), 0, length);
+        }
+        //已发送的数据按顺序到达打印机，保留打印机状态
+        this.clearBuffer();
+    }
+
+    private void writeToSink(byte[] data, int offset, int count) {
+        if (this.error != null) {
+            return;
+        }
+
+        try {
+            this.sink.write(data, offset, count);
+            this.flushedLength += count;
+        } catch (PrinterException e) {
+            this.error = e;
+        }
+    }
+
+    private void throwIfError() throws PrinterException {
+        if (this.error != null) {
+            throw this.error;
+        }
+    }
+}
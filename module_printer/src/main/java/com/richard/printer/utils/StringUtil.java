@@ -1,8 +1,11 @@
 package com.richard.printer.utils;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * author Richard
@@ -12,6 +15,15 @@ import java.util.List;
  */
 public final class StringUtil {
 
+    /**
+     * 默认字符编码
+     */
+    private static final String DEFAULT_CHARSET = "GBK";
+
+    /**
+     * 各编码下基本多文种平面字符的字节宽度表，按需填充，0表示尚未计算
+     */
+    private static final ConcurrentMap<String, byte[]> WIDTH_TABLES = new ConcurrentHashMap<>();
 
     /**
      * 按字节长度截取字符串
@@ -23,43 +35,141 @@ public final class StringUtil {
      * @return 截取结果
      */
     public static List<String> substring(String text, String charsetName, int limit) {
-        if (text == null) {
-            return new ArrayList<>();
+        int[] offsets = splitOffsets(text, charsetName, limit);
+        List<String> result = new ArrayList<>(offsets.length);
+        int start = 0;
+        for (int end : offsets) {
+            result.add(text.substring(start, end));
+            start = end;
         }
+        return result;
+    }
 
-        try {
-            charsetName = charsetName == null || "".equals(charsetName) ? "GBK" : charsetName;
-            int textLength = text.getBytes(charsetName).length;
-            char[] tempChar = text.toCharArray();
-            int reInt = 0;
-            int index = 0;
-            String reStr = "";
-            List<String> result = new ArrayList<>();
-
-            while (reInt < textLength) {
-                for (int i = 0; i < limit && index < tempChar.length; i++) {
-                    String s1 = String.valueOf(tempChar[index]);
-
-                    //若字节长度超过了当前指定的分割字节数量，则忽略该次切割，放到下次切割
-                    if (reStr.concat(s1).getBytes(charsetName).length > limit) {
-                        break;
-                    }
-
-                    reInt += s1.getBytes(charsetName).length;
-                    reStr = reStr.concat(s1);
-                    index++;
-                }
+    /**
+     * 按字节长度计算字符串的分割位置，只遍历一次字符串，不生成中间字符串
+     * 单个字符的宽度已经超过limit时，该字符单独占一段
+     *
+     * @param text        要分割的字符串
+     * @param charsetName 字符编码名称，为空时使用GBK
+     * @param limit       每段最大字节数
+     * @return 每段的结束位置(不包含)，最后一个值为字符串长度；字符串为空或编码不支持时返回空数组
+     */
+    public static int[] splitOffsets(CharSequence text, String charsetName, int limit) {
+        if (text == null || text.length() == 0) {
+            return new int[0];
+        }
 
-                result.add(reStr);
-                reStr = "";
+        Charset charset = forName(charsetName);
+        if (charset == null) {
+            return new int[0];
+        }
+
+        int length = text.length();
+        limit = Math.max(1, limit);
+        int[] offsets = new int[Math.min(length, 16)];
+        int count = 0;
+        int lineWidth = 0;
+        int index = 0;
+
+        while (index < length) {
+            int charCount = charCount(text, index);
+            int width = width(text, index, charCount, charset);
+
+            //若字节长度超过了当前指定的分割字节数量，则放到下一段
+            if (lineWidth > 0 && lineWidth + width > limit) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = index;
+                lineWidth = 0;
             }
 
-            return result;
-        } catch (UnsupportedEncodingException e) {
+            lineWidth += width;
+            index += charCount;
+        }
+
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count + 1);
+        }
+        offsets[count++] = length;
+
+        return count == offsets.length ? offsets : Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * 计算字符串编码后的字节长度，不生成字节数组
+     *
+     * @param text        字符串
+     * @param charsetName 字符编码名称，为空时使用GBK
+     * @return 字节长度，编码不支持时返回0
+     */
+    public static int getByteWidth(CharSequence text, String charsetName) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+
+        Charset charset = forName(charsetName);
+        if (charset == null) {
+            return 0;
+        }
+
+        int total = 0;
+        for (int index = 0, length = text.length(); index < length; ) {
+            int charCount = charCount(text, index);
+            total += width(text, index, charCount, charset);
+            index += charCount;
+        }
+        return total;
+    }
+
+    private static Charset forName(String charsetName) {
+        try {
+            return Charset.forName(charsetName == null || "".equals(charsetName) ? DEFAULT_CHARSET : charsetName);
+        } catch (Exception e) {
             e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 代理对(补充平面字符)作为一个整体，不拆开
+     */
+    private static int charCount(CharSequence text, int index) {
+        return Character.isHighSurrogate(text.charAt(index))
+                && index + 1 < text.length()
+                && Character.isLowSurrogate(text.charAt(index + 1)) ? 2 : 1;
+    }
+
+    /**
+     * 获取字符编码后的字节宽度，单字符查表，首次遇到时编码一次并记录
+     */
+    private static int width(CharSequence text, int index, int charCount, Charset charset) {
+        if (charCount > 1) {
+            return text.subSequence(index, index + charCount).toString().getBytes(charset).length;
+        }
+
+        char c = text.charAt(index);
+        byte[] table = widthTable(charset);
+        int width = table[c];
+        if (width == 0) {
+            width = String.valueOf(c).getBytes(charset).length;
+            table[c] = (byte) width;
         }
+        return width;
+    }
 
-        return new ArrayList<>();
+    private static byte[] widthTable(Charset charset) {
+        String name = charset.name();
+        byte[] table = WIDTH_TABLES.get(name);
+        if (table == null) {
+            //并发填充时各线程写入的值相同，无需加锁
+            byte[] created = new byte[Character.MAX_VALUE + 1];
+            table = WIDTH_TABLES.putIfAbsent(name, created);
+            if (table == null) {
+                table = created;
+            }
+        }
+        return table;
     }
 
 }
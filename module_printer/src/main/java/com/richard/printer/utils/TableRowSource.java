@@ -0,0 +1,21 @@
+package com.richard.printer.utils;
+
+/**
+ * 表格行数据来源，按行号和列号读取单元格文本，不需要为每个单元格创建对象；
+ * 并行生成表格时会在多个线程中同时读取，实现需保证读取是线程安全的
+ */
+public interface TableRowSource {
+
+    /**
+     * 行数
+     */
+    int getRowCount();
+
+    /**
+     * 获取单元格文本
+     *
+     * @param row    行号
+     * @param column 列号
+     */
+    String getText(int row, int column);
+}
@@ -0,0 +1,67 @@
+package com.richard.printer.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 小票模板数据，按名称填充模板中的文本、数字和表格位置
+ */
+public class TemplateData {
+
+    private final Map<String, Object> values = new HashMap<>();
+
+    /**
+     * 填充文本
+     */
+    public TemplateData putText(String name, CharSequence text) {
+        this.values.put(name, text);
+        return this;
+    }
+
+    /**
+     * 填充数字，按模板中设置的格式输出
+     */
+    public TemplateData putNumber(String name, Number number) {
+        this.values.put(name, number);
+        return this;
+    }
+
+    /**
+     * 填充表格的全部行
+     *
+     * @param rows 每行的列文本，列数必须与模板表格的列数一致
+     */
+    public TemplateData putRows(String name, List<String[]> rows) {
+        this.values.put(name, rows);
+        return this;
+    }
+
+    /**
+     * 向表格追加一行
+     *
+     * @param columns 列文本，列数必须与模板表格的列数一致
+     */
+    @SuppressWarnings("unchecked")
+    public TemplateData addRow(String name, String... columns) {
+        Object rows = this.values.get(name);
+        if (!(rows instanceof List)) {
+            rows = new ArrayList<String[]>();
+            this.values.put(name, rows);
+        }
+        ((List<String[]>) rows).add(columns);
+        return this;
+    }
+
+    /**
+     * 清空数据，便于复用同一个对象填充下一张小票
+     */
+    public void clear() {
+        this.values.clear();
+    }
+
+    Object get(String name) {
+        return this.values.get(name);
+    }
+}
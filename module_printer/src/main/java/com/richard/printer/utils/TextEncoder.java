@@ -0,0 +1,145 @@
+package com.richard.printer.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 文本编码工具
+ * 每个线程为每种编码保留一个CharsetEncoder，不再每次调用都查找编码；
+ * 可以直接编码到调用方的缓冲区，无法编码的字符与String.getBytes一样替换为'?'；
+ * 只计算字节宽度时使用{@link StringUtil#getByteWidth}
+ */
+public final class TextEncoder {
+
+    /**
+     * 临时缓冲区初始容量
+     */
+    private static final int DEFAULT_SCRATCH_SIZE = 256;
+
+    /**
+     * 线程保留的临时缓冲区上限，更长的文本使用一次性缓冲区
+     */
+    private static final int MAX_SCRATCH_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<EncoderCache> CACHE = new ThreadLocal<EncoderCache>() {
+        @Override
+        protected EncoderCache initialValue() {
+            return new EncoderCache();
+        }
+    };
+
+    private TextEncoder() {
+    }
+
+    /**
+     * 编码文本
+     *
+     * @param text        文本
+     * @param charsetName 字符编码名称
+     * @return 编码结果，text为空时返回null
+     */
+    public static byte[] getBytes(CharSequence text, String charsetName) {
+        if (text == null) {
+            return null;
+        }
+
+        EncoderCache cache = CACHE.get();
+        CharsetEncoder encoder = cache.encoder(charsetName);
+        byte[] scratch = cache.scratch(maxLength(text, encoder));
+        int count = encode(text, encoder, scratch, 0);
+        return Arrays.copyOf(scratch, count);
+    }
+
+    /**
+     * 编码文本到指定缓冲区
+     *
+     * @param text        文本
+     * @param charsetName 字符编码名称
+     * @param dest        目标缓冲区，从offset开始至少需要{@link #maxLength}字节的空间
+     * @param offset      写入位置
+     * @return 写入的字节数
+     */
+    public static int encode(CharSequence text, String charsetName, byte[] dest, int offset) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        return encode(text, CACHE.get().encoder(charsetName), dest, offset);
+    }
+
+    /**
+     * 获取文本编码后可能的最大字节数，用于预留缓冲区
+     */
+    public static int maxLength(CharSequence text, String charsetName) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        return maxLength(text, CACHE.get().encoder(charsetName));
+    }
+
+    private static int maxLength(CharSequence text, CharsetEncoder encoder) {
+        return (int) Math.ceil(text.length() * (double) encoder.maxBytesPerChar());
+    }
+
+    private static int encode(CharSequence text, CharsetEncoder encoder, byte[] dest, int offset) {
+        ByteBuffer out = ByteBuffer.wrap(dest, offset, dest.length - offset);
+        encoder.reset();
+        //替换模式下只会因为目标缓冲区空间不足失败
+        CoderResult result = encoder.encode(CharBuffer.wrap(text), out, true);
+        if (result.isUnderflow()) {
+            result = encoder.flush(out);
+        }
+        if (!result.isUnderflow()) {
+            throw new IndexOutOfBoundsException("Buffer too small, offset: " + offset + ", length: " + dest.length);
+        }
+        return out.position() - offset;
+    }
+
+    /**
+     * 线程内的编码器和临时缓冲区
+     */
+    private static final class EncoderCache {
+        private final Map<String, CharsetEncoder> encoders = new HashMap<>();
+        private String lastName;
+        private CharsetEncoder lastEncoder;
+        private byte[] scratch = new byte[DEFAULT_SCRATCH_SIZE];
+
+        CharsetEncoder encoder(String charsetName) {
+            if (charsetName == null || "".equals(charsetName)) {
+                charsetName = "GBK";
+            }
+
+            if (charsetName.equals(this.lastName)) {
+                return this.lastEncoder;
+            }
+
+            CharsetEncoder encoder = this.encoders.get(charsetName);
+            if (encoder == null) {
+                encoder = Charset.forName(charsetName).newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                this.encoders.put(charsetName, encoder);
+            }
+
+            this.lastName = charsetName;
+            this.lastEncoder = encoder;
+            return encoder;
+        }
+
+        byte[] scratch(int minCapacity) {
+            if (minCapacity > MAX_SCRATCH_SIZE) {
+                return new byte[minCapacity];
+            }
+            if (this.scratch.length < minCapacity) {
+                this.scratch = new byte[Math.min(MAX_SCRATCH_SIZE, Math.max(minCapacity, this.scratch.length << 1))];
+            }
+            return this.scratch;
+        }
+    }
+}
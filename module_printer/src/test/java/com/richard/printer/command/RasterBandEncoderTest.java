@@ -0,0 +1,166 @@
+package com.richard.printer.command;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 光栅位图分段编码测试：各段拼接后与整张图片二值化再打包的结果一致
+ */
+public class RasterBandEncoderTest {
+
+    @Test
+    public void bandsSameAsPackRaster() {
+        Random random = new Random(25);
+        for (int round = 0; round < 300; round++) {
+            int width = 1 + random.nextInt(120);
+            int height = 1 + random.nextInt(100);
+            int offset = random.nextInt(20);
+            int stride = width + random.nextInt(10);
+            boolean floyd = random.nextBoolean();
+            int m = random.nextInt(4);
+            byte[] plane = plane(random, width, height, offset, stride);
+
+            byte[] mono = floyd
+                    ? RasterEngine.ditherFloyd(plane, offset, stride, width, height, null)
+                    : RasterEngine.thresholdByMean(plane, offset, stride, width, height, null);
+            byte[] expected = RasterEngine.packRaster(m, mono, 0, width, width, height, null, null);
+
+            RasterBandEncoder encoder = new RasterBandEncoder(m, plane, offset, stride, width, height, floyd);
+            assertEquals(expected.length, encoder.getTotalLength());
+            ByteArrayOutputStream bands = new ByteArrayOutputStream();
+            int bandCount = 0;
+            while (encoder.hasNextBand()) {
+                byte[] band = encoder.nextBand();
+                assertTrue(band.length <= encoder.getMaxBandLength());
+                bands.write(band, 0, band.length);
+                bandCount++;
+            }
+            assertEquals(encoder.getBandCount(), bandCount);
+            assertArrayEquals(width + "x" + height + (floyd ? " floyd" : " threshold"), expected, bands.toByteArray());
+        }
+    }
+
+    @Test
+    public void reusedBufferSameAsNewBands() {
+        Random random = new Random(250);
+        for (int round = 0; round < 100; round++) {
+            int width = 1 + random.nextInt(120);
+            int height = 1 + random.nextInt(100);
+            boolean floyd = random.nextBoolean();
+            byte[] luma = RasterEngineTest.randomLuma(random, width, height);
+
+            RasterBandEncoder expected = new RasterBandEncoder(0, luma, 0, width, width, height, floyd);
+            RasterBandEncoder reused = new RasterBandEncoder(0, luma, 0, width, width, height, floyd);
+            int destOffset = random.nextInt(10);
+            byte[] buffer = new byte[destOffset + reused.getMaxBandLength()];
+            while (expected.hasNextBand()) {
+                byte[] band = expected.nextBand();
+                assertEquals(band.length, reused.nextBand(buffer, destOffset));
+                for (int i = 0; i < band.length; i++) {
+                    assertEquals(band[i], buffer[destOffset + i]);
+                }
+            }
+            assertFalse(reused.hasNextBand());
+        }
+    }
+
+    @Test
+    public void lumaSourceReadByBand() {
+        Random random = new Random(2501);
+        for (int round = 0; round < 100; round++) {
+            final int width = 1 + random.nextInt(120);
+            final int height = 1 + random.nextInt(100);
+            final boolean floyd = random.nextBoolean();
+            final byte[] luma = RasterEngineTest.randomLuma(random, width, height);
+
+            //每次最多读取一段加一行，误差扩散时每行只读取一次
+            final int[] maxRows = new int[1];
+            final int[] readRows = new int[1];
+            RasterBandEncoder encoder = new RasterBandEncoder(0, new RasterBandEncoder.LumaRowSource() {
+                @Override
+                public void readRows(int fromRow, int rowCount, byte[] dest, int offset) {
+                    assertTrue(fromRow >= 0 && rowCount > 0 && fromRow + rowCount <= height);
+                    maxRows[0] = Math.max(maxRows[0], rowCount);
+                    readRows[0] += rowCount;
+                    System.arraycopy(luma, fromRow * width, dest, offset, rowCount * width);
+                }
+            }, width, height, floyd);
+            RasterBandEncoder expected = new RasterBandEncoder(0, luma, 0, width, width, height, floyd);
+            while (expected.hasNextBand()) {
+                assertArrayEquals(expected.nextBand(), encoder.nextBand());
+            }
+            assertFalse(encoder.hasNextBand());
+            assertTrue(maxRows[0] <= RasterBandEncoder.BAND_HEIGHT + 1);
+            //按平均亮度二值化时先读取一遍计算平均值
+            assertEquals(floyd ? height : 2 * height, readRows[0]);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void nextBandAfterEndRejected() {
+        RasterBandEncoder encoder = new RasterBandEncoder(0, new byte[16 * 10], 0, 16, 16, 10, true);
+        encoder.nextBand();
+        encoder.nextBand();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void smallBufferRejected() {
+        RasterBandEncoder encoder = new RasterBandEncoder(0, new byte[16 * 30], 0, 16, 16, 30, false);
+        encoder.nextBand(new byte[encoder.getMaxBandLength() - 1], 0);
+    }
+
+    @Test
+    public void rowSourceSameAsPlane() {
+        Random random = new Random(2500);
+        for (int round = 0; round < 100; round++) {
+            final int width = 1 + random.nextInt(120);
+            final int height = 1 + random.nextInt(80);
+            final int offset = random.nextInt(20);
+            final int stride = width + random.nextInt(10);
+            int parting = 1 + random.nextInt(40);
+            boolean hasAlpha = random.nextBoolean();
+            final int[] argb = new int[offset + stride * height];
+            for (int i = 0; i < argb.length; i++) {
+                argb[i] = random.nextInt();
+            }
+
+            //按行读取时每行只读取一次、按顺序读取
+            final int[] nextRow = new int[1];
+            List<byte[]> actual = RasterEngine.toRasterDataList(new RasterEngine.ArgbRowSource() {
+                @Override
+                public void readRow(int y, int[] row) {
+                    assertEquals(nextRow[0]++, y);
+                    assertEquals(width, row.length);
+                    System.arraycopy(argb, offset + y * stride, row, 0, width);
+                }
+            }, width, height, hasAlpha, parting);
+            List<byte[]> expected = RasterEngine.toRasterDataList(argb, offset, stride, width, height, hasAlpha, parting);
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), actual.get(i));
+            }
+            //最后一段高度为height % parting，整除时最后一段没有数据行
+            int expectedRows = height % parting == 0 ? height - parting : height;
+            assertEquals(expectedRows, nextRow[0]);
+        }
+    }
+
+    /**
+     * 随机亮度平面，放在带偏移和行间隔的缓冲区中，其余位置为随机值
+     */
+    private static byte[] plane(Random random, int width, int height, int offset, int stride) {
+        byte[] luma = RasterEngineTest.randomLuma(random, width, height);
+        byte[] plane = new byte[offset + stride * height];
+        random.nextBytes(plane);
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(luma, y * width, plane, offset + y * stride, width);
+        }
+        return plane;
+    }
+}
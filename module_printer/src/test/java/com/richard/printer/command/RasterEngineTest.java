@@ -0,0 +1,532 @@
+package com.richard.printer.command;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 位图转换测试：转换结果与原来逐像素的实现逐字节一致
+ */
+public class RasterEngineTest {
+
+    private static final int WHITE_PIXEL = -1;
+    private static final int BLACK_PIXEL = -16777216;
+
+    @Test
+    public void thresholdSameAsBaseline() {
+        Random random = new Random(22);
+        for (int round = 0; round < 300; round++) {
+            int width = 1 + random.nextInt(100);
+            int height = 1 + random.nextInt(80);
+            int m = random.nextInt(4);
+            byte[] luma = randomLuma(random, width, height);
+
+            byte[] expected = baselineRaster(m, baselineThreshold(grey(luma), width, height), width, height, null);
+            byte[] mono = RasterEngine.thresholdByMean(luma, 0, width, width, height, null);
+            assertArrayEquals(width + "x" + height, expected,
+                    RasterEngine.packRaster(m, mono, 0, width, width, height, null, null));
+        }
+    }
+
+    @Test
+    public void floydSameAsBaseline() {
+        Random random = new Random(220);
+        for (int round = 0; round < 300; round++) {
+            int width = 1 + random.nextInt(100);
+            int height = 1 + random.nextInt(80);
+            byte[] luma = randomLuma(random, width, height);
+
+            byte[] expected = baselineRaster(0, baselineFloyd(grey(luma), width, height), width, height, null);
+            byte[] mono = RasterEngine.ditherFloyd(luma, 0, width, width, height, null);
+            assertArrayEquals(width + "x" + height, expected,
+                    RasterEngine.packRaster(0, mono, 0, width, width, height, null, null));
+        }
+    }
+
+    @Test
+    public void alignPrefixSameAsBaseline() {
+        Random random = new Random(2200);
+        for (int round = 0; round < 100; round++) {
+            int width = 1 + random.nextInt(200);
+            int height = 1 + random.nextInt(80);
+            int position = random.nextInt(600);
+            byte[] prefix = PrinterCmd.setAbsolutePrintPosition(position % 256, position / 256);
+            byte[] luma = randomLuma(random, width, height);
+
+            byte[] expected = baselineRaster(0, baselineThreshold(grey(luma), width, height), width, height, prefix);
+            byte[] mono = RasterEngine.thresholdByMean(luma, 0, width, width, height, null);
+            assertArrayEquals(expected, RasterEngine.packRaster(0, mono, 0, width, width, height, prefix, null));
+            assertEquals(expected.length, RasterEngine.getRasterLength(width, height, prefix.length));
+        }
+    }
+
+    @Test
+    public void bitImageSameAsBaseline() {
+        Random random = new Random(22000);
+        for (int round = 0; round < 200; round++) {
+            int width = 1 + random.nextInt(100);
+            int height = 1 + random.nextInt(40);
+            int m = random.nextInt(2) == 0 ? 0 : 33;
+            byte[] luma = randomLuma(random, width, height);
+
+            int[] pixels = baselineThreshold(grey(luma), width, height);
+            byte[] mono = RasterEngine.thresholdByMean(luma, 0, width, width, height, null);
+            assertArrayEquals(width + "x" + height, baselineBitImage(m, pixels, width, height),
+                    RasterEngine.packBitImage(m, mono, 0, width, width, height));
+        }
+    }
+
+    @Test
+    public void planeOffsetAndStride() {
+        Random random = new Random(220000);
+        for (int round = 0; round < 100; round++) {
+            int width = 1 + random.nextInt(100);
+            int height = 1 + random.nextInt(80);
+            int offset = random.nextInt(50);
+            int stride = width + random.nextInt(20);
+            byte[] luma = randomLuma(random, width, height);
+            byte[] plane = new byte[offset + stride * height];
+            random.nextBytes(plane);
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(luma, y * width, plane, offset + y * stride, width);
+            }
+
+            assertArrayEquals(RasterEngine.thresholdByMean(luma, 0, width, width, height, null),
+                    RasterEngine.thresholdByMean(plane, offset, stride, width, height, null));
+            assertArrayEquals(RasterEngine.ditherFloyd(luma, 0, width, width, height, null),
+                    RasterEngine.ditherFloyd(plane, offset, stride, width, height, null));
+            assertEquals(RasterEngine.meanLuma(luma, 0, width, width, height),
+                    RasterEngine.meanLuma(plane, offset, stride, width, height));
+
+            //二值化平面同样可以带偏移
+            byte[] mono = RasterEngine.ditherFloyd(luma, 0, width, width, height, null);
+            byte[] monoPlane = new byte[offset + stride * height];
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(mono, y * width, monoPlane, offset + y * stride, width);
+            }
+            assertArrayEquals(RasterEngine.packRaster(0, mono, 0, width, width, height, null, null),
+                    RasterEngine.packRaster(0, monoPlane, offset, stride, width, height, null, null));
+        }
+    }
+
+    @Test
+    public void packIntoPresizedBuffer() {
+        Random random = new Random(2200000);
+        int width = 77;
+        int height = 50;
+        byte[] mono = RasterEngine.ditherFloyd(randomLuma(random, width, height), 0, width, width, height, null);
+        byte[] expected = RasterEngine.packRaster(0, mono, 0, width, width, height, null, null);
+
+        int destOffset = 13;
+        byte[] dest = new byte[destOffset + expected.length + 5];
+        Arrays.fill(dest, (byte) 0x5A);
+        assertEquals(expected.length, RasterEngine.packRaster(0, mono, 0, width, width, height, null, dest, destOffset, null));
+        for (int i = 0; i < dest.length; i++) {
+            if (i < destOffset || i >= destOffset + expected.length) {
+                //目标区域之外不写入
+                assertEquals(0x5A, dest[i]);
+            } else {
+                assertEquals(expected[i - destOffset], dest[i]);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void packIntoSmallBufferRejected() {
+        byte[] mono = new byte[30 * 30];
+        RasterEngine.packRaster(0, mono, 0, 30, 30, 30, null, new byte[100], 0, null);
+    }
+
+    @Test
+    public void parallelSameAsSequential() {
+        //宽度不是误差扩散进度步长的整数倍、窄高、宽矮的图片
+        int[][] sizes = {{600, 400}, {513, 300}, {40, 4000}, {3000, 50}, {1000, 132}};
+        Random random = new Random(24);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int[] size : sizes) {
+                int width = size[0];
+                int height = size[1];
+                assertTrue(width * height >= RasterEngine.PARALLEL_MIN_PIXELS);
+                byte[] luma = randomLuma(random, width, height);
+                String message = width + "x" + height;
+
+                byte[] floyd = RasterEngine.ditherFloyd(luma, 0, width, width, height, null);
+                assertArrayEquals(message, floyd, RasterEngine.ditherFloyd(luma, 0, width, width, height, executor));
+
+                byte[] threshold = RasterEngine.thresholdByMean(luma, 0, width, width, height, null);
+                assertArrayEquals(message, threshold,
+                        RasterEngine.thresholdByMean(luma, 0, width, width, height, executor));
+
+                byte[] prefix = PrinterCmd.setAbsolutePrintPosition(16, 0);
+                assertArrayEquals(message, RasterEngine.packRaster(0, floyd, 0, width, width, height, prefix, null),
+                        RasterEngine.packRaster(0, floyd, 0, width, width, height, prefix, executor));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parallelRepeatedRuns() {
+        //误差扩散的行间等待有竞争，多次运行检查结果稳定
+        int width = 700;
+        int height = 300;
+        byte[] luma = randomLuma(new Random(240), width, height);
+        byte[] expected = RasterEngine.ditherFloyd(luma, 0, width, width, height, null);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 20; round++) {
+                assertArrayEquals(expected, RasterEngine.ditherFloyd(luma, 0, width, width, height, executor));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void calledFromSingleThreadExecutor() throws Exception {
+        final int width = 600;
+        final int height = 400;
+        final byte[] luma = randomLuma(new Random(2400), width, height);
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            //在线程池唯一的线程中使用同一个线程池，提交的任务不会开始，由当前线程完成
+            Future<byte[]> future = single.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    return RasterEngine.ditherFloyd(luma, 0, width, width, height, single);
+                }
+            });
+            assertArrayEquals(RasterEngine.ditherFloyd(luma, 0, width, width, height, null),
+                    future.get(30, TimeUnit.SECONDS));
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shutdownExecutorRunsInCurrentThread() {
+        int width = 600;
+        int height = 400;
+        byte[] luma = randomLuma(new Random(24000), width, height);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        executor.shutdown();
+        assertArrayEquals(RasterEngine.thresholdByMean(luma, 0, width, width, height, null),
+                RasterEngine.thresholdByMean(luma, 0, width, width, height, executor));
+        assertArrayEquals(RasterEngine.ditherFloyd(luma, 0, width, width, height, null),
+                RasterEngine.ditherFloyd(luma, 0, width, width, height, executor));
+    }
+
+    @Test
+    public void rasterDataListSameAsBaseline() {
+        Random random = new Random(21);
+        for (int round = 0; round < 300; round++) {
+            int width = 1 + random.nextInt(120);
+            int height = 1 + random.nextInt(60);
+            int parting = random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(30);
+            boolean hasAlpha = random.nextBoolean();
+            int[] argb = randomArgb(random, width, height);
+
+            List<byte[]> expected = baselineDataList(argb, width, height, hasAlpha, parting);
+            List<byte[]> actual = RasterEngine.toRasterDataList(argb, 0, width, width, height, hasAlpha, parting);
+            String message = width + "x" + height + " parting " + parting;
+            assertEquals(message, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(message, expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void rasterDataListRejectsWideImage() {
+        assertNull(RasterEngine.toRasterDataList(new int[2041], 0, 2041, 2041, 1, false, 24));
+        assertNotNull(RasterEngine.toRasterDataList(new int[2040], 0, 2040, 2040, 1, false, 24));
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // 测试数据
+
+    /**
+     * 随机亮度平面：噪点、渐变或色块，覆盖误差扩散中超出0-255的灰度值
+     */
+    static byte[] randomLuma(Random random, int width, int height) {
+        byte[] luma = new byte[width * height];
+        int kind = random.nextInt(3);
+        int blockSize = 1 + random.nextInt(16);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value;
+                switch (kind) {
+                    case 0:
+                        value = random.nextInt(256);
+                        break;
+                    case 1:
+                        value = (x * 255 / width + y * 255 / height) / 2;
+                        break;
+                    default:
+                        value = ((x / blockSize + y / blockSize) % 2) * 255;
+                        break;
+                }
+                luma[y * width + x] = (byte) value;
+            }
+        }
+        return luma;
+    }
+
+    /**
+     * 随机ARGB像素，颜色集中在白色阈值160附近，透明度随机
+     */
+    private static int[] randomArgb(Random random, int width, int height) {
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++) {
+            int alpha = random.nextInt(3) == 0 ? random.nextInt(256) : 255;
+            int red = 120 + random.nextInt(136);
+            int green = 120 + random.nextInt(136);
+            int blue = 120 + random.nextInt(136);
+            argb[i] = alpha << 24 | red << 16 | green << 8 | blue;
+        }
+        return argb;
+    }
+
+    private static int[] grey(byte[] luma) {
+        int[] grey = new int[luma.length];
+        for (int i = 0; i < luma.length; i++) {
+            grey[i] = luma[i] & 255;
+        }
+        return grey;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // 原实现
+
+    /**
+     * 原convertGreyImg：按平均值二值化，像素为已去色位图的红色通道
+     */
+    private static int[] baselineThreshold(int[] grey, int width, int height) {
+        double redSum = 0.0D;
+        double total = (double) (width * height);
+        for (int i = 0; i < grey.length; i++) {
+            redSum += (double) grey[i];
+        }
+        int m = (int) (redSum / total);
+
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = grey[i] >= m ? WHITE_PIXEL : BLACK_PIXEL;
+        }
+        return pixels;
+    }
+
+    /**
+     * 原convertGreyImgByFloyd：误差扩散
+     */
+    private static int[] baselineFloyd(int[] grey, int width, int height) {
+        int[] gray = grey.clone();
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < height; ++i) {
+            for (int j = 0; j < width; ++j) {
+                int g = gray[width * i + j];
+                int e;
+                if (g >= 128) {
+                    pixels[width * i + j] = WHITE_PIXEL;
+                    e = g - 255;
+                } else {
+                    pixels[width * i + j] = BLACK_PIXEL;
+                    e = g - 0;
+                }
+
+                if (j < width - 1 && i < height - 1) {
+                    gray[width * i + j + 1] += 3 * e / 8;
+                    gray[width * (i + 1) + j] += 3 * e / 8;
+                    gray[width * (i + 1) + j + 1] += e / 4;
+                } else if (j == width - 1 && i < height - 1) {
+                    gray[width * (i + 1) + j] += 3 * e / 8;
+                } else if (j < width - 1 && i == height - 1) {
+                    gray[width * i + j + 1] += e / 4;
+                }
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * 原getbmpdata：按行打包，红色通道不为0的置位后整体取反，行末补位为白色
+     */
+    private static byte[] baselineBmpData(int[] b, int w, int h) {
+        int n = (w + 7) / 8;
+        byte[] data = new byte[n * h];
+        byte mask = 1;
+        for (int y = 0; y < h; ++y) {
+            for (int x = 0; x < n * 8; ++x) {
+                if (x < w) {
+                    if ((b[y * w + x] & 16711680) >> 16 != 0) {
+                        data[y * n + x / 8] |= (byte) (mask << 7 - x % 8);
+                    }
+                } else {
+                    data[y * n + x / 8] |= (byte) (mask << 7 - x % 8);
+                }
+            }
+        }
+        for (int y = 0; y < data.length; ++y) {
+            data[y] = (byte) (~data[y]);
+        }
+        return data;
+    }
+
+    /**
+     * 原rasterBmpToSendData：每24行一段，对齐时每段前加定位指令
+     */
+    private static byte[] baselineRaster(int m, int[] pixels, int width, int height, byte[] alignData) {
+        byte[] data = baselineBmpData(pixels, width, height);
+        int n = (width + 7) / 8;
+        int x = (height + 23) / 24;
+        List<Byte> list = new ArrayList<>();
+        byte[] head = new byte[]{29, 118, 48, (byte) m, (byte) (n % 256), (byte) (n / 256), 24, 0};
+        for (int i = 0; i < x; ++i) {
+            byte[] newdata;
+            if (i == x - 1 && height % 24 != 0) {
+                head[6] = (byte) (height % 24);
+                newdata = new byte[height % 24 * n];
+                System.arraycopy(data, 24 * i * n, newdata, 0, height % 24 * n);
+            } else {
+                head[6] = 24;
+                newdata = new byte[n * 24];
+                System.arraycopy(data, 24 * i * n, newdata, 0, 24 * n);
+            }
+
+            if (alignData != null) {
+                for (byte b : alignData) {
+                    list.add(b);
+                }
+            }
+            for (byte b : head) {
+                list.add(b);
+            }
+            for (byte b : newdata) {
+                list.add(b);
+            }
+        }
+        return toArray(list);
+    }
+
+    /**
+     * 原baBmpToSendData：每8行一段ESC *，超出图片的部分和最后一个像素为白色
+     */
+    private static byte[] baselineBitImage(int m, int[] pixels, int width, int height) {
+        int n = (height + 7) / 8;
+        List<Byte> list = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            int[] perPix = new int[width * 8];
+            for (int j = 0; j < perPix.length; ++j) {
+                if (j + 8 * i * width < pixels.length - 1) {
+                    perPix[j] = pixels[j + 8 * i * width];
+                } else {
+                    perPix[j] = WHITE_PIXEL;
+                }
+            }
+
+            byte[] perdata = new byte[width];
+            for (int x = 0; x < width; ++x) {
+                for (int y = 0; y < 8; ++y) {
+                    if ((perPix[y * width + x] & 16711680) >> 16 != 0) {
+                        perdata[x] |= (byte) (1 << 7 - y);
+                    }
+                }
+            }
+            for (byte b : new byte[]{27, 42, (byte) m, (byte) (width % 256), (byte) (width / 256)}) {
+                list.add(b);
+            }
+            for (byte b : perdata) {
+                list.add((byte) ~b);
+            }
+            for (byte b : new byte[]{27, 74, 16}) {
+                list.add(b);
+            }
+        }
+        return toArray(list);
+    }
+
+    /**
+     * 原PrinterCmdUtil.decodeBitmapToDataList：逐像素拼接二进制字符串，每8位转换为16进制，
+     * 最后一段高度为height % parting
+     */
+    private static List<byte[]> baselineDataList(int[] argb, int width, int height, boolean hasAlpha, int parting) {
+        if (parting <= 0 || parting > 255) {
+            parting = 255;
+        }
+        String widthHexString = Integer.toHexString(width % 8 == 0 ? width / 8 : (width / 8 + 1));
+        if (widthHexString.length() == 1) {
+            widthHexString = "0" + widthHexString;
+        }
+        widthHexString += "00";
+
+        String zeroStr = "";
+        int zeroCount = width % 8;
+        if (zeroCount > 0) {
+            for (int i = 0; i < (8 - zeroCount); i++) {
+                zeroStr += "0";
+            }
+        }
+        List<String> commandList = new ArrayList<>();
+        int time = height % parting == 0 ? height / parting : (height / parting + 1);
+        for (int t = 0; t < time; t++) {
+            int partHeight = t == time - 1 ? height % parting : parting;
+            String heightHexString = Integer.toHexString(partHeight);
+            if (heightHexString.length() == 1) {
+                heightHexString = "0" + heightHexString;
+            }
+            heightHexString += "00";
+            commandList.add("1D763000" + widthHexString + heightHexString);
+
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < partHeight; i++) {
+                sb.delete(0, sb.length());
+                for (int j = 0; j < width; j++) {
+                    int color = argb[(t * parting + i) * width + j];
+                    int red = (color >> 16) & 0xFF;
+                    int green = (color >> 8) & 0xFF;
+                    int blue = color & 0xFF;
+                    if (hasAlpha) {
+                        final float offset = (color >>> 24) / 255.0f;
+                        red = 0xFF + (int) Math.ceil((red - 0xFF) * offset);
+                        green = 0xFF + (int) Math.ceil((green - 0xFF) * offset);
+                        blue = 0xFF + (int) Math.ceil((blue - 0xFF) * offset);
+                    }
+                    sb.append(red > 160 && green > 160 && blue > 160 ? "0" : "1");
+                }
+                sb.append(zeroStr);
+                StringBuilder hex = new StringBuilder();
+                for (int k = 0; k < sb.length(); k += 8) {
+                    String h = Integer.toHexString(Integer.parseInt(sb.substring(k, k + 8), 2));
+                    hex.append(h.length() == 1 ? "0" + h : h);
+                }
+                commandList.add(hex.toString());
+            }
+        }
+
+        List<byte[]> data = new ArrayList<>();
+        for (String command : commandList) {
+            data.add(PrinterCmdUtil.hexStringToBytes(command));
+        }
+        return data;
+    }
+
+    private static byte[] toArray(List<Byte> list) {
+        byte[] data = new byte[list.size()];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = list.get(i);
+        }
+        return data;
+    }
+}
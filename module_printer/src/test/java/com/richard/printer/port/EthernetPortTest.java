@@ -0,0 +1,97 @@
+package com.richard.printer.port;
+
+import com.richard.printer.enumerate.ErrorCode;
+import com.richard.printer.enumerate.PortType;
+import com.richard.printer.model.PortInfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.*;
+
+/**
+ * 网口连接检测测试，用本机端口模拟打印机
+ */
+public class EthernetPortTest {
+
+    private ServerSocket server;
+    private EthernetPort port;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        PortInfo portInfo = new PortInfo();
+        portInfo.setPortType(PortType.Ethernet);
+        portInfo.setEthernetIP("127.0.0.1");
+        portInfo.setEthernetPort(this.server.getLocalPort());
+        this.port = new EthernetPort(portInfo);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.port.closePort();
+        this.server.close();
+    }
+
+    @Test
+    public void replyingPrinterAlive() throws Exception {
+        Socket printer = this.open();
+        this.replyToStatusQuery(printer);
+        assertTrue(this.port.portIsOpen());
+        printer.close();
+    }
+
+    @Test
+    public void silentReachablePrinterAlive() throws Exception {
+        //不回复实时指令的打印机，确认可达后仍认为连接有效
+        Socket printer = this.open();
+        assertTrue(this.port.portIsOpen());
+        printer.close();
+    }
+
+    @Test
+    public void closedConnectionDead() throws Exception {
+        Socket printer = this.open();
+        printer.close();
+        assertFalse(this.port.portIsOpen());
+        assertFalse(this.port.portIsOpen());
+    }
+
+    @Test
+    public void probeWithoutAddressNotConfirmed() throws Exception {
+        assertFalse(EthernetPort.probeReachable(null, 9100));
+        assertFalse(EthernetPort.probeReachable(InetAddress.getByName("127.0.0.1"), 0));
+    }
+
+    private Socket open() throws IOException {
+        assertEquals(ErrorCode.OpenPortSuccess, this.port.openPort().getErrorCode());
+        return this.server.accept();
+    }
+
+    /**
+     * 收到DLE EOT后回复一个状态字节
+     */
+    private void replyToStatusQuery(final Socket printer) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    InputStream input = printer.getInputStream();
+                    if (input.read() == 0x10 && input.read() == 0x04 && input.read() == 1) {
+                        printer.getOutputStream().write(0x16);
+                    }
+                } catch (IOException ignored) {
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,245 @@
+package com.richard.printer.port;
+
+import com.richard.printer.enumerate.ErrorCode;
+import com.richard.printer.model.PortInfo;
+import com.richard.printer.model.ReturnMessage;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+/**
+ * 流控测试：按窗口等待打印机确认，脱机时暂停写入，打印机不回传状态时退回
+ */
+public class PrinterPortFlowControlTest {
+
+    private static final int WINDOW = 100;
+
+    /**
+     * 模拟打印机端口，记录写入的数据和状态查询，按设定回复GS r 1和DLE EOT 2
+     */
+    private static class FakePrinterPort extends PrinterPort {
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final List<String> events = new ArrayList<>();
+        final Queue<Integer> replies = new LinkedList<>();
+        boolean answersTransmit = true;
+        boolean answersRealTime = true;
+        /**
+         * GS r 1在收到后第几次读取时回复，模拟打印机正在处理缓冲区
+         */
+        int busyReads;
+        /**
+         * 前几次DLE EOT 2回复脱机，脱机期间不回复GS r 1
+         */
+        int offlineQueries;
+        private boolean transmitPending;
+        private int transmitWait;
+
+        FakePrinterPort() {
+            super(newPortInfo());
+            this.mIsOpen = true;
+        }
+
+        private static PortInfo newPortInfo() {
+            PortInfo portInfo = new PortInfo();
+            portInfo.setFlowControlWindow(WINDOW);
+            return portInfo;
+        }
+
+        @Override
+        public ReturnMessage write(byte[] data, int offset, int count) {
+            byte[] bytes = Arrays.copyOfRange(data, offset, offset + count);
+            if (Arrays.equals(bytes, new byte[]{0x1D, 'r', 1})) {
+                this.events.add("GS r");
+                if (this.answersTransmit) {
+                    this.transmitPending = true;
+                    this.transmitWait = this.busyReads;
+                }
+            } else if (Arrays.equals(bytes, new byte[]{0x10, 4, 2})) {
+                if (!this.answersRealTime) {
+                    this.events.add("DLE EOT");
+                } else if (this.offlineQueries > 0) {
+                    this.offlineQueries--;
+                    this.events.add("offline");
+                    this.replies.add(0x12 | 0x20);
+                } else {
+                    this.events.add("online");
+                    this.replies.add(0x12);
+                }
+            } else {
+                this.events.add("data " + count);
+                this.received.write(data, offset, count);
+            }
+            return new ReturnMessage(ErrorCode.WriteDataSuccess, "", count);
+        }
+
+        @Override
+        protected int readWithTimeout(int timeoutMillis) {
+            if (!this.replies.isEmpty()) {
+                return this.replies.poll();
+            }
+            if (!this.transmitPending || this.offlineQueries > 0) {
+                return -1;
+            }
+            if (this.transmitWait-- > 0) {
+                return -1;
+            }
+            this.transmitPending = false;
+            this.events.add("ready");
+            return 0;
+        }
+
+        @Override
+        protected void discardInput() {
+            this.replies.clear();
+        }
+
+        @Override
+        public ReturnMessage openPort() {
+            this.resetFlowControl();
+            this.mIsOpen = true;
+            return new ReturnMessage(ErrorCode.OpenPortSuccess, "");
+        }
+
+        @Override
+        public ReturnMessage closePort() {
+            this.resetFlowControl();
+            this.mIsOpen = false;
+            return new ReturnMessage(ErrorCode.ClosePortSuccess, "");
+        }
+
+        @Override
+        public ReturnMessage write(int data) {
+            return this.write(new byte[]{(byte) data});
+        }
+
+        @Override
+        public ReturnMessage write(byte[] data) {
+            return this.write(data, 0, data.length);
+        }
+
+        @Override
+        public int read() {
+            return -1;
+        }
+
+        @Override
+        public boolean portIsOpen() {
+            return this.mIsOpen;
+        }
+
+        @Override
+        public ReturnMessage read(byte[] buffer, int offset, int count) {
+            return new ReturnMessage(ErrorCode.ReadDataFailed, "", -1);
+        }
+
+        @Override
+        public ReturnMessage read(byte[] data) {
+            return this.read(data, 0, data.length);
+        }
+
+        int count(String event) {
+            int count = 0;
+            for (String item : this.events) {
+                if (item.equals(event)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    @Test
+    public void windowPacing() {
+        FakePrinterPort port = new FakePrinterPort();
+        port.busyReads = 1;
+        byte[] data = data(150);
+        assertSuccess(port.writeChunked(data, 0, data.length));
+        assertSuccess(port.writeChunked(data, 0, data.length));
+
+        //每个窗口写满后等打印机确认，未满的部分在下次写入时补齐
+        assertEquals(Arrays.asList(
+                "data 100", "GS r", "online", "ready",
+                "data 50",
+                "data 50", "GS r", "online", "ready",
+                "data 100", "GS r", "online", "ready"), port.events);
+        assertEquals(300, port.received.size());
+    }
+
+    @Test
+    public void offlinePausesWriting() {
+        FakePrinterPort port = new FakePrinterPort();
+        port.offlineQueries = 3;
+        assertSuccess(port.writeChunked(data(200), 0, 200));
+
+        //脱机期间不再写入数据，恢复后打印机确认才继续
+        assertEquals(Arrays.asList(
+                "data 100", "GS r", "offline", "offline", "offline", "ready",
+                "data 100", "GS r", "ready"), port.events);
+    }
+
+    @Test
+    public void silentPrinterDisablesFlowControl() {
+        FakePrinterPort port = new FakePrinterPort();
+        port.answersTransmit = false;
+        port.answersRealTime = false;
+        assertSuccess(port.writeChunked(data(500), 0, 500));
+
+        assertEquals(Arrays.asList(
+                "data 100", "GS r", "DLE EOT", "DLE EOT", "data 400"), port.events);
+        assertEquals(500, port.received.size());
+    }
+
+    @Test
+    public void transmitStatusUnansweredFallsBackToRealTimeStatus() {
+        FakePrinterPort port = new FakePrinterPort();
+        port.answersTransmit = false;
+        assertSuccess(port.writeChunked(data(300), 0, 300));
+
+        //只回复DLE EOT的打印机不会一直等到超时，之后每个窗口只确认在线
+        assertEquals(1, port.count("GS r"));
+        int first = port.events.indexOf("data 100");
+        int second = port.events.lastIndexOf("data 100");
+        assertEquals(Arrays.asList("data 100", "online", "data 100", "online"),
+                port.events.subList(second - 2, port.events.size()));
+        assertTrue(second - first > 10);
+        assertEquals(300, port.received.size());
+    }
+
+    @Test
+    public void reopenResetsFlowControl() {
+        FakePrinterPort port = new FakePrinterPort();
+        port.answersTransmit = false;
+        port.answersRealTime = false;
+        assertSuccess(port.writeChunked(data(150), 0, 150));
+        assertEquals(1, port.count("GS r"));
+
+        //新连接重新检测，未确认的字节数也不带到新连接
+        port.closePort();
+        port.openPort();
+        port.answersTransmit = true;
+        port.events.clear();
+        assertSuccess(port.writeChunked(data(50), 0, 50));
+        port.closePort();
+        port.openPort();
+        assertSuccess(port.writeChunked(data(100), 0, 100));
+        assertEquals(Arrays.asList("data 50", "data 100", "GS r", "ready"), port.events);
+    }
+
+    private static void assertSuccess(ReturnMessage result) {
+        assertEquals(ErrorCode.WriteDataSuccess, result.getErrorCode());
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) 'A');
+        return data;
+    }
+}
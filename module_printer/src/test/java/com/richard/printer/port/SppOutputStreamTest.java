@@ -0,0 +1,153 @@
+package com.richard.printer.port;
+
+import com.richard.printer.exception.TransientWriteException;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * SppOutputStream分块、限速、重试测试，用内存流模拟蓝牙连接
+ */
+public class SppOutputStreamTest {
+
+    /**
+     * 模拟蓝牙输出流，记录每次写入的长度，可以指定前几次写入失败
+     * 默认以{@link TransientWriteException}失败；指定partialBytes时先发出部分数据再抛出普通IOException
+     */
+    private static class FakeSppStream extends OutputStream {
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final List<Integer> writeSizes = new ArrayList<>();
+        int failures;
+        int partialBytes = -1;
+
+        FakeSppStream(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (this.failures > 0) {
+                --this.failures;
+                if (this.partialBytes < 0) {
+                    throw new TransientWriteException("busy");
+                }
+                this.received.write(b, off, Math.min(len, this.partialBytes));
+                throw new IOException("broken pipe");
+            }
+            this.writeSizes.add(len);
+            this.received.write(b, off, len);
+        }
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    public void smallWrites_areAssembledIntoChunks() throws IOException {
+        FakeSppStream fake = new FakeSppStream(0);
+        SppOutputStream out = new SppOutputStream(fake, 100, 0);
+        byte[] data = data(250);
+
+        for (int i = 0; i < data.length; i += 10) {
+            out.write(data, i, 10);
+        }
+        assertEquals(Arrays.asList(100, 100), fake.writeSizes);
+
+        out.flush();
+        assertEquals(Arrays.asList(100, 100, 50), fake.writeSizes);
+        assertArrayEquals(data, fake.received.toByteArray());
+        assertEquals(250, out.getBytesWritten());
+        assertEquals(3, out.getChunkCount());
+    }
+
+    @Test
+    public void largeWrite_isSplitByChunkSize() throws IOException {
+        FakeSppStream fake = new FakeSppStream(0);
+        SppOutputStream out = new SppOutputStream(fake, 100, 0);
+        byte[] data = data(1030);
+
+        out.write(7);
+        out.write(data, 0, data.length);
+        out.flush();
+
+        assertEquals(Arrays.asList(100, 100, 100, 100, 100, 100, 100, 100, 100, 100, 31), fake.writeSizes);
+        assertEquals(1031, fake.received.size());
+    }
+
+    @Test
+    public void transientFailure_isRetried() throws IOException {
+        FakeSppStream fake = new FakeSppStream(2);
+        SppOutputStream out = new SppOutputStream(fake, 100, 0);
+        out.setRetryPolicy(3, 1);
+        byte[] data = data(150);
+
+        out.write(data, 0, data.length);
+        out.flush();
+
+        assertArrayEquals(data, fake.received.toByteArray());
+        assertEquals(2, out.getRetryCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void persistentFailure_isThrownAfterRetries() throws IOException {
+        FakeSppStream fake = new FakeSppStream(4);
+        SppOutputStream out = new SppOutputStream(fake, 100, 0);
+        out.setRetryPolicy(3, 1);
+
+        out.write(data(100), 0, 100);
+    }
+
+    @Test
+    public void unknownFailure_isNotResent() throws IOException {
+        FakeSppStream fake = new FakeSppStream(1);
+        fake.partialBytes = 40;
+        SppOutputStream out = new SppOutputStream(fake, 100, 0);
+        out.setRetryPolicy(3, 1);
+        byte[] data = data(100);
+
+        //已发出40字节后失败，整块重发会使这40字节重复
+        try {
+            out.write(data, 0, data.length);
+            fail();
+        } catch (IOException e) {
+            assertFalse(e instanceof TransientWriteException);
+        }
+        assertArrayEquals(Arrays.copyOf(data, 40), fake.received.toByteArray());
+        assertEquals(0, out.getRetryCount());
+        assertEquals(0, out.getBytesWritten());
+    }
+
+    @Test
+    public void writes_arePacedByByteRate() throws IOException {
+        FakeSppStream fake = new FakeSppStream(0);
+        SppOutputStream out = new SppOutputStream(fake, 100, 10000);
+        byte[] data = data(1000);
+
+        long start = System.nanoTime();
+        out.write(data, 0, data.length);
+        out.flush();
+        long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+
+        //10块数据，每块占用10ms，第一块无需等待
+        assertEquals(10, out.getChunkCount());
+        assertTrue("elapsed " + elapsedMillis + "ms", elapsedMillis >= 85);
+    }
+}
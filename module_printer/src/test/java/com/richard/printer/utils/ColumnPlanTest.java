@@ -0,0 +1,97 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.enumerate.EllipsizeMode;
+import com.richard.printer.enumerate.TicketSpec;
+import com.richard.printer.model.ColumnItem;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 列宽分配方案测试：与原来每行重新计算的列宽一致，相同参数共用一个方案
+ */
+public class ColumnPlanTest {
+
+    @Test
+    public void widthsSameAsPerRowComputation() {
+        Random random = new Random(12);
+        for (int round = 0; round < 2000; round++) {
+            TicketSpec spec = TicketSpec.values()[random.nextInt(TicketSpec.values().length)];
+            int fontSize = random.nextInt(2);
+            float[] widthWeigh = new float[1 + random.nextInt(5)];
+            for (int i = 0; i < widthWeigh.length; i++) {
+                widthWeigh[i] = 0.5F + random.nextInt(8) / 2F;
+            }
+
+            ColumnPlan plan = ColumnPlan.of(spec, fontSize, widthWeigh);
+            int lineMaxLength = PrintParams.getLineMaxLength(spec, fontSize);
+            float totalColumnWeigh = 0;
+            for (float item : widthWeigh) {
+                totalColumnWeigh += item;
+            }
+
+            //原来addRow中逐列计算的方式
+            int totalAllocatedColumnLength = 0;
+            for (int index = 0; index < widthWeigh.length; index++) {
+                int allocColumnLength;
+                if (index == widthWeigh.length - 1) {
+                    allocColumnLength = lineMaxLength - totalAllocatedColumnLength;
+                } else {
+                    allocColumnLength = (int) Math.floor(widthWeigh[index] / (totalColumnWeigh * 1F) * lineMaxLength);
+                }
+                assertEquals(allocColumnLength, plan.getColumnWidth(index));
+                assertEquals(totalAllocatedColumnLength, plan.getColumnStart(index));
+                totalAllocatedColumnLength += allocColumnLength;
+            }
+            assertEquals(lineMaxLength, plan.getLineMaxLength());
+        }
+    }
+
+    @Test
+    public void samePlanForSameParameters() {
+        float[] widthWeigh = {2, 1, 1};
+        ColumnPlan plan = ColumnPlan.of(TicketSpec.SPEC_80, 0, widthWeigh);
+        assertSame(plan, ColumnPlan.of(TicketSpec.SPEC_80, 0, 2, 1, 1));
+        assertNotSame(plan, ColumnPlan.of(TicketSpec.SPEC_58, 0, 2, 1, 1));
+        assertNotSame(plan, ColumnPlan.of(TicketSpec.SPEC_80, 1, 2, 1, 1));
+
+        //修改调用方的数组不影响已缓存的方案
+        widthWeigh[0] = 1;
+        assertEquals(24, ColumnPlan.of(TicketSpec.SPEC_80, 0, 2, 1, 1).getColumnWidth(0));
+        assertEquals(16, ColumnPlan.of(TicketSpec.SPEC_80, 0, widthWeigh).getColumnWidth(0));
+    }
+
+    @Test
+    public void columnLineLastColumnSplitsAtColumnWidth() {
+        //前面的列不是COLUMN_LINE时，最后一列原来按整行宽度分解
+        ColumnItem name = new ColumnItem("品名", false, EllipsizeMode.LINE);
+        ColumnItem count = new ColumnItem("2", false, EllipsizeMode.ELLIPSIS);
+        ColumnItem remark = new ColumnItem("这是一段很长的备注内容需要分成多行显示", false, EllipsizeMode.COLUMN_LINE);
+        PrintParams params = new PrintParams(TicketSpec.SPEC_80);
+        params.addRow(0, new float[]{2, 1, 1}, name, count, remark);
+
+        ColumnPlan plan = ColumnPlan.of(TicketSpec.SPEC_80, 0, 2, 1, 1);
+        List<String> lines = remark.getSubstringList();
+        assertEquals(StringUtil.substring(remark.getText(), "GBK", plan.getColumnWidth(2)), lines);
+        assertTrue(lines.size() > 1);
+        for (String line : lines) {
+            assertTrue(line, StringUtil.getByteWidth(line, "GBK") <= plan.getColumnWidth(2));
+        }
+    }
+
+    @Test
+    public void tabStopsAtColumnStarts() {
+        ColumnPlan plan = ColumnPlan.of(TicketSpec.SPEC_80, 0, 2, 1, 1);
+        assertTrue(plan.supportsTabStops());
+        assertArrayEquals(new byte[]{24, 36}, plan.tabStops());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyWeighRejected() {
+        ColumnPlan.of(TicketSpec.SPEC_80, 0);
+    }
+}
@@ -0,0 +1,270 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.enumerate.TicketSpec;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 简化的ESC/POS文本打印模拟，按点计算每个字符打印在第几行、什么位置，用于比较不同排版方式的输出。
+ * 支持LF、HT、ESC D、ESC $、ESC E、ESC a、GS !、GS V、ESC @，半角字符12点、GBK双字节字符24点，
+ * 超出行宽时自动换行；setPrintSpec中的GS ( B和ESC N指令直接跳过。
+ * 同时记录与已知状态相同、可以省略的字体大小和加粗指令数量
+ */
+class EscPosSimulator {
+
+    private static final byte ESC = 27;
+    private static final byte GS = 29;
+
+    /**
+     * 打印出的一个非空白字符
+     */
+    static class Glyph {
+        final int line;
+        final int x;
+        final String text;
+        final int magnification;
+        final boolean bold;
+
+        Glyph(int line, int x, String text, int magnification, boolean bold) {
+            this.line = line;
+            this.x = x;
+            this.text = text;
+            this.magnification = magnification;
+            this.bold = bold;
+        }
+
+        @Override
+        public String toString() {
+            return this.line + ":" + this.x + ":" + this.text + (this.bold ? "B" : "") + "x" + this.magnification;
+        }
+    }
+
+    private final int lineWidth;
+    private final int charWidth;
+    private final List<Glyph> glyphs = new ArrayList<>();
+
+    private int line;
+    private int x;
+    private int magnification;
+    private boolean bold;
+    private int characterSize;
+
+    /**
+     * 字体大小和加粗状态是否已确定，ESC @之后确定，其他设置指令和切纸之后视为未知
+     */
+    private boolean sizeKnown;
+    private boolean boldKnown;
+    private int redundantStyleCount;
+    private int[] tabStops;
+
+    /**
+     * 出现过的绝对位置指令数量
+     */
+    private int absolutePositionCount;
+
+    EscPosSimulator(TicketSpec spec) {
+        this.lineWidth = spec.getDotWidth();
+        this.charWidth = spec.getDotWidth() / PrintParams.getLineMaxLength(spec, 0);
+        this.reset();
+    }
+
+    static EscPosSimulator run(TicketSpec spec, byte[] data) {
+        EscPosSimulator simulator = new EscPosSimulator(spec);
+        simulator.execute(data);
+        return simulator;
+    }
+
+    List<Glyph> getGlyphs() {
+        return this.glyphs;
+    }
+
+    int getLine() {
+        return this.line;
+    }
+
+    int getX() {
+        return this.x;
+    }
+
+    int getAbsolutePositionCount() {
+        return this.absolutePositionCount;
+    }
+
+    int getRedundantStyleCount() {
+        return this.redundantStyleCount;
+    }
+
+    /**
+     * 每个字符的打印位置，每行一个字符串，便于断言失败时比较
+     */
+    String describe() {
+        StringBuilder builder = new StringBuilder();
+        int current = -1;
+        for (Glyph glyph : this.glyphs) {
+            if (glyph.line != current) {
+                if (current >= 0) {
+                    builder.append('\n');
+                }
+                current = glyph.line;
+                builder.append(current).append('|');
+            }
+            builder.append(' ').append(glyph.x).append(glyph.text);
+            if (glyph.bold) {
+                builder.append('*');
+            }
+            if (glyph.magnification > 1) {
+                builder.append('^');
+            }
+        }
+        return builder.toString();
+    }
+
+    private void reset() {
+        this.magnification = 1;
+        this.bold = false;
+        this.characterSize = 0;
+        //默认每8个字符一个制表位
+        this.tabStops = new int[this.lineWidth / (this.charWidth * 8)];
+        for (int i = 0; i < this.tabStops.length; i++) {
+            this.tabStops[i] = (i + 1) * 8 * this.charWidth;
+        }
+    }
+
+    void execute(byte[] data) {
+        int i = 0;
+        while (i < data.length) {
+            int b = data[i] & 0xFF;
+            if (b == ESC) {
+                i = this.escape(data, i);
+            } else if (b == GS) {
+                i = this.groupSeparator(data, i);
+            } else if (b == '\n') {
+                this.lineFeed();
+                i++;
+            } else if (b == '\t') {
+                this.horizontalTab();
+                i++;
+            } else if (b >= 0x81 && i + 1 < data.length) {
+                this.print(decode(data, i, 2), 2);
+                i += 2;
+            } else if (b >= 0x20) {
+                this.print(decode(data, i, 1), 1);
+                i++;
+            } else {
+                throw new IllegalStateException("不支持的控制字符：" + b + " @" + i);
+            }
+        }
+    }
+
+    private int escape(byte[] data, int i) {
+        int code = data[i + 1] & 0xFF;
+        switch (code) {
+            case '@':
+                this.reset();
+                this.sizeKnown = true;
+                this.boldKnown = true;
+                return i + 2;
+            case 'E':
+                boolean bold = (data[i + 2] & 1) != 0;
+                if (this.boldKnown && this.bold == bold) {
+                    this.redundantStyleCount++;
+                }
+                this.bold = bold;
+                this.boldKnown = true;
+                return i + 3;
+            case 'a':
+                return i + 3;
+            case 'N':
+                //规格设置的自定义指令 ESC N n1 n2
+                this.sizeKnown = false;
+                this.boldKnown = false;
+                return i + 4;
+            case '$':
+                int position = (data[i + 2] & 0xFF) + (data[i + 3] & 0xFF) * 256;
+                if (position < this.lineWidth) {
+                    this.x = position;
+                }
+                this.absolutePositionCount++;
+                return i + 4;
+            case 'D':
+                List<Integer> stops = new ArrayList<>();
+                int j = i + 2;
+                while (data[j] != 0) {
+                    stops.add((data[j] & 0xFF) * this.charWidth * this.magnification);
+                    j++;
+                }
+                this.tabStops = new int[stops.size()];
+                for (int k = 0; k < stops.size(); k++) {
+                    this.tabStops[k] = stops.get(k);
+                }
+                return j + 1;
+            default:
+                throw new IllegalStateException("不支持的指令：ESC " + code + " @" + i);
+        }
+    }
+
+    private int groupSeparator(byte[] data, int i) {
+        int code = data[i + 1] & 0xFF;
+        if (code == '!') {
+            int size = data[i + 2] & 0xFF;
+            if (this.sizeKnown && this.characterSize == size) {
+                this.redundantStyleCount++;
+            }
+            this.characterSize = size;
+            this.sizeKnown = true;
+            this.magnification = ((size >> 4) & 7) + 1;
+            return i + 3;
+        }
+        if (code == 'V') {
+            //切纸 GS V m / GS V 66 n
+            this.sizeKnown = false;
+            this.boldKnown = false;
+            return data[i + 2] == 66 ? i + 4 : i + 3;
+        }
+        if (code == '(' && data[i + 2] == 'B') {
+            this.sizeKnown = false;
+            this.boldKnown = false;
+            int length = (data[i + 3] & 0xFF) + (data[i + 4] & 0xFF) * 256;
+            return i + 5 + length;
+        }
+        throw new IllegalStateException("不支持的指令：GS " + code + " @" + i);
+    }
+
+    private void lineFeed() {
+        this.line++;
+        this.x = 0;
+    }
+
+    private void horizontalTab() {
+        for (int stop : this.tabStops) {
+            if (stop > this.x) {
+                if (stop < this.lineWidth) {
+                    this.x = stop;
+                }
+                return;
+            }
+        }
+    }
+
+    private void print(String text, int halfWidthCount) {
+        int width = halfWidthCount * this.charWidth * this.magnification;
+        if (this.x + width > this.lineWidth) {
+            //自动换行
+            this.lineFeed();
+        }
+        if (!" ".equals(text)) {
+            this.glyphs.add(new Glyph(this.line, this.x, text, this.magnification, this.bold));
+        }
+        this.x += width;
+    }
+
+    private static String decode(byte[] data, int offset, int length) {
+        try {
+            return new String(data, offset, length, "GBK");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
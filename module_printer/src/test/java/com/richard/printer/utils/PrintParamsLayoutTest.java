@@ -0,0 +1,241 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.enumerate.Align;
+import com.richard.printer.enumerate.EllipsizeMode;
+import com.richard.printer.enumerate.LayoutMode;
+import com.richard.printer.enumerate.TicketSpec;
+import com.richard.printer.model.ColumnItem;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 三种排版方式的打印效果测试：用{@link EscPosSimulator}计算每个字符的打印位置，
+ * 随机生成的行在各排版方式下位置应一致，每行结束后的内容应从新的一行开始
+ */
+public class PrintParamsLayoutTest {
+
+    private static final int RANDOM_ROWS = 3000;
+
+    private static final String ASCII = "abcdefghijklmnopqrstuvwxyz0123456789.-";
+    private static final String CJK = "中文测试金额数量单价合计";
+
+    private static final LayoutMode[] MODES = LayoutMode.values();
+
+    @Test
+    public void specDotWidth() {
+        assertEquals(576, TicketSpec.SPEC_80.getDotWidth());
+        assertEquals(384, TicketSpec.SPEC_58.getDotWidth());
+        for (TicketSpec spec : TicketSpec.values()) {
+            //半角字符12点，倍宽24点
+            assertEquals(12, spec.getDotWidth() / PrintParams.getLineMaxLength(spec, 0));
+            assertEquals(24, spec.getDotWidth() / PrintParams.getLineMaxLength(spec, 1));
+        }
+    }
+
+    @Test
+    public void randomRowsSamePositionsInAllModes() {
+        Random random = new Random(18);
+        for (TicketSpec spec : TicketSpec.values()) {
+            PrintParams[] params = newParams(spec);
+            for (int row = 0; row < RANDOM_ROWS; row++) {
+                int fontSize = random.nextInt(2);
+                ColumnPlan plan = ColumnPlan.of(spec, fontSize, randomWeigh(random));
+                long seed = random.nextLong();
+                int splitFontSize = random.nextInt(2);
+                for (int mode = 0; mode < MODES.length; mode++) {
+                    params[mode].addRow(plan, randomRow(new Random(seed), plan, false));
+                    //分隔线紧跟在行后，行结束在行尾时分隔线从新的一行开始
+                    params[mode].addSplitLine(splitFontSize, false);
+                }
+            }
+            assertSameGlyphs(spec, params);
+        }
+    }
+
+    @Test
+    public void centerRowsWithinHalfCharInAllModes() {
+        Random random = new Random(180);
+        for (TicketSpec spec : TicketSpec.values()) {
+            PrintParams[] params = newParams(spec);
+            for (int row = 0; row < RANDOM_ROWS; row++) {
+                int fontSize = random.nextInt(2);
+                ColumnPlan plan = ColumnPlan.of(spec, fontSize, randomWeigh(random));
+                long seed = random.nextLong();
+                for (PrintParams param : params) {
+                    param.addRow(plan, randomRow(new Random(seed), plan, true));
+                    param.add("#");
+                }
+            }
+
+            List<EscPosSimulator.Glyph> expected = EscPosSimulator.run(spec, params[0].toByteArray()).getGlyphs();
+            for (int mode = 1; mode < MODES.length; mode++) {
+                List<EscPosSimulator.Glyph> actual = EscPosSimulator.run(spec, params[mode].toByteArray()).getGlyphs();
+                assertEquals(MODES[mode].name(), expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    EscPosSimulator.Glyph e = expected.get(i);
+                    EscPosSimulator.Glyph a = actual.get(i);
+                    String message = MODES[mode] + " " + e + " / " + a;
+                    assertEquals(message, e.text, a.text);
+                    assertEquals(message, e.line, a.line);
+                    //空格居中按整字符取整，点定位居中最多相差半个字符
+                    assertTrue(message, Math.abs(e.x - a.x) <= 6 * e.magnification);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rowEndsAtLineEndInEachMode() {
+        for (TicketSpec spec : TicketSpec.values()) {
+            for (LayoutMode mode : MODES) {
+                for (int fontSize = 0; fontSize <= 1; fontSize++) {
+                    PrintParams params = new PrintParams(spec);
+                    params.setLayoutMode(mode);
+                    ColumnPlan plan = ColumnPlan.of(spec, fontSize, 2, 1, 1);
+                    params.addRow(plan, new ColumnItem("品名"), new ColumnItem("2"),
+                            new ColumnItem("9.90", Align.RIGHT));
+                    params.add("X", 1 - fontSize);
+
+                    EscPosSimulator simulator = EscPosSimulator.run(spec, params.toByteArray());
+                    List<EscPosSimulator.Glyph> glyphs = simulator.getGlyphs();
+                    EscPosSimulator.Glyph last = glyphs.get(glyphs.size() - 1);
+                    String message = mode + " " + spec + " " + fontSize + "\n" + simulator.describe();
+                    assertEquals(message, "X", last.text);
+                    assertEquals(message, 2, last.line);
+                    assertEquals(message, 0, last.x);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void emptyPositionedCellNotPositioned() {
+        PrintParams params = new PrintParams(TicketSpec.SPEC_80);
+        params.setLayoutMode(LayoutMode.ABSOLUTE_POSITION);
+        ColumnPlan plan = ColumnPlan.ofEqualColumns(TicketSpec.SPEC_80, 0, 3);
+        params.addRow(plan, new ColumnItem("ab"), new ColumnItem(""), new ColumnItem(""));
+
+        EscPosSimulator simulator = EscPosSimulator.run(TicketSpec.SPEC_80, params.toByteArray());
+        //只有行尾定位
+        assertEquals(1, simulator.getAbsolutePositionCount());
+        assertEquals(1, simulator.getLine());
+        assertEquals(576, simulator.getX());
+    }
+
+    @Test
+    public void pitchCommandFallsBackToPadding() {
+        PrintParams params = new PrintParams(TicketSpec.SPEC_80);
+        params.setLayoutMode(LayoutMode.ABSOLUTE_POSITION);
+        ColumnPlan plan = ColumnPlan.ofEqualColumns(TicketSpec.SPEC_80, 0, 2);
+
+        //ESC SP 设置字符右间距
+        params.add(new byte[]{27, ' ', 2});
+        params.addRow(plan, new ColumnItem("a"), new ColumnItem("b"));
+        assertFalse(contains(params.toByteArray(), new byte[]{27, '$'}));
+
+        params.add(new byte[]{27, '@'});
+        params.addRow(plan, new ColumnItem("a"), new ColumnItem("b"));
+        assertTrue(contains(params.toByteArray(), new byte[]{27, '$'}));
+    }
+
+    private static PrintParams[] newParams(TicketSpec spec) {
+        PrintParams[] params = new PrintParams[MODES.length];
+        for (int mode = 0; mode < MODES.length; mode++) {
+            params[mode] = new PrintParams(spec);
+            params[mode].setLayoutMode(MODES[mode]);
+        }
+        return params;
+    }
+
+    private static void assertSameGlyphs(TicketSpec spec, PrintParams[] params) {
+        String expected = EscPosSimulator.run(spec, params[0].toByteArray()).describe();
+        for (int mode = 1; mode < MODES.length; mode++) {
+            String actual = EscPosSimulator.run(spec, params[mode].toByteArray()).describe();
+            if (!expected.equals(actual)) {
+                fail(MODES[mode] + " " + spec + " 第一处不同：\n" + firstDifference(expected, actual));
+            }
+        }
+    }
+
+    private static String firstDifference(String expected, String actual) {
+        String[] e = expected.split("\n");
+        String[] a = actual.split("\n");
+        for (int i = 0; i < Math.min(e.length, a.length); i++) {
+            if (!e[i].equals(a[i])) {
+                return (i > 0 ? e[i - 1] + "\n" : "") + "- " + e[i] + "\n+ " + a[i];
+            }
+        }
+        return "行数 " + e.length + " / " + a.length;
+    }
+
+    private static float[] randomWeigh(Random random) {
+        float[] widthWeigh = new float[2 + random.nextInt(3)];
+        for (int i = 0; i < widthWeigh.length; i++) {
+            widthWeigh[i] = 1 + random.nextInt(3);
+        }
+        return widthWeigh;
+    }
+
+    private static ColumnItem[] randomRow(Random random, ColumnPlan plan, boolean center) {
+        ColumnItem[] items = new ColumnItem[plan.getColumnCount()];
+        for (int i = 0; i < items.length; i++) {
+            int width = plan.getColumnWidth(i);
+            EllipsizeMode ellipsizeMode;
+            switch (random.nextInt(3)) {
+                case 0:
+                    ellipsizeMode = EllipsizeMode.LINE;
+                    break;
+                case 1:
+                    ellipsizeMode = EllipsizeMode.COLUMN_LINE;
+                    break;
+                default:
+                    ellipsizeMode = width >= 6 ? EllipsizeMode.ELLIPSIS : EllipsizeMode.COLUMN_LINE;
+                    break;
+            }
+            Align align = center ? Align.CENTER : (random.nextBoolean() ? Align.LEFT : Align.RIGHT);
+            String text = randomText(random, random.nextInt(4) == 0 ? width + 8 : width);
+            items[i] = new ColumnItem(text, random.nextInt(4) == 0, ellipsizeMode, align);
+        }
+        return items;
+    }
+
+    /**
+     * 随机文本，字节长度不超过maxLength
+     */
+    private static String randomText(Random random, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder builder = new StringBuilder();
+        int byteLength = 0;
+        while (byteLength < length) {
+            if (byteLength + 2 <= length && random.nextInt(3) == 0) {
+                builder.append(CJK.charAt(random.nextInt(CJK.length())));
+                byteLength += 2;
+            } else {
+                builder.append(ASCII.charAt(random.nextInt(ASCII.length())));
+                byteLength++;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean contains(byte[] data, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            boolean match = true;
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,60 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.enumerate.TicketSpec;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 打印参数作为列表使用：保留原ArrayList的容量和复制方法
+ */
+public class PrintParamsListTest {
+
+    @Test
+    public void cloneIsIndependent() {
+        PrintParams params = new PrintParams(TicketSpec.SPEC_80);
+        new RandomReceipt(2, 40).build(params);
+        byte[] expected = params.toByteArray();
+
+        PrintParams copy = params.clone();
+        assertArrayEquals(expected, copy.toByteArray());
+        assertEquals(params.size(), copy.size());
+
+        //修改副本不影响原对象，两者之后的状态跟踪也相同
+        copy.add("copy", 1, true);
+        copy.set(0, new byte[]{1, 2, 3});
+        assertArrayEquals(expected, params.toByteArray());
+        params.add("copy", 1, true);
+        assertArrayEquals(params.get(params.size() - 1), copy.get(copy.size() - 1));
+    }
+
+    @Test
+    public void capacityMethodsKeepContent() {
+        PrintParams params = new PrintParams(TicketSpec.SPEC_58);
+        params.ensureCapacity(1000);
+        new RandomReceipt(3, 20).build(params);
+        byte[] expected = params.toByteArray();
+        params.trimToSize();
+        assertArrayEquals(expected, params.toByteArray());
+
+        params.add("after trim", 0);
+        params.trimToSize();
+        params.ensureCapacity(params.size() * 2);
+        assertTrue(params.getByteLength() > expected.length);
+    }
+
+    @Test
+    public void copyToArrayList() {
+        PrintParams params = new PrintParams(TicketSpec.SPEC_80);
+        new RandomReceipt(4, 20).build(params);
+        List<byte[]> list = new ArrayList<>(params);
+        assertEquals(params.size(), list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertArrayEquals(params.get(i), list.get(i));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.command.PrinterCmdUtil;
+import com.richard.printer.enumerate.Align;
+import com.richard.printer.enumerate.LayoutMode;
+import com.richard.printer.enumerate.TicketSpec;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 打印机状态跟踪测试：省略重复的样式指令后打印效果不变
+ */
+public class PrintParamsModeStateTest {
+
+    @Test
+    public void samePrintAsWithoutTracking() {
+        for (TicketSpec spec : TicketSpec.values()) {
+            for (LayoutMode mode : LayoutMode.values()) {
+                for (long seed = 0; seed < 10; seed++) {
+                    compareWithoutTracking(spec, mode, seed, null);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void chunkedTablesSamePrintAsWithoutTracking() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (TicketSpec spec : TicketSpec.values()) {
+                for (long seed = 100; seed < 106; seed++) {
+                    compareWithoutTracking(spec, LayoutMode.PADDING, seed, executor);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void noRedundantStyleCommands() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (TicketSpec spec : TicketSpec.values()) {
+                for (LayoutMode mode : LayoutMode.values()) {
+                    for (long seed = 0; seed < 10; seed++) {
+                        PrintParams params = newParams(spec, mode);
+                        new RandomReceipt(seed, 60).rawCommands(false).executor(seed % 2 == 0 ? executor : null)
+                                .build(params);
+                        assertEquals(spec + " " + mode + " seed " + seed, 0,
+                                EscPosSimulator.run(spec, params.toByteArray()).getRedundantStyleCount());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void repeatedStyleNotResent() {
+        PrintParams params = new PrintParams(TicketSpec.SPEC_80);
+        for (int i = 0; i < 10; i++) {
+            params.addRow(1, true, "品名", "1", "9.90");
+        }
+        assertEquals(1, count(params, PrinterCmdUtil.fontSizeSetBig(1)));
+        assertEquals(1, count(params, PrinterCmdUtil.emphasizedOn()));
+        assertEquals(0, count(params, PrinterCmdUtil.emphasizedOff()));
+    }
+
+    @Test
+    public void rawCommandsUpdateState() {
+        PrintParams params = new PrintParams(TicketSpec.SPEC_80);
+        params.add(PrinterCmdUtil.fontSizeSetBig(1));
+        params.add("a", 1);
+        assertEquals(1, count(params, 0, PrinterCmdUtil.fontSizeSetBig(1)));
+
+        //初始化后恢复默认状态，普通字体不需要再设置
+        params.add(PrinterCmdUtil.resetPrinter());
+        int start = params.size();
+        params.add("b", 0);
+        assertEquals(0, count(params, start, PrinterCmdUtil.fontSizeSetBig(0)));
+        assertEquals(0, count(params, start, PrinterCmdUtil.emphasizedOff()));
+
+        //无法识别的指令之后状态未知，重新设置
+        params.add(PrinterCmdUtil.feedPaperCutPartial());
+        start = params.size();
+        params.add("c", 0);
+        assertEquals(1, count(params, start, PrinterCmdUtil.fontSizeSetBig(0)));
+        assertEquals(1, count(params, start, PrinterCmdUtil.emphasizedOff()));
+    }
+
+    @Test
+    public void commandsInTextUpdateState() {
+        //文本中直接写入的加粗指令，之后的普通文本要重新关闭加粗
+        PrintParams params = new PrintParams(TicketSpec.SPEC_80);
+        params.add("\u001bE\u0001");
+        int start = params.size();
+        params.add("B", 0, false, Align.LEFT);
+        assertEquals(1, count(params, start, PrinterCmdUtil.emphasizedOff()));
+
+        //无法识别的指令之后状态未知
+        params.add("x\u001d!\u0011y");
+        start = params.size();
+        params.add("C", 0, false, Align.LEFT);
+        assertEquals(1, count(params, start, PrinterCmdUtil.fontSizeSetBig(0)));
+        assertEquals(1, count(params, start, PrinterCmdUtil.emphasizedOff()));
+    }
+
+    @Test
+    public void insertInvalidatesState() {
+        PrintParams params = new PrintParams(TicketSpec.SPEC_80);
+        params.add("a", 1, true);
+        params.add(1, PrinterCmdUtil.fontSizeSetBig(0));
+        params.add("b", 1, true);
+        assertEquals(2, count(params, PrinterCmdUtil.fontSizeSetBig(1)));
+        assertEquals(2, count(params, PrinterCmdUtil.emphasizedOn()));
+    }
+
+    @Test
+    public void alignSentOnlyWhenChanged() {
+        PrintParams params = new PrintParams(TicketSpec.SPEC_80);
+        params.addAlign(Align.CENTER);
+        params.addAlign(Align.CENTER);
+        params.addAlign(Align.LEFT);
+        params.addAlign(Align.LEFT);
+        assertEquals(1, count(params, PrinterCmdUtil.alignCenter()));
+        assertEquals(1, count(params, PrinterCmdUtil.alignLeft()));
+    }
+
+    private static void compareWithoutTracking(TicketSpec spec, LayoutMode mode, long seed, ExecutorService executor) {
+        PrintParams tracked = newParams(spec, mode);
+        new RandomReceipt(seed, 60).executor(executor).build(tracked);
+        PrintParams untracked = newParams(spec, mode);
+        new RandomReceipt(seed, 60).executor(executor).resetStateEachOperation(true).build(untracked);
+
+        String message = spec + " " + mode + " seed " + seed;
+        assertEquals(message, EscPosSimulator.run(spec, untracked.toByteArray()).describe(),
+                EscPosSimulator.run(spec, tracked.toByteArray()).describe());
+        assertTrue(message, tracked.getByteLength() <= untracked.getByteLength());
+    }
+
+    private static PrintParams newParams(TicketSpec spec, LayoutMode mode) {
+        PrintParams params = new PrintParams(spec);
+        params.setLayoutMode(mode);
+        return params;
+    }
+
+    private static int count(PrintParams params, byte[] command) {
+        return count(params, 0, command);
+    }
+
+    private static int count(PrintParams params, int start, byte[] command) {
+        int count = 0;
+        for (int i = start; i < params.size(); i++) {
+            if (Arrays.equals(params.get(i), command)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
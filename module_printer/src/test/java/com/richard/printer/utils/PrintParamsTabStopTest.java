@@ -0,0 +1,105 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.command.PrinterCmdUtil;
+import com.richard.printer.enumerate.Align;
+import com.richard.printer.enumerate.EllipsizeMode;
+import com.richard.printer.enumerate.LayoutMode;
+import com.richard.printer.enumerate.TicketSpec;
+import com.richard.printer.model.ColumnItem;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 制表位排版测试：制表位只在需要时设置，打印效果与空格填充一致
+ */
+public class PrintParamsTabStopTest {
+
+    @Test
+    public void tabStopsSetOncePerPlan() {
+        PrintParams params = newParams(LayoutMode.TAB_STOP);
+        ColumnPlan plan = ColumnPlan.of(TicketSpec.SPEC_80, 0, 2, 1, 1);
+        ColumnPlan other = ColumnPlan.of(TicketSpec.SPEC_80, 0, 1, 1);
+        for (int i = 0; i < 10; i++) {
+            params.addRow(plan, false, Align.LEFT, EllipsizeMode.LINE, "品名" + i, "1", "9.90");
+        }
+        assertEquals(1, countTabStopCommands(params));
+
+        params.addRow(other, false, Align.LEFT, EllipsizeMode.LINE, "a", "b");
+        params.addRow(plan, false, Align.LEFT, EllipsizeMode.LINE, "a", "b", "c");
+        assertEquals(3, countTabStopCommands(params));
+
+        //其他指令之后状态未知，重新设置
+        params.add(PrinterCmdUtil.feedPaperCutPartial());
+        params.addRow(plan, false, Align.LEFT, EllipsizeMode.LINE, "a", "b", "c");
+        assertEquals(4, countTabStopCommands(params));
+    }
+
+    @Test
+    public void paddingModeHasNoTabs() {
+        PrintParams params = newParams(LayoutMode.PADDING);
+        params.addRow(ColumnPlan.of(TicketSpec.SPEC_80, 0, 2, 1, 1), false, Align.LEFT, EllipsizeMode.LINE,
+                "品名", "", "9.90");
+        assertEquals(0, countTabStopCommands(params));
+        for (byte b : params.toByteArray()) {
+            assertTrue(b != 9);
+        }
+    }
+
+    @Test
+    public void samePrintAsPadding() {
+        for (TicketSpec spec : TicketSpec.values()) {
+            for (long seed = 0; seed < 10; seed++) {
+                PrintParams padding = newParams(spec, LayoutMode.PADDING);
+                PrintParams tabStop = newParams(spec, LayoutMode.TAB_STOP);
+                new RandomReceipt(seed, 60).build(padding);
+                new RandomReceipt(seed, 60).build(tabStop);
+                assertEquals(EscPosSimulator.run(spec, padding.toByteArray()).describe(),
+                        EscPosSimulator.run(spec, tabStop.toByteArray()).describe());
+            }
+        }
+    }
+
+    @Test
+    public void emptyColumnsUseRowFontSize() {
+        //空列在倍宽字体下填充，前面的文本为普通字体时也不能按普通宽度填充
+        for (LayoutMode mode : LayoutMode.values()) {
+            PrintParams params = newParams(mode);
+            params.add("x", 0);
+            ColumnPlan plan = ColumnPlan.of(TicketSpec.SPEC_80, 1, 1, 1, 1);
+            params.addRow(plan, new ColumnItem(""), new ColumnItem(""), new ColumnItem("9.90", Align.RIGHT));
+            params.add("y", 0);
+
+            EscPosSimulator simulator = EscPosSimulator.run(TicketSpec.SPEC_80, params.toByteArray());
+            String message = mode + "\n" + simulator.describe();
+            EscPosSimulator.Glyph last = simulator.getGlyphs().get(simulator.getGlyphs().size() - 1);
+            EscPosSimulator.Glyph zero = simulator.getGlyphs().get(simulator.getGlyphs().size() - 2);
+            assertEquals(message, "0", zero.text);
+            assertEquals(message, 1, zero.line);
+            assertEquals(message, 576 - 24, zero.x);
+            assertEquals(message, 2, last.line);
+            assertEquals(message, 0, last.x);
+        }
+    }
+
+    private static PrintParams newParams(LayoutMode mode) {
+        return newParams(TicketSpec.SPEC_80, mode);
+    }
+
+    private static PrintParams newParams(TicketSpec spec, LayoutMode mode) {
+        PrintParams params = new PrintParams(spec);
+        params.setLayoutMode(mode);
+        return params;
+    }
+
+    private static int countTabStopCommands(PrintParams params) {
+        int count = 0;
+        for (byte[] item : params) {
+            if (item.length > 2 && item[0] == 27 && item[1] == 'D') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,201 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.enumerate.Align;
+import com.richard.printer.enumerate.EllipsizeMode;
+import com.richard.printer.enumerate.LayoutMode;
+import com.richard.printer.enumerate.TicketSpec;
+import com.richard.printer.model.TableColumn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 表格分块并行生成测试：结果应与当前线程逐行生成完全一致
+ */
+public class PrintParamsTableTest {
+
+    private static final int ROW_COUNT = 2000;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void chunkedEqualsSinglePass() {
+        List<String[]> rows = randomRows(new Random(19), ROW_COUNT);
+        for (LayoutMode mode : LayoutMode.values()) {
+            for (int fontSize = 0; fontSize <= 1; fontSize++) {
+                PrintParams single = newParams(mode);
+                single.addTable(fontSize, columns(), new ListRows(rows), null);
+                PrintParams chunked = newParams(mode);
+                chunked.addTable(fontSize, columns(), new ListRows(rows), this.executor);
+
+                assertArrayEquals(mode.name(), single.toByteArray(), chunked.toByteArray());
+                assertEquals(single.size(), chunked.size());
+                for (int i = 0; i < single.size(); i++) {
+                    assertArrayEquals(single.get(i), chunked.get(i));
+                }
+
+                //拼接后的打印机状态也与逐行生成一致，之后添加的内容相同
+                single.addRow(fontSize, "a", "b");
+                chunked.addRow(fontSize, "a", "b");
+                assertArrayEquals(single.toByteArray(), chunked.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void randomReceiptsChunkedEqualsSinglePass() {
+        //表格前的内容和各列样式不同，分块开头的指令有的需要保留、有的需要去掉
+        for (TicketSpec spec : TicketSpec.values()) {
+            for (LayoutMode mode : LayoutMode.values()) {
+                for (long seed = 0; seed < 8; seed++) {
+                    PrintParams single = new PrintParams(spec);
+                    single.setLayoutMode(mode);
+                    new RandomReceipt(seed, 60).build(single);
+                    PrintParams chunked = new PrintParams(spec);
+                    chunked.setLayoutMode(mode);
+                    new RandomReceipt(seed, 60).executor(this.executor).build(chunked);
+
+                    String message = spec + " " + mode + " seed " + seed;
+                    assertArrayEquals(message, single.toByteArray(), chunked.toByteArray());
+                    assertEquals(message, single.size(), chunked.size());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void commandsInCellsChunkedEqualsSinglePass() {
+        //单元格文本中带有样式指令，各分块的打印机状态都要跟着更新
+        List<String[]> rows = randomRows(new Random(191), ROW_COUNT);
+        for (int i = 0; i < rows.size(); i += 97) {
+            rows.get(i)[i % 3] = i % 2 == 0 ? "\u001bE\u0001" : "x\u001d!\u0011y";
+        }
+        for (LayoutMode mode : LayoutMode.values()) {
+            PrintParams single = newParams(mode);
+            single.addTable(0, columns(), new ListRows(rows), null);
+            single.addRow(0, "a", "b");
+            PrintParams chunked = newParams(mode);
+            chunked.addTable(0, columns(), new ListRows(rows), this.executor);
+            chunked.addRow(0, "a", "b");
+            assertArrayEquals(mode.name(), single.toByteArray(), chunked.toByteArray());
+        }
+    }
+
+    @Test
+    public void calledFromSingleThreadExecutor() throws Exception {
+        final List<String[]> rows = randomRows(new Random(190), ROW_COUNT);
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            //在线程池唯一的线程中使用同一个线程池，不能等待永远不会开始的分块
+            Future<byte[]> future = single.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    PrintParams params = newParams(LayoutMode.TAB_STOP);
+                    params.addTable(0, columns(), new ListRows(rows), single);
+                    return params.toByteArray();
+                }
+            });
+            byte[] actual = future.get(30, TimeUnit.SECONDS);
+
+            PrintParams expected = newParams(LayoutMode.TAB_STOP);
+            expected.addTable(0, columns(), new ListRows(rows), null);
+            assertArrayEquals(expected.toByteArray(), actual);
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failureLeavesNoPartialTable() {
+        final List<String[]> rows = randomRows(new Random(1900), ROW_COUNT);
+        PrintParams params = newParams(LayoutMode.PADDING);
+        int length = params.getByteLength();
+        try {
+            params.addTable(0, columns(), new ListRows(rows) {
+                @Override
+                public String getText(int row, int column) {
+                    if (row == ROW_COUNT - 10) {
+                        throw new IllegalArgumentException("bad row");
+                    }
+                    return super.getText(row, column);
+                }
+            }, this.executor);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("bad row", e.getMessage());
+        }
+        assertEquals(length, params.getByteLength());
+    }
+
+    private static PrintParams newParams(LayoutMode mode) {
+        PrintParams params = new PrintParams(TicketSpec.SPEC_80);
+        params.setLayoutMode(mode);
+        return params;
+    }
+
+    private static TableColumn[] columns() {
+        return new TableColumn[]{
+                new TableColumn(3, false, EllipsizeMode.COLUMN_LINE, Align.LEFT),
+                new TableColumn(1, false, EllipsizeMode.LINE, Align.CENTER),
+                new TableColumn(2, true, EllipsizeMode.ELLIPSIS, Align.RIGHT)
+        };
+    }
+
+    private static List<String[]> randomRows(Random random, int count) {
+        String chars = "abcdef0123456789.中文测试金额";
+        List<String[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String[] row = new String[3];
+            for (int column = 0; column < row.length; column++) {
+                StringBuilder builder = new StringBuilder();
+                int length = random.nextInt(24);
+                for (int j = 0; j < length; j++) {
+                    builder.append(chars.charAt(random.nextInt(chars.length())));
+                }
+                row[column] = builder.toString();
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static class ListRows implements TableRowSource {
+        private final List<String[]> rows;
+
+        ListRows(List<String[]> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int getRowCount() {
+            return this.rows.size();
+        }
+
+        @Override
+        public String getText(int row, int column) {
+            return this.rows.get(row)[column];
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.command.PrinterCmdUtil;
+import com.richard.printer.enumerate.Align;
+import com.richard.printer.enumerate.EllipsizeMode;
+import com.richard.printer.model.ColumnItem;
+import com.richard.printer.model.TableColumn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 按随机种子生成小票内容，相同种子对不同的打印参数执行相同的操作序列
+ */
+class RandomReceipt {
+
+    private static final String ASCII = "abcdefghijklmnopqrstuvwxyz0123456789.-";
+    private static final String CJK = "中文测试金额数量单价合计";
+
+    private final long seed;
+    private final int operations;
+    private ExecutorService executor;
+    private boolean resetStateEachOperation;
+    private boolean rawCommands = true;
+
+    RandomReceipt(long seed, int operations) {
+        this.seed = seed;
+        this.operations = operations;
+    }
+
+    /**
+     * 表格使用的线程池，为null时逐行生成
+     */
+    RandomReceipt executor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * 每次操作前把打印机状态置为未知，所有样式指令都会重新发送，作为不做状态跟踪的对照
+     */
+    RandomReceipt resetStateEachOperation(boolean reset) {
+        this.resetStateEachOperation = reset;
+        return this;
+    }
+
+    /**
+     * 是否直接添加加粗、切纸等原始指令，关闭后所有样式指令都由打印参数生成
+     */
+    RandomReceipt rawCommands(boolean rawCommands) {
+        this.rawCommands = rawCommands;
+        return this;
+    }
+
+    void build(PrintParams target) {
+        Random random = new Random(this.seed);
+        for (int i = 0; i < this.operations; i++) {
+            if (this.resetStateEachOperation) {
+                target.invalidateModeState();
+            }
+            this.apply(target, random);
+        }
+    }
+
+    private void apply(PrintParams target, Random random) {
+        int fontSize = random.nextInt(2);
+        switch (random.nextInt(10)) {
+            case 0:
+                target.addNextRow();
+                target.add(text(random, target.getLineMaxLength(fontSize)), fontSize, random.nextBoolean(), align(random));
+                break;
+            case 1:
+            case 2: {
+                ColumnPlan plan = ColumnPlan.of(target.getSpec(), fontSize, weigh(random));
+                ColumnItem[] items = new ColumnItem[plan.getColumnCount()];
+                for (int i = 0; i < items.length; i++) {
+                    int width = plan.getColumnWidth(i);
+                    items[i] = new ColumnItem(text(random, width + 4), random.nextBoolean(),
+                            ellipsizeMode(random, width), align(random));
+                }
+                target.addRow(plan, items);
+                break;
+            }
+            case 3:
+                target.addRow(fontSize, random.nextBoolean(), EllipsizeMode.COLUMN_LINE,
+                        text(random, 20), text(random, 20), text(random, 10));
+                break;
+            case 4:
+                target.addSplitLine(fontSize, random.nextBoolean());
+                break;
+            case 5:
+                target.addNextRow();
+                break;
+            case 6: {
+                byte[] command = random.nextBoolean() ? PrinterCmdUtil.emphasizedOn() : PrinterCmdUtil.feedPaperCutPartial();
+                if (this.rawCommands) {
+                    target.add(command);
+                }
+                break;
+            }
+            case 7:
+                target.addAlign(align(random));
+                target.addAlign(Align.LEFT);
+                break;
+            case 8:
+                this.addTable(target, random, fontSize);
+                break;
+            default:
+                target.addNextRow();
+                target.add(text(random, 10));
+                break;
+        }
+    }
+
+    private void addTable(PrintParams target, Random random, int fontSize) {
+        float[] widthWeigh = weigh(random);
+        TableColumn[] columns = new TableColumn[widthWeigh.length];
+        ColumnPlan plan = ColumnPlan.of(target.getSpec(), fontSize, widthWeigh);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new TableColumn(widthWeigh[i], random.nextBoolean(),
+                    ellipsizeMode(random, plan.getColumnWidth(i)), align(random));
+        }
+        int rowCount = random.nextInt(4) == 0 ? 300 + random.nextInt(600) : random.nextInt(10);
+        List<String[]> rows = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            String[] texts = new String[columns.length];
+            for (int i = 0; i < texts.length; i++) {
+                texts[i] = text(random, plan.getColumnWidth(i) + 4);
+            }
+            rows.add(texts);
+        }
+        target.addTable(fontSize, columns, new ListRowSource(rows), this.executor);
+    }
+
+    private static float[] weigh(Random random) {
+        float[] widthWeigh = new float[2 + random.nextInt(3)];
+        for (int i = 0; i < widthWeigh.length; i++) {
+            widthWeigh[i] = 1 + random.nextInt(3);
+        }
+        return widthWeigh;
+    }
+
+    private static EllipsizeMode ellipsizeMode(Random random, int width) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return EllipsizeMode.LINE;
+            case 1:
+                return EllipsizeMode.COLUMN_LINE;
+            default:
+                return width >= 6 ? EllipsizeMode.ELLIPSIS : EllipsizeMode.LINE;
+        }
+    }
+
+    private static Align align(Random random) {
+        return Align.values()[random.nextInt(Align.values().length)];
+    }
+
+    /**
+     * 随机文本，字节长度不超过maxLength
+     */
+    static String text(Random random, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder builder = new StringBuilder();
+        int byteLength = 0;
+        while (byteLength < length) {
+            if (byteLength + 2 <= length && random.nextInt(3) == 0) {
+                builder.append(CJK.charAt(random.nextInt(CJK.length())));
+                byteLength += 2;
+            } else {
+                builder.append(ASCII.charAt(random.nextInt(ASCII.length())));
+                byteLength++;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static class ListRowSource implements TableRowSource {
+        private final List<String[]> rows;
+
+        ListRowSource(List<String[]> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int getRowCount() {
+            return this.rows.size();
+        }
+
+        @Override
+        public String getText(int row, int column) {
+            return this.rows.get(row)[column];
+        }
+    }
+}
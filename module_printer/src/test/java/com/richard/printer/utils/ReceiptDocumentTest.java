@@ -0,0 +1,42 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.enumerate.Align;
+import com.richard.printer.enumerate.LayoutMode;
+import com.richard.printer.enumerate.TicketSpec;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import static org.junit.Assert.*;
+
+/**
+ * 小票文档缓存测试：调用方拿到的数据不能改动缓存
+ */
+public class ReceiptDocumentTest {
+
+    @Test
+    public void getBytesReturnsCopy() {
+        ReceiptDocument document = new ReceiptDocument();
+        document.add("合计", 1, true, Align.LEFT);
+        byte[] expected = document.render(TicketSpec.SPEC_58).toByteArray();
+
+        byte[] first = document.getBytes(TicketSpec.SPEC_58);
+        assertArrayEquals(expected, first);
+        first[0] = 0;
+        assertArrayEquals(expected, document.getBytes(TicketSpec.SPEC_58));
+        assertNotSame(first, document.getBytes(TicketSpec.SPEC_58));
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void byteBufferIsReadOnly() {
+        ReceiptDocument document = new ReceiptDocument();
+        document.add("合计", 0, false, Align.LEFT);
+        ByteBuffer buffer = document.asByteBuffer(TicketSpec.SPEC_80, LayoutMode.PADDING);
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        assertArrayEquals(document.getBytes(TicketSpec.SPEC_80), data);
+        buffer.put(0, (byte) 0);
+    }
+}
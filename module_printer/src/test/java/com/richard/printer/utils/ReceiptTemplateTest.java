@@ -0,0 +1,162 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.command.PrinterCmdUtil;
+import com.richard.printer.enumerate.Align;
+import com.richard.printer.enumerate.EllipsizeMode;
+import com.richard.printer.enumerate.TicketSpec;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 预编译模板测试：模板生成的内容与直接构造的打印效果一致
+ */
+public class ReceiptTemplateTest {
+
+    @Test
+    public void samePrintAsDirectConstruction() {
+        Random random = new Random(14);
+        for (TicketSpec spec : TicketSpec.values()) {
+            for (int round = 0; round < 200; round++) {
+                ReceiptTemplate.Builder builder = new ReceiptTemplate.Builder(spec);
+                TemplateData data = new TemplateData();
+                PrintParams expected = new PrintParams(spec);
+
+                int operations = 1 + random.nextInt(12);
+                for (int i = 0; i < operations; i++) {
+                    int fontSize = random.nextInt(2);
+                    boolean isBold = random.nextBoolean();
+                    Align align = Align.values()[random.nextInt(Align.values().length)];
+                    String name = "slot" + i;
+                    switch (random.nextInt(7)) {
+                        case 0: {
+                            String text = RandomReceipt.text(random, 20);
+                            builder.text(text, fontSize, isBold, align).nextRow();
+                            expected.add(text, fontSize, isBold, align);
+                            expected.addNextRow();
+                            break;
+                        }
+                        case 1: {
+                            ColumnPlan plan = ColumnPlan.of(spec, fontSize, 2, 1, 1);
+                            builder.row(plan, isBold, align, EllipsizeMode.LINE, "品名", "数量", "金额");
+                            expected.addRow(plan, isBold, align, EllipsizeMode.LINE, "品名", "数量", "金额");
+                            break;
+                        }
+                        case 2:
+                            builder.splitLine(fontSize, true);
+                            expected.addSplitLine(fontSize, true);
+                            break;
+                        case 3: {
+                            builder.raw(PrinterCmdUtil.emphasizedOn());
+                            expected.add(PrinterCmdUtil.emphasizedOn());
+                            break;
+                        }
+                        case 4: {
+                            String text = RandomReceipt.text(random, 16);
+                            builder.textSlot(name, fontSize, isBold, align).nextRow();
+                            if (random.nextBoolean()) {
+                                data.putText(name, text);
+                            } else {
+                                text = "";
+                            }
+                            expected.add(text, fontSize, isBold, align);
+                            expected.addNextRow();
+                            break;
+                        }
+                        case 5: {
+                            double amount = random.nextInt(100000) / 100D;
+                            builder.numberSlot(name, "0.00", fontSize, isBold, align).nextRow();
+                            data.putNumber(name, amount);
+                            expected.add(String.format("%.2f", amount), fontSize, isBold, align);
+                            expected.addNextRow();
+                            break;
+                        }
+                        default: {
+                            ColumnPlan plan = ColumnPlan.of(spec, fontSize, 3, 1, 2);
+                            EllipsizeMode ellipsizeMode = random.nextBoolean() ? EllipsizeMode.LINE : EllipsizeMode.COLUMN_LINE;
+                            builder.rowSlot(name, plan, isBold, align, ellipsizeMode);
+                            List<String[]> rows = new ArrayList<>();
+                            for (int row = random.nextInt(5); row > 0; row--) {
+                                String[] columns = {RandomReceipt.text(random, 30), RandomReceipt.text(random, 4),
+                                        RandomReceipt.text(random, 10)};
+                                rows.add(columns);
+                                expected.addRow(plan, isBold, align, ellipsizeMode, columns);
+                            }
+                            data.putRows(name, rows);
+                            break;
+                        }
+                    }
+                }
+
+                ReceiptTemplate template = builder.build();
+                byte[] actual = template.render(data).toByteArray();
+                assertEquals(EscPosSimulator.run(spec, expected.toByteArray()).describe(),
+                        EscPosSimulator.run(spec, actual).describe());
+            }
+        }
+    }
+
+    @Test
+    public void slotsFilledFromData() throws Exception {
+        ReceiptTemplate template = new ReceiptTemplate.Builder(TicketSpec.SPEC_80)
+                .text("某某餐厅", 1, true, Align.CENTER)
+                .splitLine(0, true)
+                .textSlot("orderNo", 0, false, Align.LEFT)
+                .numberSlot("total", "0.00", 0, false, Align.RIGHT)
+                .build();
+        assertTrue(template.getStaticLength() > 48);
+
+        String filled = new String(template.render(new TemplateData()
+                .putText("orderNo", "A001").putNumber("total", 5)).toByteArray(), "GBK");
+        assertTrue(filled.contains("A001"));
+        assertTrue(filled.contains("5.00"));
+        assertTrue(filled.contains("某某餐厅"));
+
+        //未填充的位置输出为空
+        String empty = new String(template.render(new TemplateData()).toByteArray(), "GBK");
+        assertFalse(empty.contains("A001"));
+        assertTrue(empty.contains("某某餐厅"));
+    }
+
+    @Test
+    public void renderIntoStreamingParams() throws Exception {
+        ColumnPlan plan = ColumnPlan.of(TicketSpec.SPEC_58, 0, 2, 1, 1);
+        ReceiptTemplate template = new ReceiptTemplate.Builder(TicketSpec.SPEC_58)
+                .row(plan, true, Align.LEFT, EllipsizeMode.LINE, "品名", "数量", "金额")
+                .rowSlot("items", plan, false, Align.LEFT, EllipsizeMode.COLUMN_LINE)
+                .splitLine(0, true)
+                .numberSlot("total", "0.00", 1, true, Align.RIGHT)
+                .build();
+        TemplateData data = new TemplateData().putNumber("total", 123.4);
+        for (int i = 0; i < 500; i++) {
+            data.addRow("items", "商品" + i, "1", "9.90");
+        }
+
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        StreamingPrintParams streaming = new StreamingPrintParams(TicketSpec.SPEC_58, new PrintSink() {
+            @Override
+            public void write(byte[] data, int offset, int count) {
+                received.write(data, offset, count);
+            }
+
+            @Override
+            public void flush() {
+            }
+        }, 256);
+        template.render(data, streaming);
+        streaming.finish();
+        assertArrayEquals(template.render(data).toByteArray(), received.toByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void specMismatchRejected() {
+        ReceiptTemplate template = new ReceiptTemplate.Builder(TicketSpec.SPEC_80).splitLine(0, true).build();
+        template.render(new TemplateData(), new PrintParams(TicketSpec.SPEC_58));
+    }
+}
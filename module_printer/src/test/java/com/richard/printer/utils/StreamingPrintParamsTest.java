@@ -0,0 +1,92 @@
+package com.richard.printer.utils;
+
+import com.richard.printer.enumerate.TicketSpec;
+import com.richard.printer.exception.PrinterException;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * 流式打印参数测试：写入输出目标的数据与一次性构造的结果一致，缓存不随内容增长
+ */
+public class StreamingPrintParamsTest {
+
+    /**
+     * 记录写入的数据，可以指定从第几次写入开始失败
+     */
+    private static class MemorySink implements PrintSink {
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        int writes;
+        int flushes;
+        int failFrom = Integer.MAX_VALUE;
+
+        @Override
+        public void write(byte[] data, int offset, int count) throws PrinterException {
+            if (++this.writes >= this.failFrom) {
+                throw new PrinterException("write failed");
+            }
+            this.received.write(data, offset, count);
+        }
+
+        @Override
+        public void flush() {
+            this.flushes++;
+        }
+    }
+
+    @Test
+    public void sameBytesAsPrintParams() throws Exception {
+        for (int threshold : new int[]{1, 64, 1024, StreamingPrintParams.DEFAULT_FLUSH_THRESHOLD}) {
+            for (long seed = 0; seed < 10; seed++) {
+                RandomReceipt receipt = new RandomReceipt(seed, 80);
+                PrintParams expected = new PrintParams(TicketSpec.SPEC_80);
+                receipt.build(expected);
+
+                MemorySink sink = new MemorySink();
+                StreamingPrintParams streaming = new StreamingPrintParams(TicketSpec.SPEC_80, sink, threshold);
+                receipt.build(streaming);
+                streaming.finish();
+
+                assertArrayEquals("threshold " + threshold + " seed " + seed,
+                        expected.toByteArray(), sink.received.toByteArray());
+                assertEquals(sink.received.size(), streaming.getFlushedLength());
+                assertEquals(0, streaming.getByteLength());
+                assertEquals(1, sink.flushes);
+            }
+        }
+    }
+
+    @Test
+    public void bufferDoesNotGrowWithRows() throws Exception {
+        MemorySink sink = new MemorySink();
+        StreamingPrintParams streaming = new StreamingPrintParams(TicketSpec.SPEC_58, sink, 512);
+        for (int i = 0; i < 5000; i++) {
+            streaming.addRow("商品" + i, "1", "9.90");
+            assertTrue(streaming.getByteLength() < 512 + 256);
+        }
+        streaming.finish();
+        assertTrue(sink.writes > 100);
+    }
+
+    @Test
+    public void writeFailureReportedOnFinish() {
+        MemorySink sink = new MemorySink();
+        sink.failFrom = 2;
+        StreamingPrintParams streaming = new StreamingPrintParams(TicketSpec.SPEC_80, sink, 64);
+        for (int i = 0; i < 100; i++) {
+            streaming.addRow("商品" + i, "1", "9.90");
+        }
+        //失败后不再缓存数据
+        assertEquals(2, sink.writes);
+        try {
+            streaming.finish();
+            fail();
+        } catch (PrinterException e) {
+            assertEquals("write failed", e.getMessage());
+        }
+        assertEquals(0, sink.flushes);
+    }
+}
@@ -0,0 +1,110 @@
+package com.richard.printer.utils;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按字节宽度分割字符串测试，与原来逐字符拼接比较的实现结果一致
+ */
+public class StringUtilTest {
+
+    private static final String CHARS = "abcXYZ019 .,-中文测试金额￥€，。（）";
+
+    @Test
+    public void sameAsOriginalOnRandomText() throws Exception {
+        Random random = new Random(11);
+        for (int round = 0; round < 5000; round++) {
+            String text = randomText(random, random.nextInt(60));
+            int limit = 2 + random.nextInt(40);
+            assertEquals(text + " / " + limit, originalSubstring(text, "GBK", limit),
+                    StringUtil.substring(text, "GBK", limit));
+        }
+    }
+
+    @Test
+    public void charWiderThanLimitTakesOwnSegment() {
+        assertEquals(Arrays.asList("a", "中", "b"), StringUtil.substring("a中b", "GBK", 1));
+        assertEquals(Arrays.asList("中", "文"), StringUtil.substring("中文", "GBK", 0));
+        assertEquals(Arrays.asList("中", "文"), StringUtil.substring("中文", "UTF-8", 2));
+    }
+
+    @Test
+    public void surrogatePairNotSplit() {
+        String emoji = new String(Character.toChars(0x1F600));
+        assertEquals(Arrays.asList(emoji), StringUtil.substring(emoji, "UTF-8", 1));
+        assertEquals(Arrays.asList("a" + emoji, "b"), StringUtil.substring("a" + emoji + "b", "UTF-8", 5));
+        assertEquals(Arrays.asList("a", emoji, "b"), StringUtil.substring("a" + emoji + "b", "UTF-8", 3));
+    }
+
+    @Test
+    public void emptyText() {
+        assertEquals(0, StringUtil.substring("", "GBK", 10).size());
+        assertEquals(0, StringUtil.substring(null, "GBK", 10).size());
+        assertEquals(0, StringUtil.splitOffsets("", "GBK", 10).length);
+    }
+
+    @Test
+    public void defaultCharsetIsGbk() {
+        assertEquals(StringUtil.substring("中文测试", "GBK", 5), StringUtil.substring("中文测试", null, 5));
+        assertEquals(StringUtil.substring("中文测试", "GBK", 5), StringUtil.substring("中文测试", "", 5));
+    }
+
+    @Test
+    public void byteWidthSameAsGetBytes() throws Exception {
+        Random random = new Random(110);
+        String emoji = new String(Character.toChars(0x1F600));
+        for (String charsetName : new String[]{"GBK", "GB18030", "UTF-8"}) {
+            for (int round = 0; round < 2000; round++) {
+                String text = randomText(random, random.nextInt(40));
+                if (random.nextInt(4) == 0) {
+                    text = text + emoji;
+                }
+                assertEquals(charsetName + " " + text, text.getBytes(charsetName).length,
+                        StringUtil.getByteWidth(text, charsetName));
+            }
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 原来的实现，每个字符都重新编码已拼接的整段；单个字符宽度超过limit时不会结束，只用于limit不小于2的基本平面字符
+     */
+    private static List<String> originalSubstring(String text, String charsetName, int limit)
+            throws UnsupportedEncodingException {
+        int textLength = text.getBytes(charsetName).length;
+        char[] tempChar = text.toCharArray();
+        int reInt = 0;
+        int index = 0;
+        String reStr = "";
+        List<String> result = new ArrayList<>();
+
+        while (reInt < textLength) {
+            for (int i = 0; i < limit && index < tempChar.length; i++) {
+                String s1 = String.valueOf(tempChar[index]);
+                if (reStr.concat(s1).getBytes(charsetName).length > limit) {
+                    break;
+                }
+                reInt += s1.getBytes(charsetName).length;
+                reStr = reStr.concat(s1);
+                index++;
+            }
+            result.add(reStr);
+            reStr = "";
+        }
+        return result;
+    }
+}
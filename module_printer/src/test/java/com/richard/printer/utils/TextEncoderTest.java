@@ -0,0 +1,141 @@
+package com.richard.printer.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * 文本编码测试：结果与String.getBytes一致，包括无法编码的字符和孤立的代理字符
+ */
+public class TextEncoderTest {
+
+    private static final String[] CHARSETS = {"GBK", "GB18030", "UTF-8"};
+
+    private static final String EMOJI = new String(Character.toChars(0x1F600));
+
+    @Test
+    public void sameAsStringGetBytes() throws Exception {
+        Random random = new Random(15);
+        for (String charsetName : CHARSETS) {
+            for (int round = 0; round < 3000; round++) {
+                String text = randomText(random, random.nextInt(80));
+                assertArrayEquals(charsetName + " " + text, text.getBytes(charsetName),
+                        TextEncoder.getBytes(text, charsetName));
+            }
+        }
+    }
+
+    @Test
+    public void encodeAtOffset() throws Exception {
+        Random random = new Random(150);
+        for (String charsetName : CHARSETS) {
+            for (int round = 0; round < 500; round++) {
+                String text = randomText(random, random.nextInt(40));
+                byte[] expected = text.getBytes(charsetName);
+                int offset = random.nextInt(8);
+                byte[] dest = new byte[offset + TextEncoder.maxLength(text, charsetName)];
+                int count = TextEncoder.encode(text, charsetName, dest, offset);
+                assertEquals(expected.length, count);
+                for (int i = 0; i < count; i++) {
+                    assertEquals(expected[i], dest[offset + i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void longTextBeyondScratchBuffer() throws Exception {
+        String text = randomText(new Random(1500), 100 * 1024);
+        for (String charsetName : CHARSETS) {
+            assertArrayEquals(text.getBytes(charsetName), TextEncoder.getBytes(text, charsetName));
+        }
+        //长文本之后线程保留的缓冲区仍可正常使用
+        assertArrayEquals("中文".getBytes("GBK"), TextEncoder.getBytes("中文", "GBK"));
+    }
+
+    @Test
+    public void printParamsUsesGbk() throws Exception {
+        Random random = new Random(15000);
+        for (int round = 0; round < 1000; round++) {
+            String text = randomText(random, random.nextInt(40));
+            byte[] expected = text.getBytes("GBK");
+            assertArrayEquals(expected, PrintParams.getByte(text));
+            assertEquals(expected.length, PrintParams.getBytesLength(text));
+        }
+        assertNull(PrintParams.getByte(null));
+        assertNull(TextEncoder.getBytes(null, "GBK"));
+        assertEquals(0, TextEncoder.getBytes("", "GBK").length);
+    }
+
+    @Test
+    public void concurrentEncoders() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                final long seed = thread;
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        Random random = new Random(seed);
+                        for (int round = 0; round < 2000; round++) {
+                            String charsetName = CHARSETS[random.nextInt(CHARSETS.length)];
+                            String text = randomText(random, random.nextInt(40));
+                            if (!Arrays.equals(text.getBytes(charsetName),
+                                    TextEncoder.getBytes(text, charsetName))) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void destinationTooSmall() {
+        TextEncoder.encode("中文测试", "GBK", new byte[4], 1);
+    }
+
+    /**
+     * 随机文本，包含GBK无法编码的字符和孤立的代理字符
+     */
+    private static String randomText(Random random, int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(8)) {
+                case 0:
+                    builder.append((char) (0x4E00 + random.nextInt(0x5000)));
+                    break;
+                case 1:
+                    builder.append(EMOJI);
+                    break;
+                case 2:
+                    builder.append(random.nextBoolean() ? '\uD83D' : '\uDE00');
+                    break;
+                case 3:
+                    builder.append((char) (0xA0 + random.nextInt(0x3000)));
+                    break;
+                default:
+                    builder.append((char) (0x20 + random.nextInt(0x5F)));
+                    break;
+            }
+        }
+        return builder.toString();
+    }
+}